@@ -4,8 +4,10 @@ import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.dart.server.*;
 import com.google.dart.server.generated.AnalysisServer;
+import com.google.dart.server.internal.remote.ByteRequestSink;
 import com.google.dart.server.internal.remote.DebugPrintStream;
 import com.google.dart.server.internal.remote.RemoteAnalysisServerImpl;
+import com.google.dart.server.internal.remote.RequestSink;
 import com.google.dart.server.internal.remote.StdioServerSocket;
 import com.google.dart.server.utilities.logging.Logging;
 import com.intellij.codeInsight.intention.IntentionManager;
@@ -74,8 +76,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 public class DartAnalysisServerService {
 
@@ -118,6 +119,10 @@ public class DartAnalysisServerService {
   private final Map<String, Long> myFilePathWithOverlaidContentToTimestamp = new THashMap<>();
   private final List<String> myVisibleFiles = new ArrayList<>();
   private final Set<Document> myChangedDocuments = new THashSet<>();
+  // edits made to documents since their content was last sent to the server, guarded by myLock
+  private final Map<Document, DocumentEdits> myDocumentEdits = new THashMap<>();
+  @NotNull private final OverlayTrafficCounter myOverlayTrafficCounter = new OverlayTrafficCounter();
+  @NotNull private final DartRequestScheduler myRequestScheduler = new DartRequestScheduler();
   private final Alarm myUpdateFilesAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, ApplicationManager.getApplication());
 
   @NotNull private final Queue<CompletionInfo> myCompletionInfos = new LinkedList<>();
@@ -239,6 +244,20 @@ public class DartAnalysisServerService {
       }
     }
 
+    @Override
+    public void requestError(@NotNull final RequestError requestError) {
+      if (RequestErrorCode.INVALID_OVERLAY_CHANGE.equals(requestError.getCode())) {
+        LOG.info("Overlay content is out of sync, resending full content: " + requestError.getMessage());
+        synchronized (myLock) {
+          // next doUpdateFilesContent() sends AddContentOverlay for all unsaved documents
+          myFilePathWithOverlaidContentToTimestamp.clear();
+          myDocumentEdits.clear();
+        }
+        myUpdateFilesAlarm.cancelAllRequests();
+        myUpdateFilesAlarm.addRequest(DartAnalysisServerService.this::updateFilesContent, 0);
+      }
+    }
+
     @Override
     public void serverConnected(@Nullable String version) {
       myServerVersion = version != null ? version : "";
@@ -346,6 +365,21 @@ public class DartAnalysisServerService {
       myUpdateFilesAlarm.cancelAllRequests();
       myUpdateFilesAlarm.addRequest(DartAnalysisServerService.this::updateFilesContent, UPDATE_FILES_TIMEOUT);
     }
+
+    @Override
+    public void documentChanged(DocumentEvent e) {
+      final Document document = e.getDocument();
+      if (!isLocalAnalyzableFile(FileDocumentManager.getInstance().getFile(document))) return;
+
+      synchronized (myLock) {
+        DocumentEdits edits = myDocumentEdits.get(document);
+        if (edits == null) {
+          edits = new DocumentEdits(e.getOldTimeStamp());
+          myDocumentEdits.put(document, edits);
+        }
+        edits.add(e, document.getModificationStamp());
+      }
+    }
   };
 
   /**
@@ -369,6 +403,14 @@ public class DartAnalysisServerService {
            : myOffsetsManager.getOriginalOffset(file, convertedOffset);
   }
 
+  /**
+   * Modification stamp of the file content that the next request about this file is answered for
+   */
+  private static long getModificationStamp(@NotNull final VirtualFile file) {
+    final Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    return document != null ? document.getModificationStamp() : file.getModificationCount();
+  }
+
   public int[] getConvertedOffsets(@NotNull final VirtualFile file, final int[] _offsets) {
     final int[] offsets = new int[_offsets.length];
     for (int i = 0; i < _offsets.length; i++) {
@@ -661,9 +703,38 @@ public class DartAnalysisServerService {
     }
   }
 
-  private void doUpdateFilesContent() {
-    // may be use DocumentListener to collect deltas instead of sending the whole Document.getText() each time?
+  /**
+   * Returns the number of file content bytes sent to the server with overlays during the last second.
+   */
+  public long getOverlayBytesPerSecond() {
+    return myOverlayTrafficCounter.getBytesPerSecond();
+  }
+
+  /**
+   * Returns per-method latency percentiles of the requests sent with {@link DartRequestScheduler}, for diagnostics.
+   */
+  @NotNull
+  public String getRequestLatencyReport() {
+    return myRequestScheduler.getLatencyReport();
+  }
+
+  /**
+   * Returns queue depth and write statistics of the requests sent to the server, for diagnostics.
+   */
+  @NotNull
+  public String getRequestSinkReport() {
+    final StdioServerSocket socket = myServerSocket;
+    final RequestSink sink = socket != null && socket.isOpen() ? socket.getRequestSink() : null;
+    if (!(sink instanceof ByteRequestSink)) return "server is not running";
+
+    final ByteRequestSink byteSink = (ByteRequestSink)sink;
+    return "queued requests: " + byteSink.getQueueDepth() +
+           ", bytes written: " + byteSink.getBytesWritten() +
+           ", flushes: " + byteSink.getBatchCount() +
+           ", write time: " + TimeUnit.NANOSECONDS.toMillis(byteSink.getWriteTimeNanos()) + " ms";
+  }
 
+  private void doUpdateFilesContent() {
     AnalysisServer server = myServer;
     if (server == null) {
       return;
@@ -691,12 +762,29 @@ public class DartAnalysisServerService {
 
           final Long oldTimestamp = myFilePathWithOverlaidContentToTimestamp.get(file.getPath());
           if (oldTimestamp == null || document.getModificationStamp() != oldTimestamp) {
-            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), new AddContentOverlay(document.getText()));
+            final DocumentEdits edits = myDocumentEdits.get(document);
+            final Object overlay;
+            if (oldTimestamp != null && edits != null && edits.canBeAppliedTo(oldTimestamp, document)) {
+              // the server has the content this edits sequence starts from
+              for (SourceEdit edit : edits.myEdits) {
+                myOverlayTrafficCounter.editSent(edit.getReplacement());
+              }
+              overlay = new ChangeContentOverlay(edits.myEdits);
+            }
+            else {
+              final String text = document.getText();
+              myOverlayTrafficCounter.fullContentSent(text);
+              overlay = new AddContentOverlay(text);
+            }
+            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), overlay);
             myFilePathWithOverlaidContentToTimestamp.put(file.getPath(), document.getModificationStamp());
           }
         }
       }
 
+      // edits of all documents that needed an update have been sent or made obsolete by the full content
+      myDocumentEdits.clear();
+
       // oldTrackedFiles at this point contains only those files that are not in FileDocumentManager.getUnsavedDocuments() any more
       for (String oldPath : oldTrackedFiles) {
         final Long removed = myFilePathWithOverlaidContentToTimestamp.remove(oldPath);
@@ -822,31 +910,31 @@ public class DartAnalysisServerService {
   @NotNull
   public List<HoverInformation> analysis_getHover(@NotNull final VirtualFile file, final int _offset) {
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final List<HoverInformation> result = Lists.newArrayList();
 
     final AnalysisServer server = myServer;
     if (server == null) {
       return HoverInformation.EMPTY_LIST;
     }
 
-    final CountDownLatch latch = new CountDownLatch(1);
     final int offset = getOriginalOffset(file, _offset);
-    server.analysis_getHover(filePath, offset, new GetHoverConsumer() {
-      @Override
-      public void computedHovers(HoverInformation[] hovers) {
-        Collections.addAll(result, hovers);
-        latch.countDown();
-      }
-
-      @Override
-      public void onError(RequestError error) {
-        logError("analysis_getHover()", filePath, error);
-        latch.countDown();
-      }
-    });
-
-    awaitForLatchCheckingCanceled(server, latch, GET_HOVER_TIMEOUT);
-    return result;
+    final CompletableFuture<List<HoverInformation>> future =
+      myRequestScheduler.schedule(DartRequestScheduler.GET_HOVER, filePath, getModificationStamp(file), String.valueOf(offset),
+                                  response -> server.analysis_getHover(filePath, offset, new GetHoverConsumer() {
+                                    @Override
+                                    public void computedHovers(HoverInformation[] hovers) {
+                                      // the same result may be returned to several coalesced callers
+                                      response.complete(Collections.unmodifiableList(Arrays.asList(hovers)));
+                                    }
+
+                                    @Override
+                                    public void onError(RequestError error) {
+                                      logError("analysis_getHover()", filePath, error);
+                                      response.complete(HoverInformation.EMPTY_LIST);
+                                    }
+                                  }));
+
+    final List<HoverInformation> result = awaitForFutureCheckingCanceled(server, future, GET_HOVER_TIMEOUT);
+    return result != null ? result : HoverInformation.EMPTY_LIST;
   }
 
   @Nullable
@@ -904,60 +992,58 @@ public class DartAnalysisServerService {
   @NotNull
   public List<SourceChange> edit_getAssists(@NotNull final VirtualFile file, final int _offset, final int _length) {
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final List<SourceChange> results = Lists.newArrayList();
 
     final AnalysisServer server = myServer;
     if (server == null) {
-      return results;
+      return Lists.newArrayList();
     }
 
-    final CountDownLatch latch = new CountDownLatch(1);
     final int offset = getOriginalOffset(file, _offset);
     final int length = getOriginalOffset(file, _offset + _length) - offset;
-    server.edit_getAssists(filePath, offset, length, new GetAssistsConsumer() {
-      @Override
-      public void computedSourceChanges(List<SourceChange> sourceChanges) {
-        results.addAll(sourceChanges);
-        latch.countDown();
-      }
-
-      @Override
-      public void onError(final RequestError error) {
-        logError("edit_getAssists()", filePath, error);
-        latch.countDown();
-      }
-    });
-
-    awaitForLatchCheckingCanceled(server, latch, GET_ASSISTS_TIMEOUT);
-    return results;
+    final CompletableFuture<List<SourceChange>> future =
+      myRequestScheduler.schedule(DartRequestScheduler.GET_ASSISTS, filePath, getModificationStamp(file), offset + ":" + length,
+                                  response -> server.edit_getAssists(filePath, offset, length, new GetAssistsConsumer() {
+                                    @Override
+                                    public void computedSourceChanges(List<SourceChange> sourceChanges) {
+                                      response.complete(sourceChanges);
+                                    }
+
+                                    @Override
+                                    public void onError(final RequestError error) {
+                                      logError("edit_getAssists()", filePath, error);
+                                      response.complete(Collections.emptyList());
+                                    }
+                                  }));
+
+    final List<SourceChange> result = awaitForFutureCheckingCanceled(server, future, GET_ASSISTS_TIMEOUT);
+    // callers may modify the list
+    return result != null ? new ArrayList<>(result) : Lists.newArrayList();
   }
 
   @Nullable
   public List<AnalysisErrorFixes> edit_getFixes(@NotNull final VirtualFile file, final int _offset) {
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final Ref<List<AnalysisErrorFixes>> resultRef = new Ref<>();
 
     final AnalysisServer server = myServer;
     if (server == null) return null;
 
-    final CountDownLatch latch = new CountDownLatch(1);
     final int offset = getOriginalOffset(file, _offset);
-    server.edit_getFixes(filePath, offset, new GetFixesConsumer() {
-      @Override
-      public void computedFixes(final List<AnalysisErrorFixes> fixes) {
-        resultRef.set(fixes);
-        latch.countDown();
-      }
+    final CompletableFuture<List<AnalysisErrorFixes>> future =
+      myRequestScheduler.schedule(DartRequestScheduler.GET_FIXES, filePath, getModificationStamp(file), String.valueOf(offset),
+                                  response -> server.edit_getFixes(filePath, offset, new GetFixesConsumer() {
+                                    @Override
+                                    public void computedFixes(final List<AnalysisErrorFixes> fixes) {
+                                      response.complete(fixes);
+                                    }
 
-      @Override
-      public void onError(final RequestError error) {
-        logError("edit_getFixes()", filePath, error);
-        latch.countDown();
-      }
-    });
+                                    @Override
+                                    public void onError(final RequestError error) {
+                                      logError("edit_getFixes()", filePath, error);
+                                      response.complete(null);
+                                    }
+                                  }));
 
-    awaitForLatchCheckingCanceled(server, latch, GET_FIXES_TIMEOUT);
-    return resultRef.get();
+    return awaitForFutureCheckingCanceled(server, future, GET_FIXES_TIMEOUT);
   }
 
   public void search_findElementReferences(@NotNull final VirtualFile file,
@@ -1023,61 +1109,59 @@ public class DartAnalysisServerService {
   @NotNull
   public List<TypeHierarchyItem> search_getTypeHierarchy(@NotNull final VirtualFile file, final int _offset, final boolean superOnly) {
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final List<TypeHierarchyItem> results = Lists.newArrayList();
 
     final AnalysisServer server = myServer;
     if (server == null) {
-      return results;
+      return Lists.newArrayList();
     }
 
-    final CountDownLatch latch = new CountDownLatch(1);
     final int offset = getOriginalOffset(file, _offset);
-    server.search_getTypeHierarchy(filePath, offset, superOnly, new GetTypeHierarchyConsumer() {
-      @Override
-      public void computedHierarchy(List<TypeHierarchyItem> hierarchyItems) {
-        results.addAll(hierarchyItems);
-        latch.countDown();
-      }
-
-      @Override
-      public void onError(RequestError error) {
-        logError("search_getTypeHierarchy()", filePath, error);
-        latch.countDown();
-      }
-    });
-
-    awaitForLatchCheckingCanceled(server, latch, GET_TYPE_HIERARCHY_TIMEOUT);
-    return results;
+    final CompletableFuture<List<TypeHierarchyItem>> future =
+      myRequestScheduler.schedule(DartRequestScheduler.GET_TYPE_HIERARCHY, filePath, getModificationStamp(file), offset + ":" + superOnly,
+                                  response -> server.search_getTypeHierarchy(filePath, offset, superOnly, new GetTypeHierarchyConsumer() {
+                                    @Override
+                                    public void computedHierarchy(List<TypeHierarchyItem> hierarchyItems) {
+                                      response.complete(hierarchyItems);
+                                    }
+
+                                    @Override
+                                    public void onError(RequestError error) {
+                                      logError("search_getTypeHierarchy()", filePath, error);
+                                      response.complete(Collections.emptyList());
+                                    }
+                                  }));
+
+    final List<TypeHierarchyItem> result = awaitForFutureCheckingCanceled(server, future, GET_TYPE_HIERARCHY_TIMEOUT);
+    // callers may modify the list
+    return result != null ? new ArrayList<>(result) : Lists.newArrayList();
   }
 
   @Nullable
   public String completion_getSuggestions(@NotNull final VirtualFile file, final int _offset) {
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final Ref<String> resultRef = new Ref<>();
 
     final AnalysisServer server = myServer;
     if (server == null) {
       return null;
     }
 
-    final CountDownLatch latch = new CountDownLatch(1);
     final int offset = getOriginalOffset(file, _offset);
-    server.completion_getSuggestions(filePath, offset, new GetSuggestionsConsumer() {
-      @Override
-      public void computedCompletionId(@NotNull final String completionId) {
-        resultRef.set(completionId);
-        latch.countDown();
-      }
+    final CompletableFuture<String> future =
+      myRequestScheduler.schedule(DartRequestScheduler.GET_SUGGESTIONS, filePath, getModificationStamp(file), String.valueOf(offset),
+                                  response -> server.completion_getSuggestions(filePath, offset, new GetSuggestionsConsumer() {
+                                    @Override
+                                    public void computedCompletionId(@NotNull final String completionId) {
+                                      response.complete(completionId);
+                                    }
 
-      @Override
-      public void onError(@NotNull final RequestError error) {
-        // Not a problem. Happens if a file is outside of the project, or server is just not ready yet.
-        latch.countDown();
-      }
-    });
+                                    @Override
+                                    public void onError(@NotNull final RequestError error) {
+                                      // Not a problem. Happens if a file is outside of the project, or server is just not ready yet.
+                                      response.complete(null);
+                                    }
+                                  }));
 
-    awaitForLatchCheckingCanceled(server, latch, GET_SUGGESTIONS_TIMEOUT);
-    return resultRef.get();
+    return awaitForFutureCheckingCanceled(server, future, GET_SUGGESTIONS_TIMEOUT);
   }
 
   @Nullable
@@ -1394,6 +1478,7 @@ public class DartAnalysisServerService {
                               debugStream);
       myServerSocket.setClientId(ApplicationNamesInfo.getInstance().getFullProductName().replace(' ', '_'));
       myServerSocket.setClientVersion(ApplicationInfo.getInstance().getApiVersion());
+      myServerSocket.setStreamingResponses(Registry.is("dart.server.streaming.responses", false));
 
       final AnalysisServer startedServer = new RemoteAnalysisServerImpl(myServerSocket);
 
@@ -1517,6 +1602,8 @@ public class DartAnalysisServerService {
       myFilePathWithOverlaidContentToTimestamp.clear();
       myVisibleFiles.clear();
       myChangedDocuments.clear();
+      myDocumentEdits.clear();
+      myRequestScheduler.cancelAll();
       myServerData.clearData();
 
       final List<Project> projects = new ArrayList<>(myRootsHandler.getTrackedProjects());
@@ -1596,6 +1683,39 @@ public class DartAnalysisServerService {
            ", error code = " + error.getCode() + ": " + error.getMessage();
   }
 
+  /**
+   * Waits for the given future with {@link #awaitForLatchCheckingCanceled(AnalysisServer, CountDownLatch, long)}, cancels it if waiting
+   * was cancelled or timed out.
+   *
+   * @return the result of the future, or {@code null} if it was cancelled, failed or did not complete in time
+   */
+  @Nullable
+  private static <T> T awaitForFutureCheckingCanceled(@NotNull final AnalysisServer server,
+                                                      @NotNull final CompletableFuture<T> future,
+                                                      final long timeoutInMillis) {
+    final CountDownLatch latch = new CountDownLatch(1);
+    future.whenComplete((result, error) -> latch.countDown());
+    boolean completed = false;
+    try {
+      completed = awaitForLatchCheckingCanceled(server, latch, timeoutInMillis);
+    }
+    finally {
+      if (!completed) {
+        // otherwise later requests with the same arguments would be merged into this one and wait for it again
+        future.cancel(false);
+      }
+    }
+    if (!completed) {
+      return null;
+    }
+    try {
+      return future.getNow(null);
+    }
+    catch (CompletionException | CancellationException e) {
+      return null;
+    }
+  }
+
   private static boolean awaitForLatchCheckingCanceled(@NotNull final AnalysisServer server,
                                                        @NotNull final CountDownLatch latch,
                                                        final long timeoutInMillis) {
@@ -1721,4 +1841,34 @@ public class DartAnalysisServerService {
       return !errorMessage.substring(errIdx).equals(myPreviousMessage.substring(prevIdx));
     }
   }
+
+  /**
+   * Edits made to a document since its content was last sent to the server. The edits are valid only if the server has the content the
+   * document had at {@link #myBaseStamp} and if no changes were missed since then.
+   */
+  private static class DocumentEdits {
+    private final long myBaseStamp;
+    private final List<SourceEdit> myEdits = new ArrayList<>();
+    private long myStamp;
+    private int myReplacementLength;
+
+    private DocumentEdits(final long baseStamp) {
+      myBaseStamp = baseStamp;
+      myStamp = baseStamp;
+    }
+
+    private void add(@NotNull final DocumentEvent e, final long newStamp) {
+      final String replacement = e.getNewFragment().toString();
+      myEdits.add(new SourceEdit(e.getOffset(), e.getOldLength(), replacement, null));
+      myReplacementLength += replacement.length();
+      myStamp = newStamp;
+    }
+
+    private boolean canBeAppliedTo(final long overlaidStamp, @NotNull final Document document) {
+      return myBaseStamp == overlaidStamp &&
+             myStamp == document.getModificationStamp() &&
+             // when the edits are bigger than the document itself, e.g. after many rewrites, full content is cheaper
+             myReplacementLength < document.getTextLength();
+    }
+  }
 }
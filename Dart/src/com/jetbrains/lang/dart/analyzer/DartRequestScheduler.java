@@ -0,0 +1,169 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends requests to the Analysis Server and returns {@link CompletableFuture}s for their results.
+ * <ul>
+ * <li>a request that equals a request still in flight and is made for the same document content is not sent again, the caller gets
+ * the future of the first one (if {@link Method#myMergeDuplicates} is set);</li>
+ * <li>a request for another offset in the same file makes the previous in-flight request of the same method obsolete, its future is
+ * cancelled (if {@link Method#myCancelSuperseded} is set). The server still answers it, but the answer is dropped;</li>
+ * <li>the time between sending a request and receiving its response is recorded per method, see {@link #getLatencyReport()}.</li>
+ * </ul>
+ */
+class DartRequestScheduler {
+  static final Method GET_HOVER = new Method("analysis_getHover", true, true);
+  static final Method GET_ASSISTS = new Method("edit_getAssists", true, true);
+  static final Method GET_FIXES = new Method("edit_getFixes", true, false);
+  static final Method GET_SUGGESTIONS = new Method("completion_getSuggestions", false, true);
+  static final Method GET_TYPE_HIERARCHY = new Method("search_getTypeHierarchy", true, false);
+
+  static final class Method {
+    @NotNull private final String myName;
+    private final boolean myMergeDuplicates;
+    private final boolean myCancelSuperseded;
+
+    private Method(@NotNull final String name, final boolean mergeDuplicates, final boolean cancelSuperseded) {
+      myName = name;
+      myMergeDuplicates = mergeDuplicates;
+      myCancelSuperseded = cancelSuperseded;
+    }
+
+    @NotNull
+    String getName() {
+      return myName;
+    }
+  }
+
+  interface Request<T> {
+    /**
+     * Sends the request to the server. The consumer passed to the server must complete the given future both on response and on error.
+     */
+    void send(@NotNull CompletableFuture<T> response);
+  }
+
+  private static class InFlight {
+    @NotNull private final String myKey;
+    @NotNull private final CompletableFuture<?> myResult;
+
+    private InFlight(@NotNull final String key, @NotNull final CompletableFuture<?> result) {
+      myKey = key;
+      myResult = result;
+    }
+  }
+
+  private final Object myLock = new Object();
+  // method name + file path -> the latest request of this method for this file
+  private final Map<String, InFlight> myInFlight = new THashMap<>();
+  private final Map<String, LatencyHistogram> myLatencies = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> myMergedCounts = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> myCancelledCounts = new ConcurrentHashMap<>();
+
+  /**
+   * @param filePath          the file the request is about
+   * @param modificationStamp modification stamp of the file document, requests for different document content are never merged
+   * @param arguments         all other request arguments that make the request different from another one for the same file, e.g. offset
+   */
+  @NotNull
+  <T> CompletableFuture<T> schedule(@NotNull final Method method,
+                                    @NotNull final String filePath,
+                                    final long modificationStamp,
+                                    @NotNull final String arguments,
+                                    @NotNull final Request<T> request) {
+    final String slot = method.myName + " " + filePath;
+    final String key = modificationStamp + " " + arguments;
+    final CompletableFuture<T> response = new CompletableFuture<>();
+    final CompletableFuture<T> result;
+
+    synchronized (myLock) {
+      final InFlight previous = myInFlight.get(slot);
+      if (previous != null && !previous.myResult.isDone()) {
+        if (method.myMergeDuplicates && previous.myKey.equals(key)) {
+          counter(myMergedCounts, method).incrementAndGet();
+          //noinspection unchecked
+          return (CompletableFuture<T>)previous.myResult;
+        }
+        if (method.myCancelSuperseded && previous.myResult.cancel(false)) {
+          counter(myCancelledCounts, method).incrementAndGet();
+        }
+      }
+
+      // a dependent future, so that cancelling the result does not affect latency recording of the response
+      result = response.thenApply(value -> value);
+      myInFlight.put(slot, new InFlight(key, result));
+    }
+
+    final long startTime = System.currentTimeMillis();
+    response.whenComplete((value, throwable) -> {
+      histogram(method).record(System.currentTimeMillis() - startTime);
+      synchronized (myLock) {
+        final InFlight current = myInFlight.get(slot);
+        if (current != null && current.myResult == result) {
+          myInFlight.remove(slot);
+        }
+      }
+    });
+
+    try {
+      request.send(response);
+    }
+    catch (RuntimeException e) {
+      response.completeExceptionally(e);
+      throw e;
+    }
+    return result;
+  }
+
+  /**
+   * Cancels all in-flight requests, e.g. when the server is stopped.
+   */
+  void cancelAll() {
+    synchronized (myLock) {
+      for (InFlight inFlight : myInFlight.values()) {
+        inFlight.myResult.cancel(false);
+      }
+      myInFlight.clear();
+    }
+  }
+
+  @NotNull
+  String getLatencyReport() {
+    final StringBuilder builder = new StringBuilder();
+    builder.append(String.format("%-28s %8s %8s %8s %8s %8s %8s%n", "method", "count", "p50 ms", "p95 ms", "p99 ms", "merged", "cancelled"));
+    for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(myLatencies).entrySet()) {
+      final LatencyHistogram histogram = entry.getValue();
+      builder.append(String.format("%-28s %8d %8d %8d %8d %8d %8d%n",
+                                   entry.getKey(),
+                                   histogram.getCount(),
+                                   histogram.getPercentile(50),
+                                   histogram.getPercentile(95),
+                                   histogram.getPercentile(99),
+                                   getCount(myMergedCounts, entry.getKey()),
+                                   getCount(myCancelledCounts, entry.getKey())));
+    }
+    return builder.toString();
+  }
+
+  @NotNull
+  private LatencyHistogram histogram(@NotNull final Method method) {
+    return myLatencies.computeIfAbsent(method.myName, name -> new LatencyHistogram());
+  }
+
+  @NotNull
+  private static AtomicLong counter(@NotNull final Map<String, AtomicLong> counters, @NotNull final Method method) {
+    return counters.computeIfAbsent(method.myName, name -> new AtomicLong());
+  }
+
+  private static long getCount(@NotNull final Map<String, AtomicLong> counters, @NotNull final String methodName) {
+    final AtomicLong counter = counters.get(methodName);
+    return counter == null ? 0 : counter.get();
+  }
+}
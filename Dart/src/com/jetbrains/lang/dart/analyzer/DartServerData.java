@@ -1,6 +1,8 @@
 package com.jetbrains.lang.dart.analyzer;
 
 import com.google.common.collect.Sets;
+import com.google.dart.server.PackedHighlightRegions;
+import com.google.dart.server.PackedNavigationRegions;
 import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
@@ -10,29 +12,21 @@ import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.impl.source.resolve.ResolveCache;
 import com.intellij.util.SmartList;
-import gnu.trove.THashMap;
 import org.dartlang.analysis.server.protocol.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 public class DartServerData {
 
   private DartServerRootsHandler myRootsHandler;
 
-  private final Map<String, List<DartError>> myErrorData =
-    Collections.synchronizedMap(new THashMap<String, List<DartError>>());
-  private final Map<String, List<DartHighlightRegion>> myHighlightData =
-    Collections.synchronizedMap(new THashMap<String, List<DartHighlightRegion>>());
-  private final Map<String, List<DartNavigationRegion>> myNavigationData =
-    Collections.synchronizedMap(new THashMap<String, List<DartNavigationRegion>>());
-  private final Map<String, List<DartOverrideMember>> myOverrideData =
-    Collections.synchronizedMap(new THashMap<String, List<DartOverrideMember>>());
-  private final Map<String, List<DartRegion>> myImplementedClassData =
-    Collections.synchronizedMap(new THashMap<String, List<DartRegion>>());
-  private final Map<String, List<DartRegion>> myImplementedMemberData =
-    Collections.synchronizedMap(new THashMap<String, List<DartRegion>>());
+  // file path -> immutable analysis results of this file, replaced as a whole on each update
+  private final ConcurrentMap<String, FileData> myFileData = new ConcurrentHashMap<>();
 
   private final Set<String> myFilePathsWithUnsentChanges = Sets.newConcurrentHashSet();
 
@@ -53,7 +47,7 @@ public class DartServerData {
       newErrors.add(new DartError(error, offset, length));
     }
 
-    myErrorData.put(filePath, newErrors);
+    updateFileData(filePath, data -> data.withErrors(newErrors));
 
     if (restartHighlighting) {
       forceFileAnnotation(file, false);
@@ -63,36 +57,53 @@ public class DartServerData {
   void computedHighlights(@NotNull final String filePath, @NotNull final List<HighlightRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartHighlightRegion> newRegions = new ArrayList<>(regions.size());
+    final PackedHighlightRegions packedRegions = PackedHighlightRegions.of(regions);
+    final HighlightData newRegions = new HighlightData(packedRegions.size());
     final DartAnalysisServerService service = DartAnalysisServerService.getInstance();
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
-    for (HighlightRegion region : regions) {
-      if (region.getLength() > 0) {
-        final int offset = service.getConvertedOffset(file, region.getOffset());
-        final int length = service.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
-        newRegions.add(new DartHighlightRegion(offset, length, region.getType()));
+    for (int i = 0; i < packedRegions.size(); i++) {
+      final int regionOffset = packedRegions.getOffset(i);
+      final int regionLength = packedRegions.getLength(i);
+      if (regionLength > 0) {
+        final int offset = service.getConvertedOffset(file, regionOffset);
+        final int length = service.getConvertedOffset(file, regionOffset + regionLength) - offset;
+        newRegions.add(offset, length, packedRegions.getTypeId(i));
       }
     }
 
-    myHighlightData.put(filePath, newRegions);
+    updateFileData(filePath, data -> data.withHighlights(newRegions));
     forceFileAnnotation(file, false);
   }
 
   void computedNavigation(@NotNull final String filePath, @NotNull final List<NavigationRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartNavigationRegion> newRegions = new ArrayList<>(regions.size());
+    final PackedNavigationRegions packedRegions = PackedNavigationRegions.of(regions);
+    final DartAnalysisServerService service = DartAnalysisServerService.getInstance();
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
-    for (NavigationRegion region : regions) {
-      if (region.getLength() > 0) {
-        final DartNavigationRegion dartNavigationRegion = createDartNavigationRegion(file, region);
-        newRegions.add(dartNavigationRegion);
+    final List<DartNavigationTarget> targets = new ArrayList<>(packedRegions.getTargets().size());
+    for (NavigationTarget target : packedRegions.getTargets()) {
+      targets.add(new DartNavigationTarget(target));
+    }
+
+    final NavigationData newRegions = new NavigationData(packedRegions.size(), targets);
+    for (int i = 0; i < packedRegions.size(); i++) {
+      final int regionOffset = packedRegions.getOffset(i);
+      final int regionLength = packedRegions.getLength(i);
+      if (regionLength > 0) {
+        final int offset = service.getConvertedOffset(file, regionOffset);
+        final int length = service.getConvertedOffset(file, regionOffset + regionLength) - offset;
+        final int targetCount = packedRegions.getTargetCount(i);
+        for (int j = 0; j < targetCount; j++) {
+          newRegions.addTarget(packedRegions.getTargetIndex(i, j));
+        }
+        newRegions.add(offset, length);
       }
     }
 
-    myNavigationData.put(filePath, newRegions);
+    updateFileData(filePath, data -> data.withNavigation(newRegions));
     forceFileAnnotation(file, true);
   }
 
@@ -125,7 +136,7 @@ public class DartServerData {
       }
     }
 
-    myOverrideData.put(filePath, newOverrides);
+    updateFileData(filePath, data -> data.withOverrides(newOverrides));
     forceFileAnnotation(file, false);
   }
 
@@ -151,57 +162,70 @@ public class DartServerData {
       newImplementedMembers.add(new DartRegion(offset, length));
     }
 
-    boolean hasChanges = false;
-    final List<DartRegion> oldClasses = myImplementedClassData.get(filePath);
-    if (oldClasses == null || !oldClasses.equals(newImplementedClasses)) {
-      hasChanges = true;
-      myImplementedClassData.put(filePath, newImplementedClasses);
-    }
-
-    final List<DartRegion> oldMembers = myImplementedMemberData.get(filePath);
-    if (oldMembers == null || !oldMembers.equals(newImplementedMembers)) {
-      hasChanges = true;
-      myImplementedMemberData.put(filePath, newImplementedMembers);
-    }
+    final FileData oldData = myFileData.get(filePath);
+    final boolean hasChanges = oldData == null ||
+                               !newImplementedClasses.equals(oldData.myImplementedClasses) ||
+                               !newImplementedMembers.equals(oldData.myImplementedMembers);
+    updateFileData(filePath, data -> data.withImplemented(newImplementedClasses, newImplementedMembers));
 
     if (hasChanges) {
       forceFileAnnotation(file, false);
     }
   }
 
+  /**
+   * Atomically replaces the record of the given file with the one returned by {@code updater}. The updater may be called more than
+   * once if the record is replaced concurrently, so it must not have side effects.
+   */
+  private void updateFileData(@NotNull final String filePath, @NotNull final Function<FileData, FileData> updater) {
+    while (true) {
+      final FileData oldData = myFileData.get(filePath);
+      final FileData newData = updater.apply(oldData != null ? oldData : FileData.EMPTY);
+      if (oldData == null ? myFileData.putIfAbsent(filePath, newData) == null : myFileData.replace(filePath, oldData, newData)) {
+        return;
+      }
+    }
+  }
+
+  @NotNull
+  private FileData getFileData(@NotNull final VirtualFile file) {
+    final FileData data = myFileData.get(file.getPath());
+    return data != null ? data : FileData.EMPTY;
+  }
+
   @NotNull
   List<DartError> getErrors(@NotNull final VirtualFile file) {
-    final List<DartError> errors = myErrorData.get(file.getPath());
+    final List<DartError> errors = getFileData(file).myErrors;
     return errors != null ? errors : Collections.emptyList();
   }
 
   @NotNull
   List<DartHighlightRegion> getHighlight(@NotNull final VirtualFile file) {
-    final List<DartHighlightRegion> regions = myHighlightData.get(file.getPath());
-    return regions != null ? regions : Collections.emptyList();
+    final HighlightData regions = getFileData(file).myHighlights;
+    return regions != null ? regions.asList() : Collections.emptyList();
   }
 
   @NotNull
   List<DartNavigationRegion> getNavigation(@NotNull final VirtualFile file) {
-    final List<DartNavigationRegion> regions = myNavigationData.get(file.getPath());
-    return regions != null ? regions : Collections.emptyList();
+    final NavigationData regions = getFileData(file).myNavigation;
+    return regions != null ? regions.asList() : Collections.emptyList();
   }
 
   @NotNull
   List<DartOverrideMember> getOverrideMembers(@NotNull final VirtualFile file) {
-    final List<DartOverrideMember> regions = myOverrideData.get(file.getPath());
+    final List<DartOverrideMember> regions = getFileData(file).myOverrides;
     return regions != null ? regions : Collections.emptyList();
   }
 
   @NotNull
   List<DartRegion> getImplementedClasses(@NotNull final VirtualFile file) {
-    final List<DartRegion> classes = myImplementedClassData.get(file.getPath());
+    final List<DartRegion> classes = getFileData(file).myImplementedClasses;
     return classes != null ? classes : Collections.emptyList();
   }
 
   @NotNull
   List<DartRegion> getImplementedMembers(@NotNull final VirtualFile file) {
-    final List<DartRegion> classes = myImplementedMemberData.get(file.getPath());
+    final List<DartRegion> classes = getFileData(file).myImplementedMembers;
     return classes != null ? classes : Collections.emptyList();
   }
 
@@ -224,54 +248,20 @@ public class DartServerData {
   }
 
   void onFileClosed(@NotNull final VirtualFile file) {
-    // do not remove from myErrorData, this map is always kept up-to-date for all files, not only for visible
-    myHighlightData.remove(file.getPath());
-    myNavigationData.remove(file.getPath());
-    myOverrideData.remove(file.getPath());
-    myImplementedClassData.remove(file.getPath());
-    myImplementedMemberData.remove(file.getPath());
+    // do not remove errors, they are always kept up-to-date for all files, not only for visible
+    myFileData.computeIfPresent(file.getPath(), (path, data) -> data.myErrors != null ? FileData.EMPTY.withErrors(data.myErrors) : null);
   }
 
   void onFlushedResults(@NotNull final List<String> filePaths) {
-    if (!myErrorData.isEmpty()) {
-      for (String path : filePaths) {
-        myErrorData.remove(path);
-      }
-    }
-    if (!myHighlightData.isEmpty()) {
-      for (String path : filePaths) {
-        myHighlightData.remove(path);
-      }
-    }
-    if (!myNavigationData.isEmpty()) {
-      for (String path : filePaths) {
-        myNavigationData.remove(path);
-      }
-    }
-    if (!myOverrideData.isEmpty()) {
-      for (String path : filePaths) {
-        myOverrideData.remove(path);
-      }
-    }
-    if (!myImplementedClassData.isEmpty()) {
-      for (String path : filePaths) {
-        myImplementedClassData.remove(path);
-      }
-    }
-    if (!myImplementedMemberData.isEmpty()) {
-      for (String path : filePaths) {
-        myImplementedMemberData.remove(path);
-      }
+    if (myFileData.isEmpty()) return;
+
+    for (String path : filePaths) {
+      myFileData.remove(path);
     }
   }
 
   void clearData() {
-    myErrorData.clear();
-    myHighlightData.clear();
-    myNavigationData.clear();
-    myOverrideData.clear();
-    myImplementedClassData.clear();
-    myImplementedMemberData.clear();
+    myFileData.clear();
   }
 
   void onDocumentChanged(@NotNull final DocumentEvent e) {
@@ -281,107 +271,337 @@ public class DartServerData {
     final String filePath = file.getPath();
     myFilePathsWithUnsentChanges.add(filePath);
 
-    updateRegionsDeletingTouched(filePath, myErrorData.get(filePath), e);
-    updateRegionsUpdatingTouched(myHighlightData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myNavigationData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myOverrideData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedClassData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedMemberData.get(filePath), e);
+    // records are immutable, so the regions are shifted in copies and the new record replaces the old one
+    myFileData.computeIfPresent(filePath, (path, data) -> new FileData(updateRegionsDeletingTouched(data.myErrors, e),
+                                                                       updateRegionsUpdatingTouched(data.myHighlights, e),
+                                                                       updateRegionsDeletingTouched(filePath, data.myNavigation, e),
+                                                                       updateRegionsDeletingTouched(data.myOverrides, e),
+                                                                       updateRegionsDeletingTouched(data.myImplementedClasses, e),
+                                                                       updateRegionsDeletingTouched(data.myImplementedMembers, e)));
   }
 
-  private static void updateRegionsDeletingTouched(@NotNull final String filePath,
-                                                   @Nullable final List<? extends DartRegion> regions,
-                                                   @NotNull final DocumentEvent e) {
-    if (regions == null) return;
+  @SuppressWarnings("unchecked")
+  @Nullable
+  private static <T extends DartRegion> List<T> updateRegionsDeletingTouched(@Nullable final List<T> regions,
+                                                                             @NotNull final DocumentEvent e) {
+    if (regions == null) return null;
 
     // delete touched regions, shift untouched
     final int eventOffset = e.getOffset();
     final int deltaLength = e.getNewLength() - e.getOldLength();
+    if (deltaLength == 0) return regions;
 
-    final Iterator<? extends DartRegion> iterator = regions.iterator();
-    while (iterator.hasNext()) {
-      final DartRegion region = iterator.next();
+    final List<T> result = new ArrayList<>(regions.size());
+    for (T region : regions) {
+      if (deltaLength > 0) {
+        // Something was typed. Shift untouched regions, delete touched.
+        if (eventOffset <= region.myOffset) {
+          result.add((T)region.withOffset(region.myOffset + deltaLength));
+        }
+        else if (!(region.myOffset < eventOffset && eventOffset < region.myOffset + region.myLength)) {
+          result.add(region);
+        }
+      }
+      else {
+        // Some text was deleted. Shift untouched regions, delete touched.
+        final int eventRightOffset = eventOffset - deltaLength;
 
-      if (region instanceof DartNavigationRegion) {
-        // may be we'd better delete target touched by editing?
-        for (DartNavigationTarget target : ((DartNavigationRegion)region).getTargets()) {
-          if (target.myFile.equals(filePath) && target.myConvertedOffset >= eventOffset) {
-            target.myConvertedOffset += deltaLength;
-          }
+        if (eventRightOffset <= region.myOffset) {
+          result.add((T)region.withOffset(region.myOffset + deltaLength));
         }
+        else if (!(eventOffset < region.myOffset + region.myLength)) {
+          result.add(region);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private static NavigationData updateRegionsDeletingTouched(@NotNull final String filePath,
+                                                            @Nullable final NavigationData regions,
+                                                            @NotNull final DocumentEvent e) {
+    if (regions == null) return null;
+
+    // delete touched regions, shift untouched
+    final int eventOffset = e.getOffset();
+    final int deltaLength = e.getNewLength() - e.getOldLength();
+
+    // targets are shared by regions, so each one is shifted once
+    // may be we'd better delete target touched by editing?
+    final List<DartNavigationTarget> targets = new ArrayList<>(regions.myTargets.size());
+    for (DartNavigationTarget target : regions.myTargets) {
+      if (target.myFile.equals(filePath) && target.myConvertedOffset >= eventOffset) {
+        targets.add(new DartNavigationTarget(target, target.myConvertedOffset + deltaLength));
       }
+      else {
+        targets.add(target);
+      }
+    }
+
+    final NavigationData result = new NavigationData(regions.mySize, targets);
+    for (int i = 0; i < regions.mySize; i++) {
+      int offset = regions.myOffsets[i];
+      final int length = regions.myLengths[i];
 
       if (deltaLength > 0) {
         // Something was typed. Shift untouched regions, delete touched.
-        if (eventOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
+        if (eventOffset <= offset) {
+          offset += deltaLength;
         }
-        else if (region.myOffset < eventOffset && eventOffset < region.myOffset + region.myLength) {
-          iterator.remove();
+        else if (offset < eventOffset && eventOffset < offset + length) {
+          continue;
         }
       }
       else if (deltaLength < 0) {
         // Some text was deleted. Shift untouched regions, delete touched.
         final int eventRightOffset = eventOffset - deltaLength;
 
-        if (eventRightOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
+        if (eventRightOffset <= offset) {
+          offset += deltaLength;
         }
-        else if (eventOffset < region.myOffset + region.myLength) {
-          iterator.remove();
+        else if (eventOffset < offset + length) {
+          continue;
         }
       }
+
+      final int targetStart = regions.myTargetStarts[i];
+      for (int j = targetStart; j < targetStart + regions.myTargetCounts[i]; j++) {
+        result.addTarget(regions.myTargetIndices[j]);
+      }
+      result.add(offset, length);
     }
+    return result;
   }
 
-  private static void updateRegionsUpdatingTouched(@Nullable final List<? extends DartRegion> regions,
-                                                   @NotNull final DocumentEvent e) {
-    if (regions == null) return;
+  @Nullable
+  private static HighlightData updateRegionsUpdatingTouched(@Nullable final HighlightData regions, @NotNull final DocumentEvent e) {
+    if (regions == null) return null;
 
     final int eventOffset = e.getOffset();
     final int deltaLength = e.getNewLength() - e.getOldLength();
 
-    final Iterator<? extends DartRegion> iterator = regions.iterator();
-    while (iterator.hasNext()) {
-      final DartRegion region = iterator.next();
+    final HighlightData result = new HighlightData(regions.mySize);
+    for (int i = 0; i < regions.mySize; i++) {
+      int offset = regions.myOffsets[i];
+      int length = regions.myLengths[i];
 
       if (deltaLength > 0) {
         // Something was typed. Shift untouched regions, update touched.
-        if (eventOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
+        if (eventOffset <= offset) {
+          offset += deltaLength;
         }
-        else if (region.myOffset < eventOffset && eventOffset < region.myOffset + region.myLength) {
-          region.myLength += deltaLength;
+        else if (offset < eventOffset && eventOffset < offset + length) {
+          length += deltaLength;
         }
       }
       else if (deltaLength < 0) {
         // Some text was deleted. Shift untouched regions, delete or update touched.
         final int eventRightOffset = eventOffset - deltaLength;
-        final int regionRightOffset = region.myOffset + region.myLength;
+        final int regionRightOffset = offset + length;
 
-        if (eventRightOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
+        if (eventRightOffset <= offset) {
+          offset += deltaLength;
         }
-        else if (region.myOffset <= eventOffset && eventRightOffset <= regionRightOffset && region.myLength != -deltaLength) {
-          region.myLength += deltaLength;
+        else if (offset <= eventOffset && eventRightOffset <= regionRightOffset && length != -deltaLength) {
+          length += deltaLength;
         }
         else if (eventOffset < regionRightOffset) {
-          iterator.remove();
+          continue;
         }
       }
+
+      result.add(offset, length, regions.myTypeIds[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Analysis results of one file. Records are immutable: {@link HighlightData}, {@link NavigationData} and the lists are not modified
+   * after the record is published, an update creates a new record. So readers get a consistent snapshot without locking.
+   * {@code null} fields mean that the server has not sent the corresponding notification yet.
+   */
+  private static class FileData {
+    private static final FileData EMPTY = new FileData(null, null, null, null, null, null);
+
+    @Nullable private final List<DartError> myErrors;
+    @Nullable private final HighlightData myHighlights;
+    @Nullable private final NavigationData myNavigation;
+    @Nullable private final List<DartOverrideMember> myOverrides;
+    @Nullable private final List<DartRegion> myImplementedClasses;
+    @Nullable private final List<DartRegion> myImplementedMembers;
+
+    private FileData(@Nullable final List<DartError> errors,
+                     @Nullable final HighlightData highlights,
+                     @Nullable final NavigationData navigation,
+                     @Nullable final List<DartOverrideMember> overrides,
+                     @Nullable final List<DartRegion> implementedClasses,
+                     @Nullable final List<DartRegion> implementedMembers) {
+      myErrors = errors;
+      myHighlights = highlights;
+      myNavigation = navigation;
+      myOverrides = overrides;
+      myImplementedClasses = implementedClasses;
+      myImplementedMembers = implementedMembers;
+    }
+
+    @NotNull
+    private FileData withErrors(@NotNull final List<DartError> errors) {
+      return new FileData(errors, myHighlights, myNavigation, myOverrides, myImplementedClasses, myImplementedMembers);
+    }
+
+    @NotNull
+    private FileData withHighlights(@NotNull final HighlightData highlights) {
+      return new FileData(myErrors, highlights, myNavigation, myOverrides, myImplementedClasses, myImplementedMembers);
+    }
+
+    @NotNull
+    private FileData withNavigation(@NotNull final NavigationData navigation) {
+      return new FileData(myErrors, myHighlights, navigation, myOverrides, myImplementedClasses, myImplementedMembers);
+    }
+
+    @NotNull
+    private FileData withOverrides(@NotNull final List<DartOverrideMember> overrides) {
+      return new FileData(myErrors, myHighlights, myNavigation, overrides, myImplementedClasses, myImplementedMembers);
+    }
+
+    @NotNull
+    private FileData withImplemented(@NotNull final List<DartRegion> implementedClasses,
+                                     @NotNull final List<DartRegion> implementedMembers) {
+      return new FileData(myErrors, myHighlights, myNavigation, myOverrides, implementedClasses, implementedMembers);
+    }
+  }
+
+  /**
+   * Highlight regions of a file with converted offsets, stored as parallel arrays. Types are stored as ids returned by
+   * {@link PackedHighlightRegions#getTypeId(String)}.
+   */
+  private static class HighlightData {
+    private int[] myOffsets;
+    private int[] myLengths;
+    private int[] myTypeIds;
+    private int mySize;
+
+    private HighlightData(final int capacity) {
+      myOffsets = new int[Math.max(capacity, 1)];
+      myLengths = new int[myOffsets.length];
+      myTypeIds = new int[myOffsets.length];
+    }
+
+    private void add(final int offset, final int length, final int typeId) {
+      if (mySize == myOffsets.length) {
+        myOffsets = Arrays.copyOf(myOffsets, mySize * 2);
+        myLengths = Arrays.copyOf(myLengths, mySize * 2);
+        myTypeIds = Arrays.copyOf(myTypeIds, mySize * 2);
+      }
+      myOffsets[mySize] = offset;
+      myLengths[mySize] = length;
+      myTypeIds[mySize] = typeId;
+      mySize++;
+    }
+
+    @NotNull
+    private List<DartHighlightRegion> asList() {
+      return new AbstractList<DartHighlightRegion>() {
+        @Override
+        public DartHighlightRegion get(final int index) {
+          return new DartHighlightRegion(myOffsets[index], myLengths[index], PackedHighlightRegions.getType(myTypeIds[index]));
+        }
+
+        @Override
+        public int size() {
+          return mySize;
+        }
+      };
     }
   }
 
+  /**
+   * Navigation regions of a file with converted offsets, stored as parallel arrays. Targets are shared by all regions that refer to
+   * them, each region keeps the range of its target indices in {@link #myTargetIndices}.
+   */
+  private static class NavigationData {
+    private int[] myOffsets;
+    private int[] myLengths;
+    private int[] myTargetStarts;
+    private int[] myTargetCounts;
+    private int[] myTargetIndices;
+    private int myTargetIndexCount;
+    private int mySize;
+    @NotNull private final List<DartNavigationTarget> myTargets;
+
+    private NavigationData(final int capacity, @NotNull final List<DartNavigationTarget> targets) {
+      myOffsets = new int[Math.max(capacity, 1)];
+      myLengths = new int[myOffsets.length];
+      myTargetStarts = new int[myOffsets.length];
+      myTargetCounts = new int[myOffsets.length];
+      myTargetIndices = new int[myOffsets.length];
+      myTargets = targets;
+    }
+
+    /**
+     * Appends a target index to the region that will be added by the next {@link #add(int, int)} call.
+     */
+    private void addTarget(final int targetIndex) {
+      if (myTargetIndexCount == myTargetIndices.length) {
+        myTargetIndices = Arrays.copyOf(myTargetIndices, myTargetIndexCount * 2);
+      }
+      myTargetIndices[myTargetIndexCount++] = targetIndex;
+    }
+
+    private void add(final int offset, final int length) {
+      if (mySize == myOffsets.length) {
+        myOffsets = Arrays.copyOf(myOffsets, mySize * 2);
+        myLengths = Arrays.copyOf(myLengths, mySize * 2);
+        myTargetStarts = Arrays.copyOf(myTargetStarts, mySize * 2);
+        myTargetCounts = Arrays.copyOf(myTargetCounts, mySize * 2);
+      }
+      final int targetStart = mySize == 0 ? 0 : myTargetStarts[mySize - 1] + myTargetCounts[mySize - 1];
+      myOffsets[mySize] = offset;
+      myLengths[mySize] = length;
+      myTargetStarts[mySize] = targetStart;
+      myTargetCounts[mySize] = myTargetIndexCount - targetStart;
+      mySize++;
+    }
+
+    @NotNull
+    private List<DartNavigationRegion> asList() {
+      return new AbstractList<DartNavigationRegion>() {
+        @Override
+        public DartNavigationRegion get(final int index) {
+          final SmartList<DartNavigationTarget> targets = new SmartList<>();
+          final int targetStart = myTargetStarts[index];
+          for (int i = targetStart; i < targetStart + myTargetCounts[index]; i++) {
+            targets.add(myTargets.get(myTargetIndices[i]));
+          }
+          return new DartNavigationRegion(myOffsets[index], myLengths[index], targets);
+        }
+
+        @Override
+        public int size() {
+          return mySize;
+        }
+      };
+    }
+  }
 
   public static class DartRegion {
-    protected int myOffset;
-    protected int myLength;
+    protected final int myOffset;
+    protected final int myLength;
 
     DartRegion(final int offset, final int length) {
       myOffset = offset;
       myLength = length;
     }
 
+    /**
+     * Regions are shared by snapshots of {@link FileData}, so a shifted region is a copy. Subclasses return a copy of their own type.
+     */
+    @NotNull
+    DartRegion withOffset(final int offset) {
+      return new DartRegion(offset, myLength);
+    }
+
     public final int getOffset() {
       return myOffset;
     }
@@ -406,7 +626,13 @@ public class DartServerData {
 
     private DartHighlightRegion(final int offset, final int length, @NotNull final String type) {
       super(offset, length);
-      this.type = type.intern();
+      this.type = type;
+    }
+
+    @NotNull
+    @Override
+    DartHighlightRegion withOffset(final int offset) {
+      return new DartHighlightRegion(offset, myLength, type);
     }
 
     public String getType() {
@@ -428,6 +654,20 @@ public class DartServerData {
       myMessage = error.getMessage();
     }
 
+    private DartError(@NotNull final DartError error, final int correctedOffset) {
+      super(correctedOffset, error.myLength);
+      myAnalysisErrorFileSD = error.myAnalysisErrorFileSD;
+      mySeverity = error.mySeverity;
+      myCode = error.myCode;
+      myMessage = error.myMessage;
+    }
+
+    @NotNull
+    @Override
+    DartError withOffset(final int offset) {
+      return new DartError(this, offset);
+    }
+
     public String getAnalysisErrorFileSD() {
       return myAnalysisErrorFileSD;
     }
@@ -454,6 +694,12 @@ public class DartServerData {
       myTargets = targets;
     }
 
+    @NotNull
+    @Override
+    DartNavigationRegion withOffset(final int offset) {
+      return new DartNavigationRegion(offset, myLength, myTargets);
+    }
+
     @Override
     public String toString() {
       return "DartNavigationRegion(" + myOffset + ", " + myLength + ")";
@@ -477,6 +723,13 @@ public class DartServerData {
       myKind = target.getKind().intern();
     }
 
+    private DartNavigationTarget(@NotNull final DartNavigationTarget target, final int convertedOffset) {
+      myFile = target.myFile;
+      myOriginalOffset = target.myOriginalOffset;
+      myKind = target.myKind;
+      myConvertedOffset = convertedOffset;
+    }
+
     public String getFile() {
       return myFile;
     }
@@ -506,6 +759,12 @@ public class DartServerData {
       myInterfaceMembers = interfaceMembers;
     }
 
+    @NotNull
+    @Override
+    DartOverrideMember withOffset(final int offset) {
+      return new DartOverrideMember(offset, myLength, mySuperclassMember, myInterfaceMembers);
+    }
+
     @Nullable
     public OverriddenMember getSuperclassMember() {
       return mySuperclassMember;
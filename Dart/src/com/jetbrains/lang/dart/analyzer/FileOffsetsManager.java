@@ -1,12 +1,14 @@
 package com.jetbrains.lang.dart.analyzer;
 
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.containers.IntArrayList;
 import com.intellij.util.text.CharArrayUtil;
-import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -14,16 +16,26 @@ import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Converts offsets between the file content as the Analysis Server sees it (with original line separators) and the IDE document
+ * (with \n line separators). Line tables are cached per file; the cache is bounded and evicts the least recently used files.
+ */
 public class FileOffsetsManager {
+  private static final int MAX_CACHED_FILES = 1000;
 
-  private final Map<VirtualFile, LineOffsets> myLineOffsetsMap = new THashMap<>();
+  private final ConcurrentMap<VirtualFile, LineOffsets> myLineOffsetsMap = new ConcurrentHashMap<>();
+  private final AtomicLong myAccessCounter = new AtomicLong();
 
   private static class LineOffsets {
     private final long myFileModificationStamp; // todo stamp outside of this class
     private final int[] myOriginalLineOffsets;
     private final int[] myConvertedLineOffsets;
     private final boolean myLineOffsetsAreTheSame;
+    private volatile long myLastAccess;
 
     public LineOffsets(final long modificationStamp, @NotNull final int[] originalLineOffsets, @NotNull final int[] convertedLineOffsets) {
       assert originalLineOffsets.length > 0 && convertedLineOffsets.length > 0 && originalLineOffsets.length == convertedLineOffsets.length
@@ -65,30 +77,139 @@ public class FileOffsetsManager {
   @NotNull
   private LineOffsets getLineOffsets(@NotNull final VirtualFile file) {
     LineOffsets offsets = myLineOffsetsMap.get(file);
-    if (offsets != null && file.getModificationStamp() == offsets.myFileModificationStamp) {
-      return offsets;
+    if (offsets == null || file.getModificationStamp() != offsets.myFileModificationStamp) {
+      // concurrent callers may compute the same offsets twice, that's cheaper than blocking readers of other files
+      offsets = loadLineOffsets(file);
+      myLineOffsetsMap.put(file, offsets);
+      if (myLineOffsetsMap.size() > MAX_CACHED_FILES) {
+        evictLeastRecentlyUsed();
+      }
     }
 
-    offsets = loadLineOffsets(file);
-    myLineOffsetsMap.put(file, offsets);
+    offsets.myLastAccess = myAccessCounter.incrementAndGet();
     return offsets;
   }
 
+  /**
+   * Removes a quarter of cached files, those that were accessed long ago. Called rarely, so sorting here is cheaper than keeping
+   * an access-ordered structure that every lookup would have to lock.
+   */
+  private void evictLeastRecentlyUsed() {
+    final long[] accessTimes = new long[myLineOffsetsMap.size()];
+    int count = 0;
+    for (LineOffsets offsets : myLineOffsetsMap.values()) {
+      if (count == accessTimes.length) break;
+      accessTimes[count++] = offsets.myLastAccess;
+    }
+    if (count == 0) return;
+
+    Arrays.sort(accessTimes, 0, count);
+    final long threshold = accessTimes[count / 4];
+
+    for (Map.Entry<VirtualFile, LineOffsets> entry : myLineOffsetsMap.entrySet()) {
+      if (entry.getValue().myLastAccess < threshold) {
+        myLineOffsetsMap.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
   @NotNull
   // similar to com.intellij.openapi.fileEditor.impl.LoadTextUtil.loadText()
   private static LineOffsets loadLineOffsets(@NotNull final VirtualFile file) {
     assert !file.getFileType().isBinary();
 
+    final long modificationStamp = file.getModificationStamp();
     try {
       byte[] bytes = file.contentsToByteArray();
       final Charset charset = LoadTextUtil.detectCharsetAndSetBOM(file, bytes);
       final byte[] bom = file.getBOM();
       final int bomLength = bom == null ? 0 : bom.length;
-      return loadLineOffsets(bytes, charset, bomLength, file.getModificationStamp());
+
+      if (isAsciiCompatible(charset)) {
+        final IntArrayList lineBreaks = findCrLfLineBreaks(bytes, bomLength);
+        if (lineBreaks == null) {
+          // the most common case: only \n line separators, offsets are the same
+          return new LineOffsets(modificationStamp, new int[]{0}, new int[]{0});
+        }
+
+        final LineOffsets offsets = loadLineOffsets(FileDocumentManager.getInstance().getCachedDocument(file), lineBreaks, modificationStamp);
+        if (offsets != null) {
+          return offsets;
+        }
+      }
+
+      return loadLineOffsets(bytes, charset, bomLength, modificationStamp);
     }
     catch (IOException e) {
-      return new LineOffsets(file.getModificationStamp(), new int[]{0}, new int[]{0});
+      return new LineOffsets(modificationStamp, new int[]{0}, new int[]{0});
+    }
+  }
+
+  private static boolean isAsciiCompatible(@NotNull final Charset charset) {
+    // true for UTF-8, ISO-8859-x, windows-125x and the like: bytes 13 and 10 are never a part of a multibyte character
+    return Arrays.equals("\r\n".getBytes(charset), new byte[]{'\r', '\n'});
+  }
+
+  /**
+   * Finds all line separators in the given bytes.
+   *
+   * @return {@code null} if there are no \r characters, otherwise the length (1 or 2) of each line separator in the order they occur
+   */
+  @Nullable
+  private static IntArrayList findCrLfLineBreaks(@NotNull final byte[] bytes, final int startOffset) {
+    if (!containsCr(bytes, startOffset)) return null;
+
+    final IntArrayList lineBreaks = new IntArrayList();
+    for (int i = startOffset; i < bytes.length; i++) {
+      if (bytes[i] == '\n') {
+        lineBreaks.add(1);
+      }
+      else if (bytes[i] == '\r') {
+        if (i + 1 < bytes.length && bytes[i + 1] == '\n') {
+          lineBreaks.add(2);
+          i++;
+        }
+        else {
+          lineBreaks.add(1);
+        }
+      }
+    }
+    return lineBreaks;
+  }
+
+  private static boolean containsCr(@NotNull final byte[] bytes, final int startOffset) {
+    for (int i = startOffset; i < bytes.length; i++) {
+      if (bytes[i] == '\r') return true;
+    }
+    return false;
+  }
+
+  /**
+   * Builds line offsets using line start offsets of the document, so that the file content doesn't need to be decoded.
+   * Possible only if the document is not modified, i.e. it has the same lines as the file.
+   *
+   * @return {@code null} if the document can't be used
+   */
+  @Nullable
+  private static LineOffsets loadLineOffsets(@Nullable final Document document,
+                                             @NotNull final IntArrayList lineBreaks,
+                                             final long modificationStamp) {
+    if (document == null ||
+        FileDocumentManager.getInstance().isDocumentUnsaved(document) ||
+        document.getLineCount() != lineBreaks.size() + 1) {
+      return null;
+    }
+
+    final int lineCount = lineBreaks.size() + 1;
+    final int[] originalLineOffsets = new int[lineCount];
+    final int[] convertedLineOffsets = new int[lineCount];
+    int extraChars = 0;
+    for (int line = 1; line < lineCount; line++) {
+      extraChars += lineBreaks.get(line - 1) - 1;
+      convertedLineOffsets[line] = document.getLineStartOffset(line);
+      originalLineOffsets[line] = convertedLineOffsets[line] + extraChars;
     }
+    return new LineOffsets(modificationStamp, originalLineOffsets, convertedLineOffsets);
   }
 
   @NotNull
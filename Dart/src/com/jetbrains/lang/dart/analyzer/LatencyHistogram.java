@@ -0,0 +1,62 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of request latencies. Buckets grow exponentially (about 19% each), so percentiles are reported with the same
+ * relative precision for 1 ms and for 10 s responses.
+ */
+class LatencyHistogram {
+  private static final double BUCKET_GROWTH = 1.1892; // 2^(1/4)
+  private static final int BUCKET_COUNT = 80; // up to about 10^6 ms
+  private static final double LOG_GROWTH = Math.log(BUCKET_GROWTH);
+
+  private final AtomicLongArray myCounts = new AtomicLongArray(BUCKET_COUNT);
+
+  void record(final long millis) {
+    myCounts.incrementAndGet(bucketIndex(millis));
+  }
+
+  long getCount() {
+    long result = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      result += myCounts.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the upper bound of the bucket in which the given percentile falls, or -1 if nothing has been recorded.
+   *
+   * @param percentile from 0 to 100
+   */
+  long getPercentile(final double percentile) {
+    final long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = myCounts.get(i);
+      total += counts[i];
+    }
+    if (total == 0) return -1;
+
+    final long rank = Math.max(1, (long)Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return bucketUpperBound(i);
+      }
+    }
+    return bucketUpperBound(BUCKET_COUNT - 1);
+  }
+
+  private static int bucketIndex(final long millis) {
+    if (millis <= 1) return 0;
+    final int index = (int)Math.ceil(Math.log(millis) / LOG_GROWTH);
+    return Math.min(index, BUCKET_COUNT - 1);
+  }
+
+  private static long bucketUpperBound(final int index) {
+    return Math.round(Math.pow(BUCKET_GROWTH, index));
+  }
+}
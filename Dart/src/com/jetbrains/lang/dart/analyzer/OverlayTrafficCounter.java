@@ -0,0 +1,73 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Counts how many bytes of file content are sent to the Analysis Server with 'analysis.updateContent' requests, both as full
+ * overlays and as incremental edits, so that the traffic can be compared. Rates are reported per completed one-second window.
+ */
+class OverlayTrafficCounter {
+  private static final Logger LOG = Logger.getInstance(OverlayTrafficCounter.class.getName());
+  private static final long WINDOW_MILLIS = 1000;
+
+  private long myWindowStart = System.currentTimeMillis();
+  private long myWindowFullBytes;
+  private long myWindowEditBytes;
+  private long myLastBytesPerSecond;
+
+  synchronized void fullContentSent(@NotNull final CharSequence content) {
+    final long bytes = utf8Length(content);
+    rollWindow();
+    myWindowFullBytes += bytes;
+  }
+
+  synchronized void editSent(@NotNull final CharSequence replacement) {
+    final long bytes = utf8Length(replacement);
+    rollWindow();
+    myWindowEditBytes += bytes;
+  }
+
+  /**
+   * Returns the number of content bytes sent during the last completed one-second window.
+   */
+  synchronized long getBytesPerSecond() {
+    rollWindow();
+    return myLastBytesPerSecond;
+  }
+
+  private void rollWindow() {
+    final long now = System.currentTimeMillis();
+    if (now - myWindowStart < WINDOW_MILLIS) return;
+
+    // a window without traffic after a long pause means the rate is 0
+    myLastBytesPerSecond = now - myWindowStart < 2 * WINDOW_MILLIS ? myWindowFullBytes + myWindowEditBytes : 0;
+    if (LOG.isDebugEnabled() && myWindowFullBytes + myWindowEditBytes > 0) {
+      LOG.debug("analysis.updateContent: " + myWindowFullBytes + " bytes of full content, " + myWindowEditBytes + " bytes of edits");
+    }
+    myWindowStart = now;
+    myWindowFullBytes = 0;
+    myWindowEditBytes = 0;
+  }
+
+  private static long utf8Length(@NotNull final CharSequence text) {
+    long result = 0;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c < 0x80) {
+        result++;
+      }
+      else if (c < 0x800) {
+        result += 2;
+      }
+      else if (Character.isHighSurrogate(c)) {
+        result += 4;
+        i++;
+      }
+      else {
+        result += 3;
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,20 @@
+package com.jetbrains.lang.dart.ide.errorTreeView;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.ui.Messages;
+import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+
+/**
+ * Internal action that shows request latencies, overlay traffic and request sink statistics of the Dart Analysis Server connection.
+ */
+public class DartAnalysisServerDiagnosticsAction extends DumbAwareAction {
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    final DartAnalysisServerService service = DartAnalysisServerService.getInstance();
+    final String message = service.getRequestLatencyReport() +
+                           "\noverlay traffic: " + service.getOverlayBytesPerSecond() + " bytes/s" +
+                           "\nrequest sink: " + service.getRequestSinkReport();
+    Messages.showInfoMessage(e.getProject(), message, "Dart Analysis Server Diagnostics");
+  }
+}
@@ -0,0 +1,692 @@
+package com.jetbrains.lang.dart.ide.index;
+
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+import com.intellij.util.containers.IntArrayList;
+import com.jetbrains.lang.dart.DartComponentType;
+import com.jetbrains.lang.dart.DartTokenTypesSets;
+import com.jetbrains.lang.dart.lexer.DartLexer;
+import com.jetbrains.lang.dart.util.DartPsiImplUtil;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.jetbrains.lang.dart.DartTokenTypes.*;
+
+/**
+ * Computes {@link DartFileIndexData} of a Dart file using only {@link DartLexer}, without building PSI. Function bodies and
+ * initializers are skipped by matching brackets, only declarations and directives are looked at.
+ * <p/>
+ * The result must be the same as the one computed by PSI-based {@link DartIndexUtil#indexFile}. If the file contains something
+ * this indexer doesn't fully understand (syntax errors, 'part of' with URI, configurable imports, etc.) it returns {@code null}
+ * and the caller falls back to PSI.
+ */
+final class DartLexerIndexer {
+  private static final TokenSet SKIPPED_TOKENS = TokenSet.create(DartTokenTypesSets.WHITE_SPACE,
+                                                                 DartTokenTypesSets.SINGLE_LINE_COMMENT,
+                                                                 DartTokenTypesSets.SINGLE_LINE_DOC_COMMENT,
+                                                                 DartTokenTypesSets.MULTI_LINE_COMMENT,
+                                                                 DartTokenTypesSets.MULTI_LINE_DOC_COMMENT);
+
+  private static final TokenSet MODIFIERS = TokenSet.create(EXTERNAL, STATIC, CONST, FINAL, VAR);
+
+  /**
+   * Thrown when the file can't be indexed without PSI.
+   */
+  private static class UnsupportedSyntaxException extends Exception {
+    private UnsupportedSyntaxException() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final UnsupportedSyntaxException UNSUPPORTED = new UnsupportedSyntaxException();
+
+  private static class ImportOrExport {
+    private final DartImportOrExportInfo myInfo;
+    @Nullable private final String myPrefix;
+
+    private ImportOrExport(@NotNull final DartImportOrExportInfo info, @Nullable final String prefix) {
+      myInfo = info;
+      myPrefix = prefix;
+    }
+  }
+
+  @NotNull private final CharSequence myText;
+  private final List<IElementType> myTypes = new ArrayList<>();
+  private final IntArrayList myStarts = new IntArrayList();
+  private final IntArrayList myEnds = new IntArrayList();
+  private int myPos;
+
+  @NotNull private final DartFileIndexData myResult = new DartFileIndexData();
+  private final List<ImportOrExport> myImportsAndExports = new ArrayList<>();
+  // declarations are collected first because their component infos need the library name that may be declared later in the file
+  private final List<String> myTopLevelNames = new ArrayList<>();
+  private final List<DartComponentType> myTopLevelTypes = new ArrayList<>();
+  @Nullable private String myLibraryName;
+  @Nullable private String myPartOfLibraryName;
+
+  private DartLexerIndexer(@NotNull final CharSequence text) {
+    myText = text;
+
+    final DartLexer lexer = new DartLexer();
+    lexer.start(text);
+    IElementType type;
+    while ((type = lexer.getTokenType()) != null) {
+      if (!SKIPPED_TOKENS.contains(type)) {
+        myTypes.add(type);
+        myStarts.add(lexer.getTokenStart());
+        myEnds.add(lexer.getTokenEnd());
+      }
+      lexer.advance();
+    }
+  }
+
+  /**
+   * @return {@code null} if PSI is needed to index this file
+   */
+  @Nullable
+  static DartFileIndexData indexFile(@NotNull final CharSequence text, @NotNull final String fileName) {
+    final DartLexerIndexer indexer = new DartLexerIndexer(text);
+    try {
+      indexer.parseUnit();
+    }
+    catch (UnsupportedSyntaxException e) {
+      return null;
+    }
+    return indexer.buildResult(fileName);
+  }
+
+  @NotNull
+  private DartFileIndexData buildResult(@NotNull final String fileName) {
+    // same as DartResolveUtil.getLibraryName()
+    myResult.setLibraryName(myLibraryName != null ? myLibraryName : myPartOfLibraryName != null ? myPartOfLibraryName : fileName);
+    myResult.setIsPart(myPartOfLibraryName != null);
+
+    for (int i = 0; i < myTopLevelNames.size(); i++) {
+      // same as DartIndexUtil: declarations of unknown type are symbols without component info
+      final DartComponentType type = myTopLevelTypes.get(i);
+      if (type != null) {
+        myResult.addComponentInfo(myTopLevelNames.get(i), new DartComponentInfo(type, myResult.getLibraryName()));
+      }
+    }
+
+    for (ImportOrExport importOrExport : myImportsAndExports) {
+      myResult.addImportInfo(importOrExport.myInfo);
+      myResult.addComponentInfo(importOrExport.myPrefix, new DartComponentInfo(DartComponentType.LABEL, null));
+    }
+
+    return myResult;
+  }
+
+  private void parseUnit() throws UnsupportedSyntaxException {
+    while (!eof()) {
+      skipMetadata();
+
+      final IElementType type = type();
+      if (type == LIBRARY && isName(1) && (is(2, DOT) || is(2, SEMICOLON))) {
+        parseLibrary();
+      }
+      else if (type == PART && is(1, OF)) {
+        parsePartOf();
+      }
+      else if (type == PART && isString(1)) {
+        myPos++;
+        myResult.addPartUri(parseUri());
+        expect(SEMICOLON);
+      }
+      else if ((type == IMPORT || type == EXPORT) && isString(1)) {
+        parseImportOrExport();
+      }
+      else if (type == CLASS || type == ABSTRACT && is(1, CLASS)) {
+        parseClass();
+      }
+      else if (type == ENUM) {
+        parseEnum();
+      }
+      else if (type == TYPEDEF && !is(1, SEMICOLON) && !is(1, EQ) && !is(1, COMMA)) {
+        parseTypedef();
+      }
+      else {
+        parseDeclaration(false);
+      }
+    }
+  }
+
+  private void parseLibrary() throws UnsupportedSyntaxException {
+    myPos++;
+    final StringBuilder name = new StringBuilder();
+    name.append(parseName());
+    while (is(0, DOT)) {
+      myPos++;
+      name.append('.').append(parseName());
+    }
+    expect(SEMICOLON);
+
+    if (myLibraryName == null) {
+      myLibraryName = name.toString();
+    }
+  }
+
+  private void parsePartOf() throws UnsupportedSyntaxException {
+    myPos += 2;
+    // 'part of' with URI: library name is taken from another file
+    if (!isName(0)) throw UNSUPPORTED;
+
+    final int start = myStarts.get(myPos);
+    parseName();
+    while (is(0, DOT)) {
+      myPos++;
+      parseName();
+    }
+    final int end = myEnds.get(myPos - 1);
+    expect(SEMICOLON);
+
+    if (myPartOfLibraryName == null) {
+      myPartOfLibraryName = myText.subSequence(start, end).toString();
+    }
+  }
+
+  private void parseImportOrExport() throws UnsupportedSyntaxException {
+    final DartImportOrExportInfo.Kind kind = type() == IMPORT ? DartImportOrExportInfo.Kind.Import : DartImportOrExportInfo.Kind.Export;
+    myPos++;
+    final String uri = parseUri();
+
+    String prefix = null;
+    if (kind == DartImportOrExportInfo.Kind.Import) {
+      if (is(0, DEFERRED) && is(1, AS)) {
+        myPos++;
+      }
+      if (is(0, AS) && isName(1)) {
+        myPos++;
+        prefix = parseName();
+      }
+    }
+
+    final Set<String> showComponentNames = new THashSet<>();
+    final Set<String> hideComponentNames = new THashSet<>();
+    while (is(0, SHOW) || is(0, HIDE)) {
+      final Set<String> names = type() == SHOW ? showComponentNames : hideComponentNames;
+      myPos++;
+      names.add(parseName());
+      while (is(0, COMMA)) {
+        myPos++;
+        names.add(parseName());
+      }
+    }
+    expect(SEMICOLON);
+
+    myImportsAndExports.add(new ImportOrExport(new DartImportOrExportInfo(kind, uri, prefix, showComponentNames, hideComponentNames),
+                                               prefix));
+  }
+
+  private void parseClass() throws UnsupportedSyntaxException {
+    if (type() == ABSTRACT) myPos++;
+    myPos++; // 'class'
+
+    final String name = parseName();
+    addTopLevel(name, DartComponentType.CLASS);
+    myResult.addClassName(name);
+
+    // header: type parameters, superclass, mixins, interfaces, native clause. There are no braces in it.
+    while (!eof() && !is(0, LBRACE) && !is(0, SEMICOLON)) {
+      if (is(0, RBRACE) || is(0, LPAREN)) throw UNSUPPORTED;
+      myPos++;
+    }
+
+    if (is(0, SEMICOLON)) {
+      // mixin application, no members
+      myPos++;
+      return;
+    }
+
+    expect(LBRACE);
+    while (!is(0, RBRACE)) {
+      if (eof()) throw UNSUPPORTED;
+      skipMetadata();
+      if (is(0, RBRACE)) break;
+      parseDeclaration(true);
+    }
+    myPos++;
+  }
+
+  private void parseEnum() throws UnsupportedSyntaxException {
+    myPos++;
+    final String name = parseName();
+    addTopLevel(name, DartComponentType.CLASS);
+    myResult.addClassName(name);
+
+    expect(LBRACE);
+    myResult.addSymbol(parseName());
+    while (is(0, COMMA)) {
+      myPos++;
+      if (is(0, RBRACE)) break;
+      myResult.addSymbol(parseName());
+    }
+    expect(RBRACE);
+  }
+
+  private void parseTypedef() throws UnsupportedSyntaxException {
+    myPos++;
+
+    // functionPrefix ::= returnType componentName | componentName
+    String name;
+    if (is(0, VOID)) {
+      myPos++;
+      name = parseName();
+    }
+    else {
+      name = parseName();
+      if (!is(0, LPAREN) && !is(0, LT)) {
+        myPos--;
+        skipType();
+        name = parseName();
+      }
+    }
+    addTopLevel(name, DartComponentType.TYPEDEF);
+
+    if (is(0, LT)) {
+      skipTypeArguments();
+    }
+    if (!is(0, LPAREN)) throw UNSUPPORTED;
+    skipBalanced();
+    expect(SEMICOLON);
+  }
+
+  /**
+   * Parses a function, a getter, a setter or a variable declaration list, or a class member: also a method, an operator or a constructor.
+   */
+  private void parseDeclaration(final boolean classMember) throws UnsupportedSyntaxException {
+    boolean isFactory = false;
+    while (MODIFIERS.contains(type()) || classMember && type() == FACTORY && isName(1)) {
+      if (type() == FACTORY) isFactory = true;
+      myPos++;
+    }
+
+    if (isFactory) {
+      // factory Name(...) or factory Name.name(...): only the second name is the name of the component,
+      // an unnamed factory has no name at all, see DartPsiImplUtil.getComponentName(DartFactoryConstructorDeclaration)
+      parseName();
+      if (is(0, DOT)) {
+        myPos++;
+        myResult.addSymbol(parseName());
+      }
+      if (!is(0, LPAREN)) throw UNSUPPORTED;
+      skipFunctionTail();
+      return;
+    }
+
+    if (classMember && isName(0) && is(1, DOT) && isName(2) && is(3, LPAREN)) {
+      // named constructor
+      myPos += 2;
+      myResult.addSymbol(parseName());
+      skipFunctionTail();
+      return;
+    }
+
+    // [returnType] ('get' | 'set' | 'operator')? name
+    boolean typeSkipped = false;
+    while (true) {
+      if ((type() == GET || type() == SET) && isName(1)) {
+        myPos++;
+        final String name = parseName();
+        // DartComponentType.typeOf(): a getter or a setter is a METHOD in a class and a FUNCTION at top level
+        addDeclaration(classMember, name, DartComponentType.FUNCTION);
+        if (is(0, LPAREN)) {
+          skipBalanced();
+        }
+        skipFunctionBody();
+        return;
+      }
+
+      if (classMember && type() == OPERATOR && isOperatorStart(1)) {
+        myPos++;
+        final int start = myPos;
+        while (!eof() && !is(0, LPAREN)) {
+          myPos++;
+        }
+        if (myPos == start) throw UNSUPPORTED;
+        // the name is the text of all operator tokens, like the leaf collapsed by DartGeneratedParserUtilBase.methodNameWrapper()
+        myResult.addSymbol(myText.subSequence(myStarts.get(start), myEnds.get(myPos - 1)).toString());
+        skipFunctionTail();
+        return;
+      }
+
+      if (!isName(0) && type() != VOID) throw UNSUPPORTED;
+
+      if (isName(0) && (is(1, LPAREN) || is(1, LT) && !typeSkipped && looksLikeTypeParametersBeforeParameters())) {
+        // function or method
+        final String name = parseName();
+        addDeclaration(classMember, name, DartComponentType.FUNCTION);
+        if (is(0, LT)) {
+          skipTypeArguments();
+        }
+        skipFunctionTail();
+        return;
+      }
+
+      if (isName(0) && typeSkipped && (is(1, SEMICOLON) || is(1, EQ) || is(1, COMMA))) {
+        parseVariables(classMember);
+        return;
+      }
+
+      if (isName(0) && !typeSkipped && (is(1, SEMICOLON) || is(1, EQ) || is(1, COMMA))) {
+        // 'var x', 'final x', 'const x'
+        if (!isModifier(-1)) throw UNSUPPORTED;
+        parseVariables(classMember);
+        return;
+      }
+
+      if (typeSkipped) throw UNSUPPORTED;
+      if (type() == VOID) {
+        myPos++;
+      }
+      else {
+        skipType();
+      }
+      typeSkipped = true;
+    }
+  }
+
+  /**
+   * 'operator' followed by such token is an operator declaration, not a method, field or type named 'operator'.
+   * '<' is the 'less than' operator only if it is followed by '(', otherwise it starts type arguments.
+   */
+  private boolean isOperatorStart(final int offset) {
+    final int index = myPos + offset;
+    if (index >= myTypes.size()) return false;
+    final IElementType type = myTypes.get(index);
+    if (type == LT) {
+      return index + 1 < myTypes.size() && myTypes.get(index + 1) == LPAREN;
+    }
+    return type != LPAREN && type != SEMICOLON && type != EQ && type != COMMA && type != DOT && !isNameType(type);
+  }
+
+  private boolean isModifier(final int offset) {
+    return myPos + offset >= 0 && MODIFIERS.contains(myTypes.get(myPos + offset));
+  }
+
+  /**
+   * Checks that '<' at {@code myPos + 1} starts type parameters followed by a formal parameter list, like in {@code foo<T>(T t)}.
+   */
+  private boolean looksLikeTypeParametersBeforeParameters() {
+    int depth = 0;
+    for (int i = myPos + 1; i < myTypes.size(); i++) {
+      final IElementType type = myTypes.get(i);
+      if (type == LT) {
+        depth++;
+      }
+      else if (type == GT) {
+        depth--;
+        if (depth == 0) return i + 1 < myTypes.size() && myTypes.get(i + 1) == LPAREN;
+      }
+      else if (type != COMMA && type != DOT && type != EXTENDS && !isNameType(type)) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private void parseVariables(final boolean classMember) throws UnsupportedSyntaxException {
+    while (true) {
+      final String name = parseName();
+      addDeclaration(classMember, name, DartComponentType.VARIABLE);
+
+      if (is(0, EQ)) {
+        skipInitializer();
+      }
+      if (is(0, COMMA)) {
+        myPos++;
+        continue;
+      }
+      expect(SEMICOLON);
+      return;
+    }
+  }
+
+  private void addDeclaration(final boolean classMember, @NotNull final String name, @Nullable final DartComponentType type) {
+    if (classMember) {
+      myResult.addSymbol(name);
+    }
+    else {
+      addTopLevel(name, type);
+    }
+  }
+
+  private void addTopLevel(@NotNull final String name, @Nullable final DartComponentType type) {
+    myResult.addSymbol(name);
+    myTopLevelNames.add(name);
+    myTopLevelTypes.add(type);
+  }
+
+  /**
+   * Skips a variable initializer up to ',' or ';' at the top bracket level.
+   */
+  private void skipInitializer() throws UnsupportedSyntaxException {
+    myPos++; // '='
+    boolean hasLt = false;
+    while (!eof()) {
+      final IElementType type = type();
+      if (type == SEMICOLON) return;
+      if (type == COMMA) {
+        // can't tell 'var a = <K, V>{}' from 'var a = b < c, d = e > f' without parsing
+        if (hasLt) throw UNSUPPORTED;
+        return;
+      }
+      if (type == LT) hasLt = true;
+      if (type == RBRACE || type == RPAREN || type == RBRACKET) throw UNSUPPORTED;
+
+      if (type == LPAREN || type == LBRACKET || type == LBRACE) {
+        skipBalanced();
+      }
+      else {
+        myPos++;
+      }
+    }
+    throw UNSUPPORTED;
+  }
+
+  /**
+   * Skips formal parameters, initializers and the body of a function, a method or a constructor. Starts at '('.
+   */
+  private void skipFunctionTail() throws UnsupportedSyntaxException {
+    if (!is(0, LPAREN)) throw UNSUPPORTED;
+    skipBalanced();
+    skipFunctionBody();
+  }
+
+  /**
+   * Skips initializers and the body that follow formal parameters: '{...}', '=> ...;', ';', 'native ...', factory redirection.
+   */
+  private void skipFunctionBody() throws UnsupportedSyntaxException {
+    boolean inInitializers = false;
+    while (!eof()) {
+      final IElementType type = type();
+      if (type == SEMICOLON) {
+        myPos++;
+        return;
+      }
+      if (type == EXPRESSION_BODY_DEF || type == EQ && !inInitializers) {
+        // '=> expression;' or factory redirection
+        skipToSemicolon();
+        return;
+      }
+      if (type == LBRACE) {
+        final IElementType prev = myTypes.get(myPos - 1);
+        if (inInitializers && (prev == EQ || prev == CONST || prev == GT || prev == LPAREN || prev == COMMA || prev == COLON)) {
+          // map literal in an initializer
+          skipBalanced();
+          continue;
+        }
+        skipBalanced();
+        return;
+      }
+      if (type == RBRACE || type == RPAREN || type == RBRACKET) throw UNSUPPORTED;
+
+      if (type == COLON) inInitializers = true;
+
+      if (type == LPAREN || type == LBRACKET) {
+        skipBalanced();
+      }
+      else {
+        myPos++;
+      }
+    }
+    throw UNSUPPORTED;
+  }
+
+  private void skipToSemicolon() throws UnsupportedSyntaxException {
+    while (!eof()) {
+      final IElementType type = type();
+      if (type == SEMICOLON) {
+        myPos++;
+        return;
+      }
+      if (type == RBRACE || type == RPAREN || type == RBRACKET) throw UNSUPPORTED;
+
+      if (type == LPAREN || type == LBRACKET || type == LBRACE) {
+        skipBalanced();
+      }
+      else {
+        myPos++;
+      }
+    }
+    throw UNSUPPORTED;
+  }
+
+  /**
+   * Skips a bracketed group starting at the current '(', '[' or '{' token, including the closing bracket.
+   */
+  private void skipBalanced() throws UnsupportedSyntaxException {
+    final IntArrayList expectedClosing = new IntArrayList();
+    do {
+      if (eof()) throw UNSUPPORTED;
+      final IElementType type = type();
+      if (type == LPAREN || type == LBRACKET || type == LBRACE) {
+        expectedClosing.add(type == LPAREN ? 0 : type == LBRACKET ? 1 : 2);
+      }
+      else if (type == RPAREN || type == RBRACKET || type == RBRACE) {
+        final int closing = type == RPAREN ? 0 : type == RBRACKET ? 1 : 2;
+        if (expectedClosing.get(expectedClosing.size() - 1) != closing) throw UNSUPPORTED;
+        expectedClosing.remove(expectedClosing.size() - 1);
+      }
+      myPos++;
+    }
+    while (!expectedClosing.isEmpty());
+  }
+
+  /**
+   * type ::= simpleQualifiedReferenceExpression typeArguments?
+   */
+  private void skipType() throws UnsupportedSyntaxException {
+    parseName();
+    while (is(0, DOT)) {
+      myPos++;
+      parseName();
+    }
+    if (is(0, LT)) {
+      skipTypeArguments();
+    }
+  }
+
+  private void skipTypeArguments() throws UnsupportedSyntaxException {
+    int depth = 0;
+    do {
+      if (eof()) throw UNSUPPORTED;
+      final IElementType type = type();
+      if (type == LT) {
+        depth++;
+      }
+      else if (type == GT) {
+        depth--;
+      }
+      else if (type != COMMA && type != DOT && type != EXTENDS && type != VOID && !isNameType(type)) {
+        throw UNSUPPORTED;
+      }
+      myPos++;
+    }
+    while (depth > 0);
+  }
+
+  private void skipMetadata() throws UnsupportedSyntaxException {
+    while (is(0, AT)) {
+      myPos++;
+      parseName();
+      while (is(0, DOT)) {
+        myPos++;
+        parseName();
+      }
+      if (is(0, LPAREN)) {
+        skipBalanced();
+      }
+    }
+  }
+
+  @NotNull
+  private String parseUri() throws UnsupportedSyntaxException {
+    if (eof()) throw UNSUPPORTED;
+
+    final int start = myStarts.get(myPos);
+    if (type() == RAW_SINGLE_QUOTED_STRING || type() == RAW_TRIPLE_QUOTED_STRING) {
+      myPos++;
+    }
+    else {
+      // only a plain string without interpolation
+      expect(OPEN_QUOTE);
+      if (is(0, REGULAR_STRING_PART)) myPos++;
+      if (!is(0, CLOSING_QUOTE)) throw UNSUPPORTED;
+      myPos++;
+    }
+    // adjacent strings
+    if (isString(0)) throw UNSUPPORTED;
+
+    return DartPsiImplUtil.getUnquotedDartStringAndItsRange(myText.subSequence(start, myEnds.get(myPos - 1)).toString()).first;
+  }
+
+  @NotNull
+  private String parseName() throws UnsupportedSyntaxException {
+    if (!isName(0)) throw UNSUPPORTED;
+    final String name = myText.subSequence(myStarts.get(myPos), myEnds.get(myPos)).toString();
+    myPos++;
+    return name;
+  }
+
+  private void expect(@NotNull final IElementType type) throws UnsupportedSyntaxException {
+    if (!is(0, type)) throw UNSUPPORTED;
+    myPos++;
+  }
+
+  private boolean eof() {
+    return myPos >= myTypes.size();
+  }
+
+  @Nullable
+  private IElementType type() {
+    return eof() ? null : myTypes.get(myPos);
+  }
+
+  private boolean is(final int offset, @NotNull final IElementType type) {
+    final int index = myPos + offset;
+    return index < myTypes.size() && myTypes.get(index) == type;
+  }
+
+  private boolean isName(final int offset) {
+    final int index = myPos + offset;
+    return index < myTypes.size() && isNameType(myTypes.get(index));
+  }
+
+  private boolean isString(final int offset) {
+    final int index = myPos + offset;
+    if (index >= myTypes.size()) return false;
+    final IElementType type = myTypes.get(index);
+    return type == OPEN_QUOTE || type == RAW_SINGLE_QUOTED_STRING || type == RAW_TRIPLE_QUOTED_STRING;
+  }
+
+  // see DartGeneratedParserUtilBase.nonStrictID()
+  private static boolean isNameType(@NotNull final IElementType type) {
+    return type == IDENTIFIER || DartTokenTypesSets.BUILT_IN_IDENTIFIERS.contains(type);
+  }
+}
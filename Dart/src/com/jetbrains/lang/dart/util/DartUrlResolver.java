@@ -1,8 +1,13 @@
 package com.jetbrains.lang.dart.util;
 
+import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.util.PairConsumer;
 import com.jetbrains.lang.dart.ide.index.DartLibraryIndex;
 import com.jetbrains.lang.dart.sdk.DartSdk;
@@ -10,6 +15,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class DartUrlResolver {
 
@@ -27,6 +34,9 @@ public abstract class DartUrlResolver {
   /**
    * Returned instance becomes obsolete if/when pubspec.yaml file is added or deleted or if module-specific custom package roots are changed,
    * so do not keep returned instance too long.
+   * <p/>
+   * Instances are cached per pubspec.yaml file (or per module if there's no pubspec.yaml) until project roots or VFS structure change or
+   * pubspec.yaml or .packages file is modified, so it's cheap to call this method often.
    *
    * @param project
    * @param contextFile may be pubspec.yaml file, its parent folder or any file/folder within this parent folder; in case of import statements resolve this must be an analyzed file
@@ -34,7 +44,24 @@ public abstract class DartUrlResolver {
    */
   @NotNull
   public static DartUrlResolver getInstance(final @NotNull Project project, final @NotNull VirtualFile contextFile) {
-    return new DartUrlResolverImpl(project, contextFile);
+    final VirtualFile pubspecYamlFile = PubspecYamlUtil.findPubspecYamlFile(project, contextFile);
+    // without pubspec.yaml packages are taken from the Dart Packages library of the module
+    final Object cacheKey = pubspecYamlFile != null ? pubspecYamlFile : ModuleUtilCore.findModuleForFile(contextFile, project);
+    if (cacheKey == null) {
+      return new DartUrlResolverImpl(project, contextFile, null);
+    }
+
+    final Map<Object, DartUrlResolverImpl> cache = CachedValuesManager.getManager(project).getCachedValue(project, () ->
+      CachedValueProvider.Result.create(new ConcurrentHashMap<Object, DartUrlResolverImpl>(),
+                                        ProjectRootManager.getInstance(project),
+                                        VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS));
+
+    DartUrlResolverImpl resolver = cache.get(cacheKey);
+    if (resolver == null || !resolver.isUpToDate()) {
+      resolver = new DartUrlResolverImpl(project, contextFile, pubspecYamlFile);
+      cache.put(cacheKey, resolver);
+    }
+    return resolver;
   }
 
   @Nullable
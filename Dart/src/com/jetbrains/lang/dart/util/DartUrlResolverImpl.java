@@ -42,17 +42,62 @@ public class DartUrlResolverImpl extends DartUrlResolver {
   @NotNull private final Map<String, VirtualFile> myLivePackageNameToDirMap = new THashMap<>();
   // myPackagesMapFromLib is not empty only if pubspec.yaml file is null
   @NotNull private final Map<String, List<String>> myPackagesMapFromLib = new THashMap<>();
+  // package dirs from the maps above, to find the package of a file by walking its path once
+  @NotNull private final PackageDirTrie myLivePackageDirTrie = new PackageDirTrie();
+  @NotNull private final PackageDirTrie myPackagesFromLibDirTrie = new PackageDirTrie();
+  @Nullable private final VirtualFile mySdkLibFolder;
+  private final long myPubspecYamlStamp;
+  private final long myDotPackagesStamp;
 
   public DartUrlResolverImpl(final @NotNull Project project, final @NotNull VirtualFile contextFile) {
+    this(project, contextFile, PubspecYamlUtil.findPubspecYamlFile(project, contextFile));
+  }
+
+  DartUrlResolverImpl(final @NotNull Project project,
+                      final @NotNull VirtualFile contextFile,
+                      final @Nullable VirtualFile pubspecYamlFile) {
     myProject = project;
     myDartSdk = DartSdk.getDartSdk(project);
-    myPubspecYamlFile = PubspecYamlUtil.findPubspecYamlFile(myProject, contextFile);
+    myPubspecYamlFile = pubspecYamlFile;
+    myPubspecYamlStamp = getModificationStamp(myPubspecYamlFile);
+    myDotPackagesStamp = getModificationStamp(findDotPackagesFile(myPubspecYamlFile));
+    mySdkLibFolder = myDartSdk == null ? null : LocalFileSystem.getInstance().findFileByPath(myDartSdk.getHomePath() + "/lib");
 
     initLivePackageNameToDirMap();
 
     if (myPubspecYamlFile == null) {
       initPackagesMapFromLib(contextFile);
     }
+
+    for (Map.Entry<String, VirtualFile> entry : myLivePackageNameToDirMap.entrySet()) {
+      myLivePackageDirTrie.add(entry.getValue().getPath(), entry.getKey());
+    }
+    for (Map.Entry<String, List<String>> entry : myPackagesMapFromLib.entrySet()) {
+      for (String dirPath : entry.getValue()) {
+        myPackagesFromLibDirTrie.add(dirPath, entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * @return {@code false} if pubspec.yaml or .packages file has changed since this resolver was created
+   */
+  boolean isUpToDate() {
+    if (myPubspecYamlFile == null) return true;
+    return myPubspecYamlFile.isValid() &&
+           myPubspecYamlStamp == getModificationStamp(myPubspecYamlFile) &&
+           myDotPackagesStamp == getModificationStamp(findDotPackagesFile(myPubspecYamlFile));
+  }
+
+  @Nullable
+  private static VirtualFile findDotPackagesFile(@Nullable final VirtualFile pubspecYamlFile) {
+    final VirtualFile baseDir = pubspecYamlFile == null ? null : pubspecYamlFile.getParent();
+    final VirtualFile dotPackagesFile = baseDir == null ? null : baseDir.findChild(DotPackagesFileUtil.DOT_PACKAGES);
+    return dotPackagesFile != null && !dotPackagesFile.isDirectory() ? dotPackagesFile : null;
+  }
+
+  private static long getModificationStamp(@Nullable final VirtualFile file) {
+    return file == null ? -1 : file.getModificationStamp();
   }
 
   @Nullable
@@ -145,13 +190,13 @@ public class DartUrlResolverImpl extends DartUrlResolver {
   public String getDartUrlForFile(final @NotNull VirtualFile file) {
     String result = null;
 
-    if (myDartSdk != null) result = getUrlIfFileFromSdkLib(myProject, file, myDartSdk);
+    if (mySdkLibFolder != null) result = getUrlIfFileFromSdkLib(myProject, file, mySdkLibFolder);
     if (result != null) return result;
 
-    result = getUrlIfFileFromLivePackage(file, myLivePackageNameToDirMap);
+    result = getUrlIfFileFromPackage(file, myLivePackageDirTrie);
     if (result != null) return result;
 
-    result = getUrlIfFileFromDartPackagesLib(file, myPackagesMapFromLib);
+    result = getUrlIfFileFromPackage(file, myPackagesFromLibDirTrie);
     if (result != null) return result;
 
     // see com.google.dart.tools.debug.core.server.ServerBreakpointManager#getAbsoluteUrlForResource()
@@ -161,9 +206,8 @@ public class DartUrlResolverImpl extends DartUrlResolver {
   @Nullable
   private static String getUrlIfFileFromSdkLib(final @NotNull Project project,
                                                final @NotNull VirtualFile file,
-                                               final @NotNull DartSdk sdk) {
-    final VirtualFile sdkLibFolder = LocalFileSystem.getInstance().findFileByPath(sdk.getHomePath() + "/lib");
-    final String relativeToSdkLibFolder = sdkLibFolder == null ? null : VfsUtilCore.getRelativePath(file, sdkLibFolder, '/');
+                                               final @NotNull VirtualFile sdkLibFolder) {
+    final String relativeToSdkLibFolder = VfsUtilCore.getRelativePath(file, sdkLibFolder, '/');
     final String sdkLibUri = relativeToSdkLibFolder == null
                              ? null
                              : DartLibraryIndex.getSdkLibUriByRelativePath(project, relativeToSdkLibFolder);
@@ -175,31 +219,10 @@ public class DartUrlResolverImpl extends DartUrlResolver {
   }
 
   @Nullable
-  private static String getUrlIfFileFromLivePackage(final @NotNull VirtualFile file,
-                                                    final @NotNull Map<String, VirtualFile> livePackageNameToDirMap) {
-    for (Map.Entry<String, VirtualFile> entry : livePackageNameToDirMap.entrySet()) {
-      final String packageName = entry.getKey();
-      final VirtualFile packageDir = entry.getValue();
-      final String relPath = VfsUtilCore.getRelativePath(file, packageDir, '/');
-      if (relPath != null) {
-        return PACKAGE_PREFIX + packageName + "/" + relPath;
-      }
-    }
-    return null;
-  }
-
-  @Nullable
-  private static String getUrlIfFileFromDartPackagesLib(final @NotNull VirtualFile file,
-                                                        final @NotNull Map<String, List<String>> pubListPackageDirsMap) {
-    for (Map.Entry<String, List<String>> mapEntry : pubListPackageDirsMap.entrySet()) {
-      for (String dirPath : mapEntry.getValue()) {
-        if (file.getPath().startsWith(dirPath + "/")) {
-          final String packageName = mapEntry.getKey();
-          return PACKAGE_PREFIX + packageName + file.getPath().substring(dirPath.length());
-        }
-      }
-    }
-    return null;
+  private static String getUrlIfFileFromPackage(final @NotNull VirtualFile file, final @NotNull PackageDirTrie packageDirTrie) {
+    final String path = file.getPath();
+    final PackageDirTrie.Match match = packageDirTrie.findPackageDir(path);
+    return match == null ? null : PACKAGE_PREFIX + match.myPackageName + path.substring(match.myDirPathLength);
   }
 
   private void initLivePackageNameToDirMap() {
@@ -258,4 +281,65 @@ public class DartUrlResolverImpl extends DartUrlResolver {
       }
     }
   }
+
+  /**
+   * Package dirs as a tree of path segments. Finding the package that contains a file takes as many steps as there are segments
+   * in the file path, no matter how many packages there are.
+   */
+  private static class PackageDirTrie {
+    private static class Match {
+      @NotNull private final String myPackageName;
+      private final int myDirPathLength;
+
+      private Match(@NotNull final String packageName, final int dirPathLength) {
+        myPackageName = packageName;
+        myDirPathLength = dirPathLength;
+      }
+    }
+
+    @Nullable private Map<String, PackageDirTrie> myChildren;
+    @Nullable private String myPackageName;
+
+    private void add(@NotNull final String dirPath, @NotNull final String packageName) {
+      PackageDirTrie node = this;
+      for (String segment : StringUtil.split(dirPath, "/")) {
+        if (node.myChildren == null) {
+          node.myChildren = new THashMap<>();
+        }
+        PackageDirTrie child = node.myChildren.get(segment);
+        if (child == null) {
+          child = new PackageDirTrie();
+          node.myChildren.put(segment, child);
+        }
+        node = child;
+      }
+      if (node.myPackageName == null) {
+        node.myPackageName = packageName;
+      }
+    }
+
+    /**
+     * @return the deepest package dir that is a strict ancestor of the given path
+     */
+    @Nullable
+    private Match findPackageDir(@NotNull final String path) {
+      Match match = null;
+      PackageDirTrie node = this;
+      int segmentStart = 0;
+      while (node.myChildren != null) {
+        while (segmentStart < path.length() && path.charAt(segmentStart) == '/') segmentStart++;
+        if (segmentStart == path.length()) break;
+        int segmentEnd = path.indexOf('/', segmentStart);
+        if (segmentEnd < 0) break; // the last segment is the file name, package dir must be its ancestor
+
+        node = node.myChildren.get(path.substring(segmentStart, segmentEnd));
+        if (node == null) break;
+        if (node.myPackageName != null) {
+          match = new Match(node.myPackageName, segmentEnd);
+        }
+        segmentStart = segmentEnd + 1;
+      }
+      return match;
+    }
+  }
 }
@@ -0,0 +1,43 @@
+library index.declarations;
+
+import 'dart:async' deferred as lib show Future, Stream hide Timer;
+export 'dart:math';
+
+part 'part.dart';
+
+typedef int Compare<T>(T a, T b);
+
+int topLevelVariable = 1, anotherVariable;
+final finalVariable = const {'a': 1};
+
+int get topLevelGetter => 1;
+set topLevelSetter(int value) {}
+topLevelFunction<T>(T t) {}
+
+abstract class Shape<T extends num> extends Object with Comparable implements Pattern {
+  static const int ZERO = 0;
+  int x, y;
+
+  Shape(this.x) : y = 0;
+  Shape.named(int x) : this(x);
+  factory Shape.create() = Square;
+  factory Shape() => null;
+  const factory Shape.constant() = Square;
+
+  int get area;
+  set area(int value);
+
+  bool operator <(Shape other) => area < other.area;
+  bool operator ==(other) => identical(this, other);
+  int operator [](int index) => index;
+  operator []=(int index, int value) {}
+  Shape operator -() => this;
+
+  void method() {
+    var local = {'key': 'value'};
+  }
+}
+
+class Square = Shape with Comparable;
+
+enum Color { red, green, blue, }
@@ -0,0 +1,232 @@
+package com.jetbrains.dart.analysisServer;
+
+import com.google.dart.server.AnalysisServerListenerAdapter;
+import com.google.dart.server.AnalysisServerSocket;
+import com.google.dart.server.internal.remote.*;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays analysis server traffic recorded with a {@link DebugPrintStream} (lines like {@code 1453212345678 <= {"event":...}})
+ * through the response stream, {@link RemoteAnalysisServerImpl} and the notification processors into a no-op listener,
+ * and reports throughput and allocation per message type.
+ * <p/>
+ * Usage: {@code AnalysisServerReplayBenchmark <log file> [iterations] [--streaming]}.
+ * Allocation is measured on the thread that parses and dispatches responses, so it covers JSON parsing and
+ * the processors but not reading lines from the input.
+ */
+public class AnalysisServerReplayBenchmark {
+  private static final Pattern RESPONSE_LINE = Pattern.compile("^\\d+ <= (\\{.*)$");
+  private static final Pattern EVENT = Pattern.compile("\"event\"\\s*:\\s*\"([^\"]+)\"");
+  private static final String RESPONSE_TYPE = "<response>";
+  private static final String END_MARKER = "{\"event\":\"server.connected\",\"params\":{\"version\":\"replay-end\",\"pid\":0}}";
+
+  private static final int WARMUP_ITERATIONS = 5;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.err.println("Usage: AnalysisServerReplayBenchmark <log file> [iterations] [--streaming]");
+      System.exit(1);
+    }
+
+    final File logFile = new File(args[0]);
+    final int iterations = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : 20;
+    final boolean streaming = Arrays.asList(args).contains("--streaming");
+
+    final Map<String, List<String>> linesByType = readResponses(logFile);
+    if (linesByType.isEmpty()) {
+      System.err.println("No server responses found in " + logFile);
+      System.exit(1);
+    }
+
+    System.out.println("Replaying " + logFile + " (" + (streaming ? "StreamingResponseStream" : "ByteResponseStream") +
+                       ", " + iterations + " iterations)");
+    System.out.println(String.format("%-32s %8s %14s %12s %14s", "type", "count", "msg/s", "us/msg", "bytes/msg"));
+
+    final List<String> allLines = new ArrayList<String>();
+    for (Map.Entry<String, List<String>> entry : linesByType.entrySet()) {
+      allLines.addAll(entry.getValue());
+      report(entry.getKey(), entry.getValue(), iterations, streaming);
+    }
+    report("<all>", allLines, iterations, streaming);
+  }
+
+  private static void report(@NotNull final String type,
+                             @NotNull final List<String> lines,
+                             final int iterations,
+                             final boolean streaming) throws Exception {
+    final byte[] input = toInput(lines);
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      replay(input, streaming);
+    }
+
+    long totalNanos = 0;
+    long totalBytes = 0;
+    for (int i = 0; i < iterations; i++) {
+      final ReplayResult result = replay(input, streaming);
+      totalNanos += result.nanos;
+      totalBytes += result.allocatedBytes;
+    }
+
+    final long messages = (long)lines.size() * iterations;
+    final double nanosPerMessage = (double)totalNanos / messages;
+    System.out.println(String.format("%-32s %8d %14.0f %12.2f %14s",
+                                     type, lines.size(), 1e9 / nanosPerMessage, nanosPerMessage / 1000,
+                                     totalBytes < 0 ? "n/a" : String.valueOf(totalBytes / messages)));
+  }
+
+  @NotNull
+  private static ReplayResult replay(@NotNull final byte[] input, final boolean streaming) throws Exception {
+    final ReplaySocket socket = new ReplaySocket(input, streaming);
+    final RemoteAnalysisServerImpl server = new RemoteAnalysisServerImpl(socket, false);
+    final ReplayListener listener = new ReplayListener();
+    server.addAnalysisServerListener(listener);
+
+    final long start = System.nanoTime();
+    server.start();
+    if (!listener.myDone.await(60, TimeUnit.SECONDS)) {
+      throw new IllegalStateException("Replay did not complete in 60 seconds");
+    }
+    final long nanos = System.nanoTime() - start;
+
+    server.server_shutdown();
+    return new ReplayResult(nanos, listener.myAllocatedBytes);
+  }
+
+  /**
+   * Returns server responses and notifications from the log grouped by event name, in the order of first appearance.
+   */
+  @NotNull
+  private static Map<String, List<String>> readResponses(@NotNull final File logFile) throws IOException {
+    final Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), StandardCharsets.UTF_8));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        final Matcher matcher = RESPONSE_LINE.matcher(line);
+        if (!matcher.matches()) continue;
+
+        final String json = matcher.group(1);
+        final Matcher eventMatcher = EVENT.matcher(json);
+        // the event name, if any, precedes "params" in the server output, so don't scan the whole line
+        final String type = eventMatcher.region(0, Math.min(json.length(), 64)).find() ? eventMatcher.group(1) : RESPONSE_TYPE;
+
+        List<String> lines = result.get(type);
+        if (lines == null) {
+          lines = new ArrayList<String>();
+          result.put(type, lines);
+        }
+        lines.add(json);
+      }
+    }
+    finally {
+      reader.close();
+    }
+    return result;
+  }
+
+  @NotNull
+  private static byte[] toInput(@NotNull final List<String> lines) {
+    final StringBuilder builder = new StringBuilder();
+    for (String line : lines) {
+      builder.append(line).append('\n');
+    }
+    builder.append(END_MARKER).append('\n');
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static long getCurrentThreadAllocatedBytes() {
+    final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  private static class ReplayResult {
+    private final long nanos;
+    private final long allocatedBytes;
+
+    private ReplayResult(final long nanos, final long allocatedBytes) {
+      this.nanos = nanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+  }
+
+  private static class ReplayListener extends AnalysisServerListenerAdapter {
+    private final CountDownLatch myDone = new CountDownLatch(1);
+    private volatile long myAllocatedBytes = -1;
+
+    @Override
+    public void serverConnected(@Nullable final String version) {
+      if (!"replay-end".equals(version)) return;
+
+      // a new reader thread is started for each replay, so everything it allocated belongs to this run
+      myAllocatedBytes = getCurrentThreadAllocatedBytes();
+      myDone.countDown();
+    }
+  }
+
+  private static class ReplaySocket implements AnalysisServerSocket {
+    private final byte[] myInput;
+    private final boolean myStreaming;
+    private ResponseStream myResponseStream;
+    private boolean myOpen;
+
+    private ReplaySocket(@NotNull final byte[] input, final boolean streaming) {
+      myInput = input;
+      myStreaming = streaming;
+    }
+
+    @Override
+    public ByteLineReaderStream getErrorStream() {
+      return null;
+    }
+
+    @Override
+    public RequestSink getRequestSink() {
+      return new RequestSink() {
+        @Override
+        public void add(JsonObject request) {
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+    }
+
+    @Override
+    public ResponseStream getResponseStream() {
+      return myResponseStream;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return myOpen;
+    }
+
+    @Override
+    public void start() {
+      final InputStream input = new ByteArrayInputStream(myInput);
+      myResponseStream = myStreaming ? new StreamingResponseStream(input, null) : new ByteResponseStream(input, null);
+      myOpen = true;
+    }
+
+    @Override
+    public void stop() {
+      myOpen = false;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.jetbrains.lang.dart.ide.index;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import com.jetbrains.lang.dart.DartLanguage;
+import com.jetbrains.lang.dart.util.DartTestUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that {@link DartLexerIndexer} computes the same data as PSI-based {@link DartIndexUtil#indexFileRoots} for every file it
+ * doesn't give up on.
+ */
+public class DartLexerIndexerTest extends LightPlatformCodeInsightFixtureTestCase {
+  @Override
+  protected String getTestDataPath() {
+    return DartTestUtils.BASE_TEST_DATA_PATH + getBasePath();
+  }
+
+  @Override
+  protected String getBasePath() {
+    return FileUtil.toSystemDependentName("/index/");
+  }
+
+  public void testDeclarations() throws IOException {
+    final File file = new File(getTestDataPath(), getTestName(false) + ".dart");
+    assertNotNull("lexer-based indexer gave up on " + file, checkSameAsPsi(file));
+  }
+
+  public void testAllTestData() throws IOException {
+    final List<File> files = new ArrayList<>();
+    FileUtil.collectMatchedFiles(new File(DartTestUtils.BASE_TEST_DATA_PATH), Pattern.compile(".*\\.dart"), files);
+    assertFalse(files.isEmpty());
+
+    int indexed = 0;
+    for (File file : files) {
+      if (checkSameAsPsi(file) != null) {
+        indexed++;
+      }
+    }
+    assertTrue("only " + indexed + " of " + files.size() + " files are indexed without PSI", indexed > 0);
+  }
+
+  private DartFileIndexData checkSameAsPsi(@NotNull final File file) throws IOException {
+    final String text = StringUtil.convertLineSeparators(FileUtil.loadFile(file, "UTF-8"));
+    final DartFileIndexData lexerData = DartLexerIndexer.indexFile(text, file.getName());
+    if (lexerData == null) return null;
+
+    final PsiFile psiFile = PsiFileFactory.getInstance(getProject()).createFileFromText(file.getName(), DartLanguage.INSTANCE, text);
+    final DartFileIndexData psiData = DartIndexUtil.indexFileRoots(psiFile);
+
+    final String path = file.getPath();
+    assertEquals(path, psiData.getLibraryName(), lexerData.getLibraryName());
+    assertEquals(path, psiData.isPart(), lexerData.isPart());
+    // PSI collects declarations into a set, so the order differs
+    assertEquals(path, sorted(psiData.getClassNames()), sorted(lexerData.getClassNames()));
+    assertEquals(path, sorted(psiData.getSymbols()), sorted(lexerData.getSymbols()));
+    assertEquals(path, psiData.getComponentInfoMap(), lexerData.getComponentInfoMap());
+    assertEquals(path, psiData.getImportAndExportInfos(), lexerData.getImportAndExportInfos());
+    assertEquals(path, psiData.getPartUris(), lexerData.getPartUris());
+    return lexerData;
+  }
+
+  @NotNull
+  private static List<String> sorted(@NotNull final List<String> list) {
+    final List<String> result = new ArrayList<>(list);
+    Collections.sort(result);
+    return result;
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server;
+
+import com.google.common.collect.Maps;
+
+import org.dartlang.analysis.server.protocol.HighlightRegion;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of {@link HighlightRegion}s stored as parallel {@code int} arrays of offsets, lengths and
+ * interned type ids. {@link HighlightRegion} objects are created only when they are requested with
+ * {@link #get(int)}, clients that care about allocation should use the column accessors instead.
+ * 
+ * @coverage dart.server
+ */
+public class PackedHighlightRegions extends AbstractList<HighlightRegion> {
+  /**
+   * A mapping between highlight region types and their ids. The table is shared by all servers, it
+   * only grows and its size is bounded by the number of {@code HighlightRegionType}s. Lookups don't
+   * lock, new types are added under the {@link #typeIds} lock.
+   */
+  private static final Map<String, Integer> typeIds = Maps.newConcurrentMap();
+
+  /**
+   * The highlight region types indexed by id. Replaced as a whole when a type is added, so readers
+   * always see a fully initialized array.
+   */
+  private static volatile String[] types = new String[0];
+
+  private int[] offsets;
+  private int[] lengths;
+  private int[] typeIdArray;
+  private int size;
+
+  public PackedHighlightRegions() {
+    this(16);
+  }
+
+  public PackedHighlightRegions(int capacity) {
+    capacity = Math.max(capacity, 1);
+    offsets = new int[capacity];
+    lengths = new int[capacity];
+    typeIdArray = new int[capacity];
+  }
+
+  /**
+   * Return the type with the given id.
+   * 
+   * @see #getTypeId(String)
+   */
+  public static String getType(int typeId) {
+    return types[typeId];
+  }
+
+  /**
+   * Return the id of the given highlight region type. The same id is returned for equal types, so
+   * that the type strings are stored only once.
+   */
+  public static int getTypeId(String type) {
+    Integer id = typeIds.get(type);
+    if (id != null) {
+      return id;
+    }
+    synchronized (typeIds) {
+      id = typeIds.get(type);
+      if (id == null) {
+        id = types.length;
+        String[] newTypes = Arrays.copyOf(types, id + 1);
+        newTypes[id] = type.intern();
+        types = newTypes;
+        typeIds.put(newTypes[id], id);
+      }
+      return id;
+    }
+  }
+
+  /**
+   * Return the given regions as {@link PackedHighlightRegions}, the given list itself is returned
+   * if it is already packed.
+   */
+  public static PackedHighlightRegions of(List<HighlightRegion> regions) {
+    if (regions instanceof PackedHighlightRegions) {
+      return (PackedHighlightRegions) regions;
+    }
+    PackedHighlightRegions packed = new PackedHighlightRegions(regions.size());
+    for (HighlightRegion region : regions) {
+      packed.addRegion(region.getType(), region.getOffset(), region.getLength());
+    }
+    return packed;
+  }
+
+  /**
+   * Append a new region.
+   */
+  public void addRegion(String type, int offset, int length) {
+    addRegion(getTypeId(type), offset, length);
+  }
+
+  /**
+   * Append a new region with the type id returned by {@link #getTypeId(String)}.
+   */
+  public void addRegion(int typeId, int offset, int length) {
+    if (typeId < 0 || typeId >= types.length) {
+      throw new IllegalArgumentException("Unknown highlight region type id: " + typeId);
+    }
+    if (size == offsets.length) {
+      int capacity = size * 2;
+      offsets = Arrays.copyOf(offsets, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      typeIdArray = Arrays.copyOf(typeIdArray, capacity);
+    }
+    offsets[size] = offset;
+    lengths[size] = length;
+    typeIdArray[size] = typeId;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public HighlightRegion get(int index) {
+    checkIndex(index);
+    return new HighlightRegion(types[typeIdArray[index]], offsets[index], lengths[index]);
+  }
+
+  public int getLength(int index) {
+    checkIndex(index);
+    return lengths[index];
+  }
+
+  public int getOffset(int index) {
+    checkIndex(index);
+    return offsets[index];
+  }
+
+  public int getTypeId(int index) {
+    checkIndex(index);
+    return typeIdArray[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
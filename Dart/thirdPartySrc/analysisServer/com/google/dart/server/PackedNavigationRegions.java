@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.dartlang.analysis.server.protocol.NavigationRegion;
+import org.dartlang.analysis.server.protocol.NavigationTarget;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of {@link NavigationRegion}s stored as parallel {@code int} arrays of offsets, lengths and
+ * target indices. The {@link NavigationTarget}s are shared by all regions that refer to them.
+ * {@link NavigationRegion} objects are created only when they are requested with
+ * {@link #get(int)}, clients that care about allocation should use the column accessors instead.
+ * <p>
+ * Regions are added with {@link #addTarget(int)} calls for each target of the region, followed by
+ * {@link #addRegion(int, int)}.
+ * 
+ * @coverage dart.server
+ */
+public class PackedNavigationRegions extends AbstractList<NavigationRegion> {
+  private int[] offsets;
+  private int[] lengths;
+
+  /**
+   * The index in {@link #targetIndices} of the first target of each region, the element at
+   * {@link #size} is the index after the last target of the last region.
+   */
+  private int[] targetStarts;
+
+  private int[] targetIndices;
+  private int targetIndexCount;
+  private int size;
+
+  private List<NavigationTarget> targets = NavigationTarget.EMPTY_LIST;
+
+  public PackedNavigationRegions() {
+    this(16);
+  }
+
+  public PackedNavigationRegions(int capacity) {
+    capacity = Math.max(capacity, 1);
+    offsets = new int[capacity];
+    lengths = new int[capacity];
+    targetStarts = new int[capacity + 1];
+    targetIndices = new int[capacity];
+  }
+
+  /**
+   * Return the given regions as {@link PackedNavigationRegions}, the given list itself is returned
+   * if it is already packed.
+   */
+  public static PackedNavigationRegions of(List<NavigationRegion> regions) {
+    if (regions instanceof PackedNavigationRegions) {
+      return (PackedNavigationRegions) regions;
+    }
+    PackedNavigationRegions packed = new PackedNavigationRegions(regions.size());
+    List<NavigationTarget> targets = Lists.newArrayList();
+    Map<NavigationTarget, Integer> targetIndexMap = Maps.newIdentityHashMap();
+    for (NavigationRegion region : regions) {
+      for (NavigationTarget target : region.getTargetObjects()) {
+        Integer index = targetIndexMap.get(target);
+        if (index == null) {
+          index = targets.size();
+          targets.add(target);
+          targetIndexMap.put(target, index);
+        }
+        packed.addTarget(index);
+      }
+      packed.addRegion(region.getOffset(), region.getLength());
+    }
+    packed.setTargets(targets);
+    return packed;
+  }
+
+  /**
+   * Append a new region with the targets added by {@link #addTarget(int)} since the previous region.
+   */
+  public void addRegion(int offset, int length) {
+    if (size == offsets.length) {
+      int capacity = size * 2;
+      offsets = Arrays.copyOf(offsets, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      targetStarts = Arrays.copyOf(targetStarts, capacity + 1);
+    }
+    offsets[size] = offset;
+    lengths[size] = length;
+    size++;
+    targetStarts[size] = targetIndexCount;
+    modCount++;
+  }
+
+  /**
+   * Append a target index to the region that is being added.
+   */
+  public void addTarget(int targetIndex) {
+    if (targetIndexCount == targetIndices.length) {
+      targetIndices = Arrays.copyOf(targetIndices, targetIndexCount * 2);
+    }
+    targetIndices[targetIndexCount++] = targetIndex;
+  }
+
+  @Override
+  public NavigationRegion get(int index) {
+    checkIndex(index);
+    NavigationRegion region = new NavigationRegion(offsets[index], lengths[index], getTargetIndices(index));
+    region.lookupTargets(targets);
+    return region;
+  }
+
+  public int getLength(int index) {
+    checkIndex(index);
+    return lengths[index];
+  }
+
+  public int getOffset(int index) {
+    checkIndex(index);
+    return offsets[index];
+  }
+
+  /**
+   * Return the number of targets of the region with the given index.
+   */
+  public int getTargetCount(int index) {
+    checkIndex(index);
+    return targetStarts[index + 1] - targetStarts[index];
+  }
+
+  /**
+   * Return the index in {@link #getTargets()} of the given target of the region with the given
+   * index.
+   */
+  public int getTargetIndex(int index, int targetNumber) {
+    return targetIndices[targetStarts[index] + targetNumber];
+  }
+
+  /**
+   * Return the indices in {@link #getTargets()} of the targets of the region with the given index.
+   */
+  public int[] getTargetIndices(int index) {
+    checkIndex(index);
+    return Arrays.copyOfRange(targetIndices, targetStarts[index], targetStarts[index + 1]);
+  }
+
+  /**
+   * Return the targets the regions refer to.
+   */
+  public List<NavigationTarget> getTargets() {
+    return targets;
+  }
+
+  /**
+   * Set the targets the target indices of the regions refer to.
+   */
+  public void setTargets(List<NavigationTarget> targets) {
+    this.targets = targets;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
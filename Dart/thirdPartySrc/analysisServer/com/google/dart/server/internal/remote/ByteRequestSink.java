@@ -13,7 +13,7 @@
  */
 package com.google.dart.server.internal.remote;
 
-import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.common.io.CountingOutputStream;
 import com.google.gson.JsonObject;
 
 import java.io.OutputStream;
@@ -21,16 +21,31 @@ import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
 
 /**
  * An {@link OutputStream} based implementation of {@link RequestSink}.
+ * <p>
+ * Requests are written by a separate thread. It takes all lines queued so far and flushes the stream
+ * once per batch, so a burst of requests costs a few writes instead of one per request. The queue is
+ * not bounded, {@link #add(JsonObject)} is called on the UI thread and must never block, even if the
+ * server stops reading its input.
  *
  * @coverage dart.server.remote
  */
 public class ByteRequestSink implements RequestSink {
+  /**
+   * The maximum number of lines written before a flush.
+   */
+  private static final int MAX_BATCH_SIZE = 256;
+
+  /**
+   * The stream that counts the bytes written to the server.
+   */
+  private final CountingOutputStream countingStream;
   /**
    * The {@link PrintWriter} to print JSON strings to.
    */
@@ -43,6 +58,27 @@ public class ByteRequestSink implements RequestSink {
    * The queue of lines.
    */
   private final BlockingQueue<String> lineQueue = new LinkedBlockingQueue<String>();
+  /**
+   * Guards {@link #addedCount}, {@link #writtenCount} and {@link #closed}, notified when a batch is flushed.
+   */
+  private final Object flushLock = new Object();
+  /**
+   * The number of lines added to the queue.
+   */
+  private long addedCount;
+  /**
+   * The number of lines written and flushed.
+   */
+  private long writtenCount;
+  private boolean closed;
+  /**
+   * The number of batches written, each one followed by a flush.
+   */
+  private volatile long batchCount;
+  /**
+   * The total time spent writing and flushing, in nanoseconds.
+   */
+  private volatile long writeTimeNanos;
 
   /**
    * Initializes a newly created request sink.
@@ -51,7 +87,8 @@ public class ByteRequestSink implements RequestSink {
    * @param debugStream the {@link PrintStream} to print all lines to, may be {@code null}
    */
   public ByteRequestSink(OutputStream stream, DebugPrintStream debugStream) {
-    writer = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+    countingStream = new CountingOutputStream(stream);
+    writer = new PrintWriter(new OutputStreamWriter(countingStream, StandardCharsets.UTF_8));
     this.debugStream = debugStream;
     new LinesWriterThread().start();
   }
@@ -64,23 +101,67 @@ public class ByteRequestSink implements RequestSink {
         debugStream.println(System.currentTimeMillis() + " => " + text);
       }
     }
+    synchronized (flushLock) {
+      addedCount++;
+    }
     lineQueue.add(text);
   }
 
   @Override
   public void close() {
+    synchronized (flushLock) {
+      closed = true;
+      flushLock.notifyAll();
+    }
     writer.close();
   }
 
+  /**
+   * Waits until all requests added before this call are written to the stream and flushed.
+   */
   public void waitForFlush() {
-    while (true) {
-      if (lineQueue.isEmpty()) {
-        return;
+    synchronized (flushLock) {
+      long target = addedCount;
+      while (writtenCount < target && !closed) {
+        try {
+          flushLock.wait();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
       }
-      Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
     }
   }
 
+  /**
+   * Returns the number of requests waiting to be written.
+   */
+  public int getQueueDepth() {
+    return lineQueue.size();
+  }
+
+  /**
+   * Returns the number of bytes written to the server so far.
+   */
+  public long getBytesWritten() {
+    return countingStream.getCount();
+  }
+
+  /**
+   * Returns the number of batches written so far, each of them is followed by a single flush.
+   */
+  public long getBatchCount() {
+    return batchCount;
+  }
+
+  /**
+   * Returns the total time spent writing and flushing requests, in nanoseconds.
+   */
+  public long getWriteTimeNanos() {
+    return writeTimeNanos;
+  }
+
   private class LinesWriterThread extends Thread {
     public LinesWriterThread() {
       setName("ByteRequestSink.LinesWriterThread");
@@ -89,14 +170,29 @@ public class ByteRequestSink implements RequestSink {
 
     @Override
     public void run() {
+      List<String> batch = new ArrayList<String>(MAX_BATCH_SIZE);
       while (true) {
         try {
-          String line = lineQueue.take();
-          writer.println(line);
-          writer.flush();
+          batch.add(lineQueue.take());
         }
         catch (InterruptedException e) {
+          continue;
+        }
+        lineQueue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+        long start = System.nanoTime();
+        for (String line : batch) {
+          writer.println(line);
+        }
+        writer.flush();
+        writeTimeNanos += System.nanoTime() - start;
+        batchCount++;
+
+        synchronized (flushLock) {
+          writtenCount += batch.size();
+          flushLock.notifyAll();
         }
+        batch.clear();
       }
     }
   }
@@ -655,12 +655,31 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     }
   }
 
+  /**
+   * Registers the processors for the high-volume notifications, which can be decoded directly from
+   * the stream without building a {@link JsonObject}. These notifications never reach the
+   * {@link ServerResponseReaderThread}, so the stream itself updates the last response time.
+   */
+  private void addStreamingNotificationProcessors(StreamingResponseStream stream) {
+    stream.addNotificationProcessor(ANALYSIS_NOTIFICATION_HIGHTLIGHTS, new NotificationAnalysisHighlightsProcessor(listener));
+    stream.addNotificationProcessor(ANALYSIS_NOTIFICATION_NAVIGATION, new NotificationAnalysisNavigationProcessor(listener));
+    stream.setStreamedResponseListener(new Runnable() {
+      @Override
+      public void run() {
+        lastResponseTime.set(System.currentTimeMillis());
+      }
+    });
+  }
+
   private void startServer() throws Exception {
     socket.start();
     consumerMap.clear();
     requestSink = socket.getRequestSink();
     responseStream = socket.getResponseStream();
     errorStream = socket.getErrorStream();
+    if (responseStream instanceof StreamingResponseStream) {
+      addStreamingNotificationProcessors((StreamingResponseStream)responseStream);
+    }
     new ServerResponseReaderThread(responseStream).start();
     if (errorStream != null) {
       new ServerErrorReaderThread(errorStream, listener).start();
@@ -53,6 +53,12 @@ public class StdioServerSocket implements AnalysisServerSocket {
    */
   private String clientVersion;
 
+  /**
+   * {@code true} if responses should be parsed by a {@link StreamingResponseStream}, {@code false}
+   * to use a line based {@link ByteResponseStream}.
+   */
+  private boolean streamingResponses;
+
   public StdioServerSocket(String runtimePath, List<String> additionalVmArguments,
       String analysisServerPath, List<String> additionalServerArguments,
       DebugPrintStream debugStream) {
@@ -109,6 +115,15 @@ public class StdioServerSocket implements AnalysisServerSocket {
     clientVersion = version;
   }
 
+  /**
+   * Set whether server responses should be parsed directly from the process output by a
+   * {@link StreamingResponseStream} instead of a line based {@link ByteResponseStream}. The flag
+   * must be set before the server has been started.
+   */
+  public void setStreamingResponses(boolean streamingResponses) {
+    this.streamingResponses = streamingResponses;
+  }
+
   @Override
   public void start() throws Exception {
     String[] arguments = computeProcessArguments();
@@ -128,7 +143,11 @@ public class StdioServerSocket implements AnalysisServerSocket {
     ProcessBuilder processBuilder = new ProcessBuilder(arguments);
     process = processBuilder.start();
     requestSink = new ByteRequestSink(process.getOutputStream(), debugStream);
-    responseStream = new ByteResponseStream(process.getInputStream(), debugStream);
+    if (streamingResponses) {
+      responseStream = new StreamingResponseStream(process.getInputStream(), debugStream);
+    } else {
+      responseStream = new ByteResponseStream(process.getInputStream(), debugStream);
+    }
     errorStream = new ByteLineReaderStream(process.getErrorStream());
   }
 
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import com.google.common.collect.Maps;
+import com.google.dart.server.internal.remote.processor.StreamingNotificationProcessor;
+import com.google.dart.server.utilities.logging.Logging;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * An {@link InputStream} based implementation of {@link ResponseStream} that parses responses
+ * straight from the stream with a {@link JsonReader}, without reading lines into {@link String}s
+ * first.
+ * <p>
+ * Notifications with a {@link StreamingNotificationProcessor} registered for their event are
+ * decoded directly from the stream and never returned from {@link #take()}. All other responses
+ * are returned as {@link JsonObject}s, just like {@link ByteResponseStream} does.
+ * <p>
+ * Each line must contain exactly one complete JSON object. A malformed line is skipped, just like
+ * {@link ByteResponseStream} does.
+ * 
+ * @coverage dart.server.remote
+ */
+public class StreamingResponseStream implements ResponseStream {
+  /**
+   * A {@link Reader} that returns one JSON line at a time: it drops all lines that do not start with
+   * <code>{</code>, so that debug output of the server does not break the JSON stream, and reports
+   * the end of the stream at the end of each line until {@link #nextLine()} is called. A
+   * {@link JsonReader} that failed in the middle of a line is thrown away, and the next line is
+   * read by a new one.
+   */
+  private static class JsonLinesReader extends Reader {
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean lineEnd = true;
+    private boolean eof;
+
+    /**
+     * The text of the current line, {@code null} if lines are not recorded.
+     */
+    private final StringBuilder line;
+
+    public JsonLinesReader(Reader in, boolean recordLines) {
+      this.in = in;
+      line = recordLines ? new StringBuilder() : null;
+    }
+
+    /**
+     * Skips the rest of the current line and all following non-JSON lines.
+     * 
+     * @return {@code false} if the end of the stream has been reached
+     */
+    public boolean nextLine() throws IOException {
+      if (!lineEnd) {
+        skipLine();
+      }
+      while (fill()) {
+        if (line != null) {
+          line.setLength(0);
+        }
+        if (buffer[position] == '{') {
+          lineEnd = false;
+          return true;
+        }
+        skipLine();
+      }
+      return false;
+    }
+
+    /**
+     * Returns the text of the current line read so far, {@code null} if lines are not recorded.
+     */
+    public String getLine() {
+      return line == null ? null : line.toString().trim();
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+      if (lineEnd || !fill()) {
+        lineEnd = true;
+        return -1;
+      }
+      int count = 0;
+      while (count < length && position < limit) {
+        char c = buffer[position++];
+        chars[offset + count++] = c;
+        if (c == '\n') {
+          lineEnd = true;
+          break;
+        }
+      }
+      if (line != null) {
+        line.append(chars, offset, count);
+      }
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    private void skipLine() throws IOException {
+      while (fill()) {
+        char c = buffer[position++];
+        if (line != null) {
+          line.append(c);
+        }
+        if (c == '\n') {
+          break;
+        }
+      }
+      lineEnd = true;
+    }
+
+    private boolean fill() throws IOException {
+      if (position < limit) {
+        return true;
+      }
+      if (eof) {
+        return false;
+      }
+      int count = in.read(buffer, 0, buffer.length);
+      if (count <= 0) {
+        eof = true;
+        return false;
+      }
+      position = 0;
+      limit = count;
+      return true;
+    }
+  }
+
+  /**
+   * The {@link JsonLinesReader} to read responses from.
+   */
+  private final JsonLinesReader lines;
+
+  /**
+   * The {@link DebugPrintStream} to print all responses to.
+   */
+  private final DebugPrintStream debugStream;
+
+  /**
+   * A mapping between notification event names and the processors that decode them.
+   */
+  private final Map<String, StreamingNotificationProcessor> processors = Maps.newConcurrentMap();
+
+  /**
+   * The action to run when a notification decoded from the stream has been received, may be
+   * {@code null}.
+   */
+  private volatile Runnable streamedResponseListener;
+
+  /**
+   * A flag indicating whether the end of the stream has been reached or the stream is broken.
+   */
+  private boolean eof;
+
+  /**
+   * Initializes a newly created response stream.
+   * 
+   * @param stream the byte stream to read JSON responses from
+   * @param debugStream the {@link PrintStream} to print all responses to, may be {@code null}
+   */
+  public StreamingResponseStream(InputStream stream, DebugPrintStream debugStream) {
+    lines = new JsonLinesReader(new InputStreamReader(stream, StandardCharsets.UTF_8), debugStream != null);
+    this.debugStream = debugStream;
+  }
+
+  /**
+   * Registers the {@link StreamingNotificationProcessor} to decode notifications with the given
+   * event name.
+   * 
+   * @param event the notification event name, e.g. {@code analysis.highlights}
+   * @param processor the processor to decode the notification parameters
+   */
+  public void addNotificationProcessor(String event, StreamingNotificationProcessor processor) {
+    processors.put(event, processor);
+  }
+
+  /**
+   * Sets the action to run every time a notification decoded from the stream has been received,
+   * before the notification is processed. Such notifications are never returned from
+   * {@link #take()}, so the reader of this stream does not see them otherwise.
+   */
+  public void setStreamedResponseListener(Runnable listener) {
+    streamedResponseListener = listener;
+  }
+
+  @Override
+  public void lastRequestProcessed() {
+  }
+
+  @Override
+  public JsonObject take() throws Exception {
+    while (true) {
+      if (eof) {
+        return null;
+      }
+      JsonObject response = new JsonObject();
+      Runnable notification;
+      try {
+        if (!lines.nextLine()) {
+          eof = true;
+          return null;
+        }
+        notification = readResponse(response);
+      } catch (EOFException e) {
+        // the line ended in the middle of a response, the next take() continues with the next line
+        throw new JsonSyntaxException(getParseErrorMessage(), e);
+      } catch (MalformedJsonException e) {
+        throw new JsonSyntaxException(getParseErrorMessage(), e);
+      } catch (IOException e) {
+        eof = true;
+        return null;
+      } catch (RuntimeException e) {
+        throw new JsonSyntaxException(getParseErrorMessage(), e);
+      }
+      if (debugStream != null) {
+        debugStream.println(System.currentTimeMillis() + " <= " + lines.getLine());
+      }
+      // not a notification decoded from the stream
+      if (notification == null) {
+        return response;
+      }
+      Runnable listener = streamedResponseListener;
+      if (listener != null) {
+        listener.run();
+      }
+      try {
+        notification.run();
+      } catch (Throwable e) {
+        Logging.getLogger().logError(e.getMessage(), e);
+      } finally {
+        lastRequestProcessed();
+      }
+    }
+  }
+
+  private String getParseErrorMessage() {
+    String line = lines.getLine();
+    // Include the line in the message so that we can better diagnose the problem
+    return line == null ? "Parse server message failed" : "Parse server message failed: " + line;
+  }
+
+  /**
+   * Reads the next response into the given {@link JsonObject}. If it is a notification that has a
+   * registered {@link StreamingNotificationProcessor}, its parameters are decoded by the processor.
+   * 
+   * @return the action to notify the listener about the decoded notification, {@code null} if the
+   *         response should be returned from {@link #take()}
+   */
+  private Runnable readResponse(JsonObject response) throws IOException {
+    JsonReader reader = new JsonReader(lines);
+    reader.setLenient(true);
+    StreamingNotificationProcessor processor = null;
+    Runnable notification = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("event") && reader.peek() == JsonToken.STRING) {
+        String event = reader.nextString();
+        processor = processors.get(event);
+        response.addProperty(name, event);
+      } else if (name.equals("params") && processor != null) {
+        notification = processor.readParams(reader);
+      } else {
+        JsonElement value = new JsonParser().parse(reader);
+        response.add(name, value);
+      }
+    }
+    reader.endObject();
+    return notification;
+  }
+}
@@ -18,7 +18,10 @@ import com.google.dart.server.utilities.general.StringUtilities;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -68,6 +71,22 @@ public abstract class JsonProcessor {
     return strings.toArray(new String[strings.size()]);
   }
 
+  /**
+   * Read a JSON array of string primitives from the given {@link JsonReader}.
+   * 
+   * @param reader the {@link JsonReader} positioned at the array
+   * @return the {@link String} array
+   */
+  protected String[] readStringArray(JsonReader reader) throws IOException {
+    List<String> strings = new ArrayList<String>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      strings.add(reader.nextString());
+    }
+    reader.endArray();
+    return strings.toArray(new String[strings.size()]);
+  }
+
   /**
    * Safely get some member off of the passed {@link JsonObject} and return the {@code int}. Instead
    * of calling {@link JsonObject#has(String)} before {@link JsonObject#get(String)}, only one call
@@ -14,18 +14,21 @@
 package com.google.dart.server.internal.remote.processor;
 
 import com.google.dart.server.AnalysisServerListener;
+import com.google.dart.server.PackedHighlightRegions;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 
-import org.dartlang.analysis.server.protocol.HighlightRegion;
-
-import java.util.List;
+import java.io.IOException;
 
 /**
  * Processor for "analysis.highlights" notification.
  * 
  * @coverage dart.server.remote
  */
-public class NotificationAnalysisHighlightsProcessor extends NotificationProcessor {
+public class NotificationAnalysisHighlightsProcessor extends NotificationProcessor implements
+    StreamingNotificationProcessor {
 
   public NotificationAnalysisHighlightsProcessor(AnalysisServerListener listener) {
     super(listener);
@@ -38,8 +41,76 @@ public class NotificationAnalysisHighlightsProcessor extends NotificationProcess
   public void process(JsonObject response) throws Exception {
     JsonObject paramsObject = response.get("params").getAsJsonObject();
     String file = paramsObject.get("file").getAsString();
-    List<HighlightRegion> regions = HighlightRegion.fromJsonArray(paramsObject.get("regions").getAsJsonArray());
+    JsonArray regionsArray = paramsObject.get("regions").getAsJsonArray();
+    PackedHighlightRegions regions = new PackedHighlightRegions(regionsArray.size());
+    for (JsonElement regionElement : regionsArray) {
+      JsonObject regionObject = regionElement.getAsJsonObject();
+      JsonElement type = regionObject.get("type");
+      if (type == null) {
+        continue;
+      }
+      regions.addRegion(
+          type.getAsString(),
+          regionObject.get("offset").getAsInt(),
+          regionObject.get("length").getAsInt());
+    }
     // notify listener
     getListener().computedHighlights(file, regions);
   }
+
+  @Override
+  public Runnable readParams(JsonReader reader) throws IOException {
+    String file = null;
+    PackedHighlightRegions regions = new PackedHighlightRegions(0);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("file")) {
+        file = reader.nextString();
+      } else if (name.equals("regions")) {
+        regions = readRegions(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    final String finalFile = file;
+    final PackedHighlightRegions finalRegions = regions;
+    return new Runnable() {
+      @Override
+      public void run() {
+        getListener().computedHighlights(finalFile, finalRegions);
+      }
+    };
+  }
+
+  private static PackedHighlightRegions readRegions(JsonReader reader) throws IOException {
+    PackedHighlightRegions regions = new PackedHighlightRegions();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      int typeId = -1;
+      int offset = 0;
+      int length = 0;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("type")) {
+          typeId = PackedHighlightRegions.getTypeId(reader.nextString());
+        } else if (name.equals("offset")) {
+          offset = reader.nextInt();
+        } else if (name.equals("length")) {
+          length = reader.nextInt();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      // a region without a type cannot be highlighted
+      if (typeId != -1) {
+        regions.addRegion(typeId, offset, length);
+      }
+    }
+    reader.endArray();
+    return regions;
+  }
 }
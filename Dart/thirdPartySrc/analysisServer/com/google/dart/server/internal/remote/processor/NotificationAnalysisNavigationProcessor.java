@@ -14,12 +14,16 @@
 package com.google.dart.server.internal.remote.processor;
 
 import com.google.dart.server.AnalysisServerListener;
+import com.google.dart.server.PackedNavigationRegions;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 
-import org.dartlang.analysis.server.protocol.NavigationRegion;
 import org.dartlang.analysis.server.protocol.NavigationTarget;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -27,7 +31,8 @@ import java.util.List;
  * 
  * @coverage dart.server.remote
  */
-public class NotificationAnalysisNavigationProcessor extends NotificationProcessor {
+public class NotificationAnalysisNavigationProcessor extends NotificationProcessor implements
+    StreamingNotificationProcessor {
   public NotificationAnalysisNavigationProcessor(AnalysisServerListener listener) {
     super(listener);
   }
@@ -47,11 +52,119 @@ public class NotificationAnalysisNavigationProcessor extends NotificationProcess
     }
     // prepare regions
     JsonArray regionsArray = paramsObject.get("regions").getAsJsonArray();
-    List<NavigationRegion> regions = NavigationRegion.fromJsonArray(regionsArray);
-    for (NavigationRegion region : regions) {
-      region.lookupTargets(targets);
+    PackedNavigationRegions regions = new PackedNavigationRegions(regionsArray.size());
+    for (JsonElement regionElement : regionsArray) {
+      JsonObject regionObject = regionElement.getAsJsonObject();
+      for (JsonElement targetElement : regionObject.get("targets").getAsJsonArray()) {
+        regions.addTarget(targetElement.getAsInt());
+      }
+      regions.addRegion(regionObject.get("offset").getAsInt(), regionObject.get("length").getAsInt());
     }
+    regions.setTargets(targets);
     // notify listener
     getListener().computedNavigation(file, regions);
   }
+
+  @Override
+  public Runnable readParams(JsonReader reader) throws IOException {
+    String file = null;
+    String[] targetFiles = new String[0];
+    List<NavigationTarget> targets = NavigationTarget.EMPTY_LIST;
+    PackedNavigationRegions regions = new PackedNavigationRegions(0);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("file")) {
+        file = reader.nextString();
+      } else if (name.equals("files")) {
+        targetFiles = readStringArray(reader);
+      } else if (name.equals("targets")) {
+        targets = readTargets(reader);
+      } else if (name.equals("regions")) {
+        regions = readRegions(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    // the members may come in any order, so link them only when all of them are read
+    for (NavigationTarget target : targets) {
+      target.lookupFile(targetFiles);
+    }
+    regions.setTargets(targets);
+    final String finalFile = file;
+    final PackedNavigationRegions finalRegions = regions;
+    return new Runnable() {
+      @Override
+      public void run() {
+        getListener().computedNavigation(finalFile, finalRegions);
+      }
+    };
+  }
+
+  private static PackedNavigationRegions readRegions(JsonReader reader) throws IOException {
+    PackedNavigationRegions regions = new PackedNavigationRegions();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      int offset = 0;
+      int length = 0;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("offset")) {
+          offset = reader.nextInt();
+        } else if (name.equals("length")) {
+          length = reader.nextInt();
+        } else if (name.equals("targets")) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            regions.addTarget(reader.nextInt());
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      regions.addRegion(offset, length);
+    }
+    reader.endArray();
+    return regions;
+  }
+
+  private static List<NavigationTarget> readTargets(JsonReader reader) throws IOException {
+    List<NavigationTarget> targets = new ArrayList<NavigationTarget>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      String kind = null;
+      int fileIndex = 0;
+      int offset = 0;
+      int length = 0;
+      int startLine = 0;
+      int startColumn = 0;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("kind")) {
+          kind = reader.nextString();
+        } else if (name.equals("fileIndex")) {
+          fileIndex = reader.nextInt();
+        } else if (name.equals("offset")) {
+          offset = reader.nextInt();
+        } else if (name.equals("length")) {
+          length = reader.nextInt();
+        } else if (name.equals("startLine")) {
+          startLine = reader.nextInt();
+        } else if (name.equals("startColumn")) {
+          startColumn = reader.nextInt();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      targets.add(new NavigationTarget(kind, fileIndex, offset, length, startLine, startColumn));
+    }
+    reader.endArray();
+    return targets;
+  }
 }
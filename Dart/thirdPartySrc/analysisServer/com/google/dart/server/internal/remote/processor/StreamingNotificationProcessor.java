@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote.processor;
+
+import com.google.dart.server.internal.remote.StreamingResponseStream;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * A {@link NotificationProcessor} that can decode the notification parameters directly from a
+ * {@link JsonReader}, without building a {@link com.google.gson.JsonObject} first.
+ * 
+ * @coverage dart.server.remote
+ * @see StreamingResponseStream
+ */
+public interface StreamingNotificationProcessor {
+  /**
+   * Read the value of the "params" member of the notification, the given {@link JsonReader} is
+   * positioned at, and return the action which notifies the listener. The action is run after the
+   * whole notification has been read.
+   * 
+   * @param reader the {@link JsonReader} positioned at the "params" value, the value must be
+   *          consumed completely
+   * @return the action to notify the listener, not {@code null}
+   */
+  Runnable readParams(JsonReader reader) throws IOException;
+}
@@ -17,14 +17,36 @@
 package jetbrains.communicator.core.transport;
 
 import jetbrains.communicator.core.vfs.VFile;
+import jetbrains.communicator.core.vfs.VFileContentsCodec;
+import org.apache.log4j.Logger;
 import org.jdom.Element;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Kir
  */
 public class GetVFileContentsXmlMessage implements XmlMessage {
+  @NonNls
+  private static final Logger LOG = Logger.getLogger(GetVFileContentsXmlMessage.class);
+
   public static final String TAG = "fillContents";
+  private static final int MAX_CACHED_FILES = 16;
+
+  // last received contents of remote files, the peer may answer with a delta against them
+  private static final Map<String, String> ourReceivedContents = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > MAX_CACHED_FILES;
+    }
+  });
+
   private final VFile myFile;
+  private String myBaseContents;
 
   public GetVFileContentsXmlMessage(VFile file) {
     myFile = file;
@@ -44,12 +66,54 @@ public class GetVFileContentsXmlMessage implements XmlMessage {
 
   public void fillRequest(Element element) {
     myFile.saveTo(element);
+
+    element.setAttribute(VFileContentsCodec.ACCEPT_ENCODING_ATTR, "true");
+    myBaseContents = ourReceivedContents.get(getCacheKey(myFile));
+    if (myBaseContents != null) {
+      element.setAttribute(VFileContentsCodec.BASE_HASH_ATTR, VFileContentsCodec.hash(myBaseContents));
+    }
   }
 
   public void processResponse(Element responseElement) {
-    VFile from = VFile.createFrom(responseElement);
-    if (from != null) {
-      myFile.setContents(from.getContents());
+    String encoding = responseElement.getAttributeValue(VFileContentsCodec.ENCODING_ATTR);
+    if (encoding == null) {
+      // plain text, the peer doesn't support encoded contents
+      VFile from = VFile.createFrom(responseElement);
+      if (from != null) {
+        setContents(from.getContents());
+      }
+      return;
     }
+
+    try {
+      if (VFileContentsCodec.UNCHANGED.equals(encoding)) {
+        setContents(myBaseContents);
+      }
+      else if (VFileContentsCodec.DELTA.equals(encoding)) {
+        if (myBaseContents != null) {
+          setContents(VFileContentsCodec.applyDelta(myBaseContents, responseElement.getText()));
+        }
+      }
+      else if (VFileContentsCodec.DEFLATE.equals(encoding)) {
+        setContents(VFileContentsCodec.decompress(responseElement.getText()));
+      }
+      else {
+        LOG.info("Unknown contents encoding " + encoding + " for " + myFile);
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Unable to decode contents of " + myFile, e);
+    }
+  }
+
+  private void setContents(String contents) {
+    if (contents != null) {
+      ourReceivedContents.put(getCacheKey(myFile), contents);
+    }
+    myFile.setContents(contents);
+  }
+
+  private static String getCacheKey(VFile file) {
+    return file.getProjectName() + ':' + file.getFullPath();
   }
 }
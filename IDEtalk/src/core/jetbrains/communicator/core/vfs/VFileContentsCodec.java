@@ -0,0 +1,238 @@
+/*
+ * Copyright 2000-2006 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.core.vfs;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodings of file contents transferred between peers. Besides plain XML-safe text (see {@link VFile#saveTo})
+ * the contents may be sent deflated, as a binary delta against contents the requester already has,
+ * or not sent at all if the requester's copy is up to date.
+ */
+public final class VFileContentsCodec {
+  /** Request attribute, set if the requester understands encodings below */
+  @NonNls public static final String ACCEPT_ENCODING_ATTR = "acceptContentsEncoding";
+  /** Request attribute, hash of contents the requester already has */
+  @NonNls public static final String BASE_HASH_ATTR = "baseContentsHash";
+  /** Response attribute, absent for plain text */
+  @NonNls public static final String ENCODING_ATTR = "contentsEncoding";
+
+  @NonNls public static final String DEFLATE = "deflate";
+  @NonNls public static final String DELTA = "delta";
+  @NonNls public static final String UNCHANGED = "unchanged";
+
+  private static final int BLOCK_SIZE = 16;
+  // shorter matches are mostly coincidental in repetitive text and prevent finding the right one
+  private static final int MIN_MATCH = 2 * BLOCK_SIZE;
+  private static final int MAX_CANDIDATES = 16;
+
+  private static final byte ADD = 0;
+  private static final byte COPY = 1;
+
+  private VFileContentsCodec() {
+  }
+
+  public static String hash(String contents) {
+    try {
+      return StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(contents.getBytes(CharsetToolkit.UTF8_CHARSET)));
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static String compress(String contents) {
+    return deflate(contents.getBytes(CharsetToolkit.UTF8_CHARSET));
+  }
+
+  public static String decompress(String encoded) throws IOException {
+    return new String(inflate(encoded), CharsetToolkit.UTF8_CHARSET);
+  }
+
+  /**
+   * Delta is a sequence of ADD (literal bytes) and COPY (range of base bytes) commands. Matches are found by
+   * looking up blocks of target in the index of base blocks, so moved and repeated fragments are copied too.
+   * Base blocks with the same hash are chained, the longest match among them is taken.
+   */
+  public static String encodeDelta(String base, String target) {
+    byte[] baseBytes = base.getBytes(CharsetToolkit.UTF8_CHARSET);
+    byte[] targetBytes = target.getBytes(CharsetToolkit.UTF8_CHARSET);
+
+    Map<Integer, Integer> blocks = new HashMap<>(baseBytes.length / BLOCK_SIZE + 1);
+    // previous base block with the same hash, -1 if none
+    int[] chain = new int[baseBytes.length / BLOCK_SIZE + 1];
+    for (int offset = 0; offset + BLOCK_SIZE <= baseBytes.length; offset += BLOCK_SIZE) {
+      Integer previous = blocks.put(blockHash(baseBytes, offset), offset);
+      chain[offset / BLOCK_SIZE] = previous == null ? -1 : previous;
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(targetBytes.length / 4 + 16);
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeInt(targetBytes.length);
+
+      int literalStart = 0;
+      int i = 0;
+      while (i + BLOCK_SIZE <= targetBytes.length) {
+        Integer head = blocks.get(blockHash(targetBytes, i));
+        int bestStart = 0;
+        int bestBaseStart = 0;
+        int bestEnd = 0;
+        int candidate = head == null ? -1 : head;
+        for (int tries = 0; candidate != -1 && tries < MAX_CANDIDATES; candidate = chain[candidate / BLOCK_SIZE], tries++) {
+          if (!regionMatches(baseBytes, candidate, targetBytes, i, BLOCK_SIZE)) continue;
+
+          int start = i;
+          int baseStart = candidate;
+          while (start > literalStart && baseStart > 0 && targetBytes[start - 1] == baseBytes[baseStart - 1]) {
+            start--;
+            baseStart--;
+          }
+          int end = i + BLOCK_SIZE;
+          int baseEnd = candidate + BLOCK_SIZE;
+          while (end < targetBytes.length && baseEnd < baseBytes.length && targetBytes[end] == baseBytes[baseEnd]) {
+            end++;
+            baseEnd++;
+          }
+
+          if (end - start > bestEnd - bestStart) {
+            bestStart = start;
+            bestBaseStart = baseStart;
+            bestEnd = end;
+          }
+        }
+
+        if (bestEnd - bestStart < MIN_MATCH) {
+          i++;
+          continue;
+        }
+
+        writeAdd(out, targetBytes, literalStart, bestStart);
+        out.writeByte(COPY);
+        out.writeInt(bestBaseStart);
+        out.writeInt(bestEnd - bestStart);
+
+        literalStart = i = bestEnd;
+      }
+      writeAdd(out, targetBytes, literalStart, targetBytes.length);
+      out.close();
+    }
+    catch (IOException e) {
+      // ByteArrayOutputStream doesn't throw it
+      throw new IllegalStateException(e);
+    }
+
+    return deflate(bytes.toByteArray());
+  }
+
+  public static String applyDelta(String base, String delta) throws IOException {
+    byte[] baseBytes = base.getBytes(CharsetToolkit.UTF8_CHARSET);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(inflate(delta)));
+    int resultLength = in.readInt();
+    if (resultLength < 0) throw new IOException("Invalid delta");
+    byte[] result = new byte[resultLength];
+    int length = 0;
+    while (in.available() > 0) {
+      byte command = in.readByte();
+      if (command != ADD && command != COPY) throw new IOException("Unknown delta command " + command);
+
+      int offset = command == COPY ? in.readInt() : 0;
+      int size = in.readInt();
+      if (size < 0 || length + size > result.length) throw new IOException("Invalid delta");
+      if (command == ADD) {
+        in.readFully(result, length, size);
+        length += size;
+      }
+      else {
+        if (offset < 0 || offset + size > baseBytes.length) throw new IOException("Delta doesn't match base contents");
+        System.arraycopy(baseBytes, offset, result, length, size);
+        length += size;
+      }
+    }
+
+    if (length != result.length) throw new IOException("Delta is incomplete");
+    return new String(result, CharsetToolkit.UTF8_CHARSET);
+  }
+
+  private static void writeAdd(DataOutputStream out, byte[] bytes, int start, int end) throws IOException {
+    if (start < end) {
+      out.writeByte(ADD);
+      out.writeInt(end - start);
+      out.write(bytes, start, end - start);
+    }
+  }
+
+  private static int blockHash(byte[] bytes, int offset) {
+    int hash = 0;
+    for (int i = offset; i < offset + BLOCK_SIZE; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    return hash;
+  }
+
+  private static boolean regionMatches(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      if (a[aOffset + i] != b[bOffset + i]) return false;
+    }
+    return true;
+  }
+
+  private static String deflate(byte[] data) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 3 + 16);
+    try {
+      DeflaterOutputStream out = new DeflaterOutputStream(bytes);
+      out.write(data);
+      out.close();
+    }
+    catch (IOException e) {
+      // ByteArrayOutputStream doesn't throw it
+      throw new IllegalStateException(e);
+    }
+    // base64 is XML-safe and much shorter than escaped text
+    return Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+
+  private static byte[] inflate(String encoded) throws IOException {
+    byte[] data;
+    try {
+      data = Base64.getDecoder().decode(encoded.trim());
+    }
+    catch (IllegalArgumentException e) {
+      throw new IOException(e);
+    }
+
+    InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(data));
+    ByteArrayOutputStream result = new ByteArrayOutputStream(data.length * 3);
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      result.write(buffer, 0, read);
+    }
+    in.close();
+    return result.toByteArray();
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2000-2006 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.core.impl.dispatcher;
+
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Append-only message history storage. The log file is a sequence of records (day, length, data),
+ * the index file keeps (day, offset) of every record, so a date range is loaded without reading
+ * records of other days.
+ */
+class HistoryLog {
+  @NonNls
+  private static final Logger LOG = Logger.getLogger(HistoryLog.class);
+
+  @NonNls
+  private static final String LOG_FILE = "history.log";
+  @NonNls
+  private static final String INDEX_FILE = "history.idx";
+
+  private static final int RECORD_HEADER_LENGTH = 8 + 4;
+  private static final int INDEX_ENTRY_LENGTH = 8 + 8;
+
+  private final File myLogFile;
+  private final File myIndexFile;
+
+  HistoryLog(File dir) {
+    myLogFile = new File(dir, LOG_FILE);
+    myIndexFile = new File(dir, INDEX_FILE);
+  }
+
+  static class Entry {
+    final Date myDay;
+    final long myOffset;
+
+    Entry(Date day, long offset) {
+      myDay = day;
+      myOffset = offset;
+    }
+  }
+
+  public void append(Date day, byte[] data) throws IOException {
+    long offset = myLogFile.length();
+
+    DataOutputStream log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myLogFile, true)));
+    try {
+      log.writeLong(day.getTime());
+      log.writeInt(data.length);
+      log.write(data);
+    }
+    finally {
+      log.close();
+    }
+
+    DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myIndexFile, true)));
+    try {
+      index.writeLong(day.getTime());
+      index.writeLong(offset);
+    }
+    finally {
+      index.close();
+    }
+  }
+
+  /**
+   * @return records in the order they were appended
+   */
+  public List<Entry> readIndex() throws IOException {
+    if (!myLogFile.exists()) {
+      return new ArrayList<>();
+    }
+    // incomplete last entry is possible if IDE was killed during save
+    if (!myIndexFile.exists() || myIndexFile.length() % INDEX_ENTRY_LENGTH != 0) {
+      return indexRecords(0, false);
+    }
+
+    List<Entry> result = readIndexFile();
+    long indexedLength = result.isEmpty() ? 0 : getRecordEnd(result.get(result.size() - 1).myOffset);
+    if (indexedLength == -1) {
+      LOG.info("History index doesn't match the log");
+      return indexRecords(0, false);
+    }
+    if (indexedLength < myLogFile.length()) {
+      // records were appended to the log, but not to the index, if IDE was killed between these writes
+      result.addAll(indexRecords(indexedLength, true));
+    }
+    return result;
+  }
+
+  private List<Entry> readIndexFile() throws IOException {
+    int size = (int)(myIndexFile.length() / INDEX_ENTRY_LENGTH);
+    List<Entry> result = new ArrayList<>(size);
+    DataInputStream index = new DataInputStream(new BufferedInputStream(new FileInputStream(myIndexFile)));
+    try {
+      for (int i = 0; i < size; i++) {
+        Date day = new Date(index.readLong());
+        result.add(new Entry(day, index.readLong()));
+      }
+    }
+    finally {
+      index.close();
+    }
+    return result;
+  }
+
+  /**
+   * @return offset following the record, -1 if there's no complete record at the offset
+   */
+  private long getRecordEnd(long offset) throws IOException {
+    RandomAccessFile log = new RandomAccessFile(myLogFile, "r");
+    try {
+      long logLength = log.length();
+      if (offset < 0 || offset + RECORD_HEADER_LENGTH > logLength) return -1;
+
+      log.seek(offset + 8);
+      int length = log.readInt();
+      return length < 0 || offset + RECORD_HEADER_LENGTH + length > logLength ? -1 : offset + RECORD_HEADER_LENGTH + length;
+    }
+    finally {
+      log.close();
+    }
+  }
+
+  public List<byte[]> read(List<Entry> entries) throws IOException {
+    List<byte[]> result = new ArrayList<>(entries.size());
+    if (entries.isEmpty()) return result;
+
+    RandomAccessFile log = new RandomAccessFile(myLogFile, "r");
+    try {
+      for (Entry entry : entries) {
+        log.seek(entry.myOffset);
+        long day = log.readLong();
+        int length = log.readInt();
+        if (day != entry.myDay.getTime() || length < 0 || entry.myOffset + RECORD_HEADER_LENGTH + length > log.length()) {
+          LOG.info("Broken history record at " + entry.myOffset);
+          continue;
+        }
+
+        byte[] data = new byte[length];
+        log.readFully(data);
+        result.add(data);
+      }
+    }
+    finally {
+      log.close();
+    }
+    return result;
+  }
+
+  /**
+   * Scans log records starting at the offset and writes index entries for them
+   *
+   * @param append false to rebuild the whole index
+   */
+  private List<Entry> indexRecords(long offset, boolean append) throws IOException {
+    if (!append) {
+      LOG.info("Rebuild history index");
+    }
+
+    List<Entry> result = new ArrayList<>();
+    RandomAccessFile log = new RandomAccessFile(myLogFile, "r");
+    DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myIndexFile, append)));
+    try {
+      long logLength = log.length();
+      while (offset + RECORD_HEADER_LENGTH <= logLength) {
+        log.seek(offset);
+        long day = log.readLong();
+        int length = log.readInt();
+        if (length < 0 || offset + RECORD_HEADER_LENGTH + length > logLength) break;
+
+        index.writeLong(day);
+        index.writeLong(offset);
+        result.add(new Entry(new Date(day), offset));
+        offset += RECORD_HEADER_LENGTH + length;
+      }
+    }
+    finally {
+      index.close();
+      log.close();
+    }
+    return result;
+  }
+}
@@ -15,6 +15,7 @@
  */
 package jetbrains.communicator.core.impl.dispatcher;
 
+import com.intellij.openapi.vfs.CharsetToolkit;
 import com.thoughtworks.xstream.XStream;
 import jetbrains.communicator.core.dispatcher.LocalMessage;
 import jetbrains.communicator.core.impl.users.UserImpl;
@@ -27,8 +28,10 @@ import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -46,10 +49,13 @@ class MessageHistory {
   private static final String HISTORY = "history";
 
   private final DayHistory myHistory = new DayHistory();
+  // messages which are not appended to the history log yet
+  private final DayHistory myUnsavedHistory = new DayHistory();
   @NonNls
   private final XStream myXStream;
   private final UserModel myUserModel;
   private final IDEFacade myFacade;
+  private final HistoryLog myLog;
 
   private Future<?> myPendingSave;
 
@@ -61,10 +67,12 @@ class MessageHistory {
     myUserModel = userModel;
 
     getHistoryDir().mkdir();
+    myLog = new HistoryLog(getHistoryDir());
 
     myXStream = XMLUtil.createXStream();
     setupXStream();
 
+    migrateXmlHistory();
     loadHistorySince(new Date());
   }
 
@@ -75,6 +83,7 @@ class MessageHistory {
     }
 
     myHistory.clear();
+    myUnsavedHistory.clear();
   }
 
   private void setupXStream() {
@@ -87,11 +96,13 @@ class MessageHistory {
 
   public synchronized void addMessage(User user, LocalMessage message) {
     myHistory.addMessage(user, message);
+    myUnsavedHistory.addMessage(user, message);
     triggerSave();
   }
 
   public synchronized void clear() {
     myHistory.clear();
+    myUnsavedHistory.clear();
 
     deleteAllHistoryFiles();
   }
@@ -148,20 +159,61 @@ class MessageHistory {
   }
 
   private void doLoadHistorySince(Date since) {
-    File historyDir = getHistoryDir();
+    try {
+      // decide before loading, loaded records change the oldest loaded day
+      List<HistoryLog.Entry> entries = new ArrayList<>();
+      for (HistoryLog.Entry entry : myLog.readIndex()) {
+        if (!entry.myDay.before(since) && !myHistory.hasHistorySince(entry.myDay)) {
+          entries.add(entry);
+        }
+      }
 
-    String[] historyFiles = historyDir.list((dir, name) -> name.endsWith(".xml"));
+      for (byte[] data : myLog.read(entries)) {
+        DayHistory dayHistory = fromBytes(data);
+        if (dayHistory != null) {
+          dayHistory.copyTo(myHistory);
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Unable to read history", e);
+    }
+
+    myHistory.resort();
+  }
+
+  /**
+   * History was stored in a separate xml file for every day, move these files to the history log.
+   * Days that are already in the log were migrated before, but their files couldn't be deleted.
+   */
+  private void migrateXmlHistory() {
+    String[] historyFiles = getHistoryDir().list((dir, name) -> name.endsWith(".xml"));
+    if (historyFiles == null || historyFiles.length == 0) return;
+
+    Set<Date> migratedDays = new HashSet<>();
+    try {
+      for (HistoryLog.Entry entry : myLog.readIndex()) {
+        migratedDays.add(entry.myDay);
+      }
+    }
+    catch (IOException e) {
+      LOG.error("Unable to read history index", e);
+      return;
+    }
 
     Arrays.sort(historyFiles);
-    for (int i = historyFiles.length - 1; i >= 0; i--) {
-      String historyFile = historyFiles[i];
+    for (String historyFile : historyFiles) {
       try {
         Date date = DATE_FORMAT.parse(historyFile);
-        if (!date.before(since) && !myHistory.hasHistorySince(date)) {
-          DayHistory dayHistory = (DayHistory)XMLUtil.fromXml(myXStream, myFacade.getCacheDir(), getFileNameForDate(date), false);
-          if (dayHistory != null) {
-            dayHistory.copyTo(myHistory);
-          }
+        if (migratedDays.contains(date)) {
+          new File(getHistoryDir(), historyFile).delete();
+          continue;
+        }
+
+        DayHistory dayHistory = (DayHistory)XMLUtil.fromXml(myXStream, myFacade.getCacheDir(), getFileNameForDate(date), false);
+        if (dayHistory != null) {
+          myLog.append(date, toBytes(dayHistory));
+          new File(getHistoryDir(), historyFile).delete();
         }
       }
       catch (ParseException e) {
@@ -170,9 +222,26 @@ class MessageHistory {
       catch (NumberFormatException e) {
         // ignore file of wrong format
       }
+      catch (IOException e) {
+        LOG.error("Unable to migrate history file " + historyFile, e);
+        return;
+      }
     }
+  }
 
-    myHistory.resort();
+  @Nullable
+  private DayHistory fromBytes(byte[] data) {
+    try {
+      return (DayHistory)myXStream.fromXML(new InputStreamReader(new ByteArrayInputStream(data), CharsetToolkit.UTF8_CHARSET));
+    }
+    catch (RuntimeException e) {
+      LOG.info("Unable to read history record", e);
+      return null;
+    }
+  }
+
+  private byte[] toBytes(DayHistory dayHistory) {
+    return myXStream.toXML(dayHistory).getBytes(CharsetToolkit.UTF8_CHARSET);
   }
 
   private void triggerSave() {
@@ -193,11 +262,17 @@ class MessageHistory {
 
   private synchronized void saveHistory() {
     LOG.debug("Start history save");
-    Map<Date, DayHistory> map = getHistory();
-    for (Date date : map.keySet()) {
+    Map<Date, DayHistory> map = groupByDay(myUnsavedHistory);
+    myUnsavedHistory.clear();
+
+    List<Date> days = new ArrayList<>(map.keySet());
+    Collections.sort(days);
+    for (Date date : days) {
       DayHistory dayHistory = map.get(date);
       try {
-        XMLUtil.toXml(myXStream, myFacade.getCacheDir(), getFileNameForDate(date), dayHistory);
+        myLog.append(date, toBytes(dayHistory));
+      } catch (IOException e) {
+        LOG.error("Unable to save dayHistory for " + date + ": " + dayHistory, e);
       } catch (RuntimeException e) {
         LOG.error("Unable to save dayHistory for " + date + ": " + dayHistory, e);
       }
@@ -206,11 +281,11 @@ class MessageHistory {
     LOG.debug("Done history save");
   }
 
-  private synchronized Map<Date, DayHistory> getHistory() {
+  private static Map<Date, DayHistory> groupByDay(DayHistory history) {
     Map<Date, DayHistory> result = new HashMap<>();
 
-    for (User user : myHistory.keySet()) {
-      List<LocalMessage> messages = myHistory.get(user);
+    for (User user : history.keySet()) {
+      List<LocalMessage> messages = history.get(user);
       for (LocalMessage message : messages) {
         DayHistory dayHistory = getDayHistoryFor(message, result);
 
@@ -221,7 +296,7 @@ class MessageHistory {
     return result;
   }
 
-  private DayHistory getDayHistoryFor(LocalMessage message, Map<Date, DayHistory> result) {
+  private static DayHistory getDayHistoryFor(LocalMessage message, Map<Date, DayHistory> result) {
     Date day = TimeUtil.getDay(message.getWhen());
     DayHistory dayHistory = result.get(day);
     if (dayHistory == null) {
@@ -18,13 +18,27 @@ package jetbrains.communicator.core.impl.transport;
 import jetbrains.communicator.core.transport.GetVFileContentsXmlMessage;
 import jetbrains.communicator.core.users.UserModel;
 import jetbrains.communicator.core.vfs.VFile;
+import jetbrains.communicator.core.vfs.VFileContentsCodec;
 import jetbrains.communicator.ide.IDEFacade;
 import org.jdom.Element;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author Kir
  */
 public class GetVFileContentsProvider extends FileAccessProvider {
+  private static final int MAX_SENT_CONTENTS = 16;
+
+  // hash -> contents sent to peers, deltas are computed against them
+  private final Map<String, String> mySentContents = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > MAX_SENT_CONTENTS;
+    }
+  });
 
   public GetVFileContentsProvider(IDEFacade ideFacade, UserModel userModel) {
     super(ideFacade, userModel);
@@ -37,6 +51,37 @@ public class GetVFileContentsProvider extends FileAccessProvider {
   protected void doProcess(Element request, Element response) {
     VFile from = VFile.createFrom(request);
     myIdeFacade.fillFileContents(from);
+
+    String contents = from.getContents();
+    if (contents == null || request.getAttributeValue(VFileContentsCodec.ACCEPT_ENCODING_ATTR) == null) {
+      from.saveTo(response);
+      return;
+    }
+
+    from.setContents(null);
     from.saveTo(response);
+
+    String hash = VFileContentsCodec.hash(contents);
+    mySentContents.put(hash, contents);
+
+    String baseHash = request.getAttributeValue(VFileContentsCodec.BASE_HASH_ATTR);
+    if (hash.equals(baseHash)) {
+      response.setAttribute(VFileContentsCodec.ENCODING_ATTR, VFileContentsCodec.UNCHANGED);
+      return;
+    }
+
+    String compressed = VFileContentsCodec.compress(contents);
+    String base = baseHash == null ? null : mySentContents.get(baseHash);
+    if (base != null) {
+      String delta = VFileContentsCodec.encodeDelta(base, contents);
+      if (delta.length() < compressed.length()) {
+        response.setAttribute(VFileContentsCodec.ENCODING_ATTR, VFileContentsCodec.DELTA);
+        response.setText(delta);
+        return;
+      }
+    }
+
+    response.setAttribute(VFileContentsCodec.ENCODING_ATTR, VFileContentsCodec.DEFLATE);
+    response.setText(compressed);
   }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2000-2006 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.core.impl.dispatcher;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Date;
+import java.util.List;
+
+public class HistoryLogTest extends TestCase {
+  private static final Date DAY1 = new Date(1000L * 60 * 60 * 24);
+  private static final Date DAY2 = new Date(2000L * 60 * 60 * 24);
+  private static final Date DAY3 = new Date(3000L * 60 * 60 * 24);
+
+  private File myDir;
+  private HistoryLog myLog;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("historyLog", null);
+    myLog = new HistoryLog(myDir);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testRead() throws Exception {
+    myLog.append(DAY1, "one".getBytes());
+    myLog.append(DAY2, "two".getBytes());
+
+    List<HistoryLog.Entry> entries = myLog.readIndex();
+    assertEquals(2, entries.size());
+    assertEquals(DAY1, entries.get(0).myDay);
+    assertEquals(DAY2, entries.get(1).myDay);
+
+    List<byte[]> data = myLog.read(entries.subList(1, 2));
+    assertEquals(1, data.size());
+    assertEquals("two", new String(data.get(0)));
+  }
+
+  public void testMissingIndexIsRebuilt() throws Exception {
+    myLog.append(DAY1, "one".getBytes());
+    myLog.append(DAY2, "two".getBytes());
+    assertTrue(getIndexFile().delete());
+
+    assertEquals(2, myLog.readIndex().size());
+    assertTrue(getIndexFile().exists());
+  }
+
+  public void testIncompleteIndexEntry() throws Exception {
+    myLog.append(DAY1, "one".getBytes());
+    myLog.append(DAY2, "two".getBytes());
+    truncate(getIndexFile(), getIndexFile().length() - 3);
+
+    assertEquals(2, myLog.readIndex().size());
+  }
+
+  public void testRecordsMissingInIndexAreIndexed() throws Exception {
+    myLog.append(DAY1, "one".getBytes());
+    long indexLength = getIndexFile().length();
+    myLog.append(DAY2, "two".getBytes());
+    myLog.append(DAY3, "three".getBytes());
+    // killed after writing the log, but before writing the index
+    truncate(getIndexFile(), indexLength);
+
+    List<HistoryLog.Entry> entries = myLog.readIndex();
+    assertEquals(3, entries.size());
+    assertEquals(DAY3, entries.get(2).myDay);
+    assertEquals("three", new String(myLog.read(entries.subList(2, 3)).get(0)));
+
+    assertEquals(3 * indexLength, getIndexFile().length());
+    assertEquals(3, myLog.readIndex().size());
+  }
+
+  public void testIncompleteRecordIsIgnored() throws Exception {
+    myLog.append(DAY1, "one".getBytes());
+    File logFile = new File(myDir, "history.log");
+    long logLength = logFile.length();
+    myLog.append(DAY2, "two".getBytes());
+    truncate(logFile, logLength + 5);
+
+    assertEquals(1, myLog.readIndex().size());
+  }
+
+  private File getIndexFile() {
+    return new File(myDir, "history.idx");
+  }
+
+  private static void truncate(File file, long length) throws Exception {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      randomAccessFile.setLength(length);
+    }
+    finally {
+      randomAccessFile.close();
+    }
+  }
+}
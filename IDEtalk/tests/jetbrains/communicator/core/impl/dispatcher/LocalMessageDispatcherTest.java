@@ -15,6 +15,7 @@
  */
 package jetbrains.communicator.core.impl.dispatcher;
 
+import com.thoughtworks.xstream.XStream;
 import jetbrains.communicator.core.impl.BaseTestCase;
 import jetbrains.communicator.core.dispatcher.LocalMessage;
 import jetbrains.communicator.core.dispatcher.Message;
@@ -27,10 +28,12 @@ import jetbrains.communicator.mock.MockIDEFacade;
 import jetbrains.communicator.mock.MockMessage;
 import jetbrains.communicator.mock.MockTransport;
 import jetbrains.communicator.util.WatchDog;
+import jetbrains.communicator.util.XMLUtil;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
@@ -242,7 +245,8 @@ public class LocalMessageDispatcherTest extends BaseTestCase {
     myDispatcher.sendNow(myUser, new MockMessage(yesterday()));
 
     Thread.sleep(SAVE_WAIT_TIMEOUT);
-    assertEquals(2, new File(myIdeFacade.getCacheDir(), "history").listFiles().length);
+    assertEquals("Expect a record per day in the history index",
+                 2 * 16, new File(myIdeFacade.getCacheDir(), "history/history.idx").length());
 
     LocalMessageDispatcherImpl localMessageDispatcher = createLocalMessageDispatcher();
     LocalMessage[] messages = localMessageDispatcher.getHistory(myUser, a_moment_ago());
@@ -252,6 +256,40 @@ public class LocalMessageDispatcherTest extends BaseTestCase {
     assertEquals(2, messages.length);
   }
 
+  public void testHistoryAppendsOnlyNewMessages() throws Exception {
+    myDispatcher.sendNow(myUser, new MockMessage(new Date(), "first"));
+    Thread.sleep(SAVE_WAIT_TIMEOUT);
+    File log = new File(myIdeFacade.getCacheDir(), "history/history.log");
+    long length = log.length();
+
+    myDispatcher.sendNow(myUser, new MockMessage(new Date(), "second"));
+    Thread.sleep(SAVE_WAIT_TIMEOUT);
+    assertTrue("Expect new record appended", log.length() > length);
+
+    LocalMessage[] messages = createLocalMessageDispatcher().getHistory(myUser, null);
+    assertEquals(2, messages.length);
+    assertEquals("first", ((MockMessage) messages[0]).getMessage());
+    assertEquals("second", ((MockMessage) messages[1]).getMessage());
+  }
+
+  public void testMigrateXmlHistory() throws Exception {
+    XStream xStream = XMLUtil.createXStream();
+    xStream.alias("user", UserImpl.class);
+    xStream.alias("dayHistory", DayHistory.class);
+    xStream.aliasField("historyEntries", DayHistory.class, "myData");
+    xStream.registerConverter(new UserConverter(myUserModel));
+
+    DayHistory dayHistory = new DayHistory();
+    dayHistory.addMessage(myUser, new MockMessage(yesterday(), "old text"));
+    String fileName = "history/" + new SimpleDateFormat("yyyy-MM-dd").format(yesterday()) + ".xml";
+    XMLUtil.toXml(xStream, myIdeFacade.getCacheDir(), fileName, dayHistory);
+
+    LocalMessage[] messages = createLocalMessageDispatcher().getHistory(myUser, null);
+    assertEquals(1, messages.length);
+    assertEquals("old text", ((MockMessage) messages[0]).getMessage());
+    assertFalse("Migrated file should be deleted", new File(myIdeFacade.getCacheDir(), fileName).exists());
+  }
+
   private Date yesterday() {
     return new Date(System.currentTimeMillis() - 1000 * 3600 * 24);
   }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2000-2006 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.core.vfs;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+public class VFileContentsCodecTest extends TestCase {
+  private static final String TEXT = "\u0441\u043e\u0434\u0435\u0440\u0436\u0430\u043d\u0438\u0435 \u043f\u0440\u0435\u0434\u044b\u0434\u0443\u0449\u0438\u0445 \u0441\u0435\u0440\u0438\u0439";
+
+  public void testCompress() throws Exception {
+    String contents = createText(100);
+    String compressed = VFileContentsCodec.compress(contents);
+    assertTrue("Expect compressed text to be shorter", compressed.length() < contents.length());
+    assertEquals(contents, VFileContentsCodec.decompress(compressed));
+    assertEquals("", VFileContentsCodec.decompress(VFileContentsCodec.compress("")));
+  }
+
+  public void testDelta() throws Exception {
+    String base = createText(1000);
+    String target = "header\n" + base.replace("line 500 ", "changed line ").replace("line 20 ", "") + "footer";
+
+    String delta = VFileContentsCodec.encodeDelta(base, target);
+    assertTrue("Delta is too long: " + delta.length(), delta.length() < 200);
+    assertEquals(target, VFileContentsCodec.applyDelta(base, delta));
+  }
+
+  public void testDeltaOfUnrelatedText() throws Exception {
+    doDeltaTest("", TEXT);
+    doDeltaTest(TEXT, "");
+    doDeltaTest("abc", TEXT);
+    doDeltaTest(createText(10), TEXT + createText(10) + createText(10));
+  }
+
+  public void testDeltaAgainstWrongBase() throws Exception {
+    String delta = VFileContentsCodec.encodeDelta(createText(100), createText(100) + "tail");
+    try {
+      VFileContentsCodec.applyDelta("short", delta);
+      fail("Delta should not be applied to another base");
+    }
+    catch (IOException ignored) {
+    }
+  }
+
+  public void testHash() throws Exception {
+    assertEquals(VFileContentsCodec.hash(TEXT), VFileContentsCodec.hash(new String(TEXT)));
+    assertFalse(VFileContentsCodec.hash(TEXT).equals(VFileContentsCodec.hash(TEXT + ' ')));
+  }
+
+  private static void doDeltaTest(String base, String target) throws IOException {
+    assertEquals(target, VFileContentsCodec.applyDelta(base, VFileContentsCodec.encodeDelta(base, target)));
+  }
+
+  private static String createText(int lines) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      result.append("line ").append(i).append(' ').append(TEXT).append('\n');
+    }
+    return result.toString();
+  }
+}
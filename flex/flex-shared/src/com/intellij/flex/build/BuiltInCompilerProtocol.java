@@ -0,0 +1,102 @@
+package com.intellij.flex.build;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Messages sent by the built-in Flex compiler shell (<code>com.intellij.flex.compiler.FlexCompiler</code>) to the IDE.
+ * <p/>
+ * Shells of {@link #FRAMES_PROTOCOL_VERSION} or later announce their version with <code>writeUTF()</code> right after connecting
+ * (see {@link #getProtocolVersion(String)}), all further messages are frames: an int length followed by that many bytes: frame type,
+ * int command id and type specific fields. Strings in frames are an int byte count followed by UTF-8 bytes, so they may contain line
+ * breaks and be longer than 64K. Older shells announce nothing and send "N:text\n" strings with <code>writeUTF()</code>.
+ * <p/>
+ * Commands are sent to the shell as "N:command\n" strings with <code>writeUTF()</code>, all shell versions read them.
+ * <p/>
+ * Keep in sync with <code>com.intellij.flex.compiler.CompilerProtocol</code> in tools/BuiltInFlexCompiler!
+ */
+public class BuiltInCompilerProtocol {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final String PROTOCOL_VERSION_PREFIX = "Protocol version: ";
+  public static final int FRAMES_PROTOCOL_VERSION = 2;
+
+  public static final byte TEXT = 1;
+  public static final byte DIAGNOSTIC = 2;
+  public static final byte COMPILATION_FINISHED = 3;
+
+  public static final byte SEVERITY_WARNING = 1;
+  public static final byte SEVERITY_ERROR = 2;
+
+  public static class Frame {
+    public final byte type;
+    public final int commandId;
+    public final String text;
+    // DIAGNOSTIC frames only
+    public final byte severity;
+    public final @Nullable String path;
+    public final int line;
+    public final int column;
+
+    private Frame(final byte type, final int commandId, final String text, final byte severity, final @Nullable String path,
+                  final int line, final int column) {
+      this.type = type;
+      this.commandId = commandId;
+      this.text = text;
+      this.severity = severity;
+      this.path = path;
+      this.line = line;
+      this.column = column;
+    }
+  }
+
+  /**
+   * @param firstMessage the first string that the shell wrote with <code>writeUTF()</code>
+   * @return protocol version announced by the shell, 1 if it is an older shell that doesn't announce it
+   */
+  public static int getProtocolVersion(final @NotNull String firstMessage) {
+    if (!firstMessage.startsWith(PROTOCOL_VERSION_PREFIX)) return 1;
+
+    try {
+      return Integer.parseInt(firstMessage.substring(PROTOCOL_VERSION_PREFIX.length()).trim());
+    }
+    catch (NumberFormatException e) {
+      return 1;
+    }
+  }
+
+  /**
+   * Reads a frame sent by the compiler shell. Fields of unknown frame types are skipped, such frames have <code>null</code> text.
+   */
+  @NotNull
+  public static Frame readFrame(final @NotNull DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+
+    final DataInputStream frame = new DataInputStream(new ByteArrayInputStream(bytes));
+    final byte type = frame.readByte();
+    final int commandId = frame.readInt();
+
+    switch (type) {
+      case TEXT:
+        return new Frame(type, commandId, readString(frame), (byte)0, null, -1, -1);
+      case DIAGNOSTIC:
+        final byte severity = frame.readByte();
+        final String path = readString(frame);
+        final int line = frame.readInt();
+        final int column = frame.readInt();
+        return new Frame(type, commandId, readString(frame), severity, path.isEmpty() ? null : path, line, column);
+      default:
+        return new Frame(type, commandId, null, (byte)0, null, -1, -1);
+    }
+  }
+
+  private static String readString(final DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+}
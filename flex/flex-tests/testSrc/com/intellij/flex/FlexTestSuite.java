@@ -1,6 +1,10 @@
 package com.intellij.flex;
 
+import com.intellij.javascript.flex.compiled.SwfStubCacheTest;
 import com.intellij.lang.javascript.*;
+import com.intellij.lang.javascript.flex.LruFileCacheTest;
+import com.intellij.lang.javascript.flex.build.FlexCompilerDependenciesCacheTest;
+import com.intellij.lang.javascript.flex.debug.FdbOutputTokenizerTest;
 import com.intellij.lang.javascript.flexunit.FlexUnitCompletionTest;
 import com.intellij.lang.javascript.flexunit.FlexUnitConfigurationTest;
 import com.intellij.lang.javascript.flexunit.FlexUnitHighlightingTest;
@@ -36,6 +40,9 @@ public class FlexTestSuite extends TestCase {
     testSuite.addTestSuite(FlexCssNavigationTest.class);
 
     testSuite.addTestSuite(FlexImporterTest.class);
+    testSuite.addTestSuite(SwfStubCacheTest.class);
+    testSuite.addTestSuite(LruFileCacheTest.class);
+    testSuite.addTestSuite(FdbOutputTokenizerTest.class);
     testSuite.addTestSuite(FlexProjectConfigTest.class);
     testSuite.addTestSuite(FlexScopeTest.class);
     testSuite.addTestSuite(FlexConversionTest.class);
@@ -52,6 +59,7 @@ public class FlexTestSuite extends TestCase {
     testSuite.addTestSuite(FlexColorAnnotatorTest.class);
     testSuite.addTestSuite(FlexProjectViewTest.class);
     testSuite.addTestSuite(FlexCompilerConfigTest.class);
+    testSuite.addTestSuite(FlexCompilerDependenciesCacheTest.class);
 
     testSuite.addTestSuite(ActionScriptRearrangerTest.class);
     testSuite.addTestSuite(FlashBuilderImportTest.class);
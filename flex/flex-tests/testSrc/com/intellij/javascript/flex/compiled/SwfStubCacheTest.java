@@ -0,0 +1,79 @@
+package com.intellij.javascript.flex.compiled;
+
+import com.intellij.flex.FlexTestUtils;
+import com.intellij.lang.javascript.JavaScriptSupportLoader;
+import com.intellij.lang.javascript.flex.importer.FlexImporter;
+import com.intellij.lang.javascript.psi.stubs.impl.JSFileCachedData;
+import com.intellij.lang.javascript.psi.stubs.impl.JSFileStubImpl;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.psi.stubs.PsiFileStub;
+import com.intellij.psi.stubs.PsiFileStubImpl;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+public class SwfStubCacheTest extends LightCodeInsightFixtureTestCase {
+  private File myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("swfStubCache", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testSmallContentIsNotCached() {
+    assertNull(new SwfStubCache(myDir, 1, 2).getCacheFile(new byte[100]));
+  }
+
+  public void testVersionsDoNotCollide() {
+    final byte[] content = new byte[64 * 1024];
+    final File file1 = new SwfStubCache(myDir, 12, 3).getCacheFile(content);
+    final File file2 = new SwfStubCache(myDir, 13, 2).getCacheFile(content);
+    assertNotNull(file1);
+    assertNotNull(file2);
+    assertEquals(file1.getName(), file2.getName());
+    assertFalse(file1.getParentFile().equals(file2.getParentFile()));
+  }
+
+  public void testStoreAndLoad() throws Exception {
+    final byte[] content = FileUtil.loadFileBytes(new File(FlexTestUtils.getTestDataPath("flex_importer"), "employeedirectory.swf"));
+    final PsiFileStubImpl stub = new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
+    FlexImporter.buildStubsInterfaceFromStream(new ByteArrayInputStream(content), stub);
+
+    final SwfStubCache cache = new SwfStubCache(myDir, 1, 2);
+    final File file = cache.getCacheFile(content);
+    assertNotNull(file);
+    assertTrue(file.getPath().startsWith(myDir.getPath()));
+    assertNull(cache.load(file));
+
+    cache.store(file, stub);
+    assertTrue(file.isFile());
+
+    final PsiFileStub loaded = cache.load(file);
+    assertNotNull(loaded);
+    assertEquals(DebugUtil.stubTreeToString(stub), DebugUtil.stubTreeToString(loaded));
+  }
+
+  public void testBrokenEntryIsDeleted() throws IOException {
+    final SwfStubCache cache = new SwfStubCache(myDir, 1, 2);
+    final File file = cache.getCacheFile(new byte[64 * 1024]);
+    assertNotNull(file);
+    FileUtil.writeToFile(file, new byte[]{1, 2, 3});
+
+    assertNull(cache.load(file));
+    assertFalse(file.exists());
+  }
+}
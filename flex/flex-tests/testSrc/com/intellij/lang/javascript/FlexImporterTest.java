@@ -96,7 +96,7 @@ public class FlexImporterTest extends TestCase {
 
       assertEquals("interface stubs do not match",expected,result);
 
-      result = FlexImporter.dumpContentsFromStream(new ByteArrayInputStream(contents), getName().equals("testAbc"));
+      result = FlexImporter.dumpContentsFromStream(new ByteArrayInputStream(contents), contents.length, getName().equals("testAbc"));
       resultFileName = getTestDataPath() + fileName + ".il";
       expected =
         StringUtil.convertLineSeparators(FileUtil.loadFile(new File(resultFileName), CharsetToolkit.UTF8_CHARSET));
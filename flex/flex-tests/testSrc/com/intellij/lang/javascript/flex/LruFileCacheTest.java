@@ -0,0 +1,105 @@
+package com.intellij.lang.javascript.flex;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+public class LruFileCacheTest extends TestCase {
+  private File myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("lruFileCache", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testOtherVersionsDeletedOnFirstUse() throws IOException {
+    final File old = createFile(new File(myDir, "v1.1"), "a", 10, 0);
+    final File current = createFile(new File(myDir, "v1.2"), "a", 10, 0);
+    final File foreign = createFile(new File(myDir, "other"), "a", 10, 0);
+
+    final File file = new LruFileCache(myDir, "v", "1.2", 1000).getFile("a");
+
+    assertEquals(current, file);
+    assertTrue(current.isFile());
+    assertTrue(foreign.isFile());
+    assertFalse(old.getParentFile().exists());
+  }
+
+  public void testWrite() throws IOException {
+    final LruFileCache cache = new LruFileCache(myDir, "v", "1", 1000);
+    final File file = cache.getFile("entry");
+
+    cache.write(file, out -> out.write(new byte[]{1, 2, 3}));
+
+    assertTrue(file.isFile());
+    assertEquals(3, file.length());
+    assertEquals(1, file.getParentFile().list().length);
+  }
+
+  public void testWriteEvicts() throws IOException {
+    final LruFileCache cache = new LruFileCache(myDir, "v", "1", 280);
+    final File old = createFile(new File(myDir, "v1"), "old", 100, 1000);
+    final File file = cache.getFile("new");
+
+    cache.write(file, out -> out.write(new byte[200]));
+
+    assertFalse(old.exists());
+    assertTrue(file.isFile());
+  }
+
+  public void testNothingEvictedBelowMaxSize() throws IOException {
+    final File file1 = createFile(myDir, "a", 100, 1000);
+    final File file2 = createFile(myDir, "b", 100, 2000);
+
+    LruFileCache.evict(myDir, 200);
+
+    assertTrue(file1.isFile());
+    assertTrue(file2.isFile());
+  }
+
+  public void testLeastRecentlyUsedEvicted() throws IOException {
+    final File newest = createFile(myDir, "a", 100, 4000);
+    final File oldest = createFile(myDir, "b", 100, 1000);
+    final File older = createFile(myDir, "c", 100, 2000);
+    final File newer = createFile(myDir, "d", 100, 3000);
+
+    LruFileCache.evict(myDir, 300);
+
+    assertFalse(oldest.exists());
+    assertFalse(older.exists());
+    assertTrue(newer.isFile());
+    assertTrue(newest.isFile());
+  }
+
+  public void testTempFilesNotEvicted() throws IOException {
+    final File temp = createFile(myDir, "a.tmp", 100, 1000);
+    final File entry = createFile(myDir, "b", 100, 2000);
+
+    LruFileCache.evict(myDir, 100);
+
+    assertTrue(temp.isFile());
+    assertFalse(entry.exists());
+  }
+
+  private static File createFile(final File dir, final String name, final int length, final long lastModified) throws IOException {
+    final File file = new File(dir, name);
+    FileUtil.writeToFile(file, new byte[length]);
+    if (lastModified != 0) {
+      assertTrue(file.setLastModified(lastModified));
+    }
+    return file;
+  }
+}
@@ -0,0 +1,139 @@
+package com.intellij.lang.javascript.flex.build;
+
+import com.intellij.lang.javascript.flex.FlexModuleType;
+import com.intellij.lang.javascript.flex.projectStructure.model.ModifiableFlexBuildConfiguration;
+import com.intellij.lang.javascript.flex.projectStructure.model.impl.Factory;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleType;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestCase;
+import com.intellij.testFramework.PsiTestUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+public class FlexCompilerDependenciesCacheTest extends PlatformTestCase {
+  private File myDir;
+  private File myStorageFile;
+  private File myConfigFile;
+  private ModifiableFlexBuildConfiguration myBC;
+
+  @Override
+  protected ModuleType getModuleType() {
+    return FlexModuleType.getInstance();
+  }
+
+  @Override
+  protected Module createMainModule() throws IOException {
+    final Module module = super.createMainModule();
+    new WriteCommandAction.Simple(myProject) {
+      @Override
+      protected void run() throws Throwable {
+        VirtualFile moduleDir = module.getModuleFile().getParent();
+        VirtualFile src = moduleDir.createChildDirectory(this, "src");
+        PsiTestUtil.addContentRoot(module, moduleDir);
+        PsiTestUtil.addSourceRoot(module, src);
+      }
+    }.execute().getResultObject();
+    return module;
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = createTempDirectory();
+    myStorageFile = new File(myDir, "storage");
+
+    myConfigFile = new File(myDir, "config.xml");
+    FileUtil.writeToFile(myConfigFile, "<flex-config/>");
+
+    myBC = Factory.createBuildConfiguration();
+    myBC.setOutputFolder(FileUtil.toSystemIndependentName(myDir.getPath()));
+    myBC.setOutputFileName("Main.swf");
+    // created after the source root, so that the source root is not newer than the compilation
+    FileUtil.writeToFile(new File(myDir, "Main.swf"), new byte[]{1, 2, 3});
+  }
+
+  private FlexCompilerDependenciesCache createCache() {
+    return new FlexCompilerDependenciesCache(myProject, myStorageFile);
+  }
+
+  private void cacheBC(final FlexCompilerDependenciesCache cache) {
+    final VirtualFile configFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(myConfigFile);
+    assertNotNull(configFile);
+    cache.cacheBC(myModule, myBC, Collections.singletonList(configFile));
+  }
+
+  public void testCachedBC() {
+    final FlexCompilerDependenciesCache cache = createCache();
+    assertFalse(cache.isNothingChangedSincePreviousCompilation(myModule, myBC));
+
+    cacheBC(cache);
+    assertTrue(cache.isNothingChangedSincePreviousCompilation(myModule, myBC));
+    assertFalse(cache.isNothingChangedSincePreviousCompilation(myModule, Factory.createBuildConfiguration()));
+  }
+
+  public void testTouchedFileWithSameContent() {
+    final FlexCompilerDependenciesCache cache = createCache();
+    cacheBC(cache);
+
+    assertTrue(myConfigFile.setLastModified(myConfigFile.lastModified() + 10000));
+    assertTrue(cache.isNothingChangedSincePreviousCompilation(myModule, myBC));
+    assertTrue(cache.isNothingChangedSincePreviousCompilation(myModule, myBC));
+  }
+
+  public void testChangedContent() throws IOException {
+    final FlexCompilerDependenciesCache cache = createCache();
+    cacheBC(cache);
+
+    // same length, so that only the content hash differs
+    FileUtil.writeToFile(myConfigFile, "<FLEX-config/>");
+    assertTrue(myConfigFile.setLastModified(myConfigFile.lastModified() + 10000));
+    assertFalse(cache.isNothingChangedSincePreviousCompilation(myModule, myBC));
+
+    // the BC is dropped from the cache until it is compiled again
+    FileUtil.writeToFile(myConfigFile, "<flex-config/>");
+    assertFalse(cache.isNothingChangedSincePreviousCompilation(myModule, myBC));
+  }
+
+  public void testSaveAndLoad() {
+    final FlexCompilerDependenciesCache cache = createCache();
+    cacheBC(cache);
+    cache.save();
+    assertTrue(myStorageFile.isFile());
+
+    final FlexCompilerDependenciesCache loaded = createCache();
+    assertTrue(loaded.isNothingChangedSincePreviousCompilation(myModule, myBC));
+    // the storage is valid only once
+    assertFalse(myStorageFile.exists());
+  }
+
+  public void testChangedContentAfterLoad() throws IOException {
+    final FlexCompilerDependenciesCache cache = createCache();
+    cacheBC(cache);
+    cache.save();
+
+    FileUtil.writeToFile(myConfigFile, "<FLEX-config/>");
+    assertTrue(myConfigFile.setLastModified(myConfigFile.lastModified() + 10000));
+    assertFalse(createCache().isNothingChangedSincePreviousCompilation(myModule, myBC));
+  }
+
+  public void testSourcesChangedWhileNotTracked() throws IOException {
+    final FlexCompilerDependenciesCache cache = createCache();
+    cacheBC(cache);
+    cache.save();
+
+    final VirtualFile srcRoot = ModuleRootManager.getInstance(myModule).getSourceRoots()[0];
+    final File sourceFile = new File(srcRoot.getPath(), "Foo.as");
+    FileUtil.writeToFile(sourceFile, "package {}");
+    assertTrue(sourceFile.setLastModified(new File(myDir, "Main.swf").lastModified() + 10000));
+    assertNotNull(LocalFileSystem.getInstance().refreshAndFindFileByIoFile(sourceFile));
+
+    assertFalse(createCache().isNothingChangedSincePreviousCompilation(myModule, myBC));
+  }
+}
@@ -0,0 +1,83 @@
+package com.intellij.lang.javascript.flex.debug;
+
+import junit.framework.TestCase;
+
+public class FdbOutputTokenizerTest extends TestCase {
+  private FdbOutputTokenizer myTokenizer;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myTokenizer = new FdbOutputTokenizer(new String[]{"(fdb) ", "(y or n)"},
+                                         new String[]{"Waiting for Player to connect", "Trying to connect to Player"});
+  }
+
+  private void feed(final String text) {
+    myTokenizer.feed(text.toCharArray(), 0, text.length());
+  }
+
+  private void assertResponse(final String expectedText, final boolean expectedPrompted, final boolean allowUnprompted) {
+    final FdbOutputTokenizer.Response response = myTokenizer.nextResponse(allowUnprompted);
+    assertNotNull(response);
+    assertEquals(expectedText, response.text);
+    assertEquals(expectedPrompted, response.prompted);
+  }
+
+  public void testPromptSplitAcrossReads() {
+    feed("Set breakpoint 1\n(f");
+    assertFalse(myTokenizer.hasResponse());
+    assertNull(myTokenizer.nextResponse(false));
+
+    feed("db");
+    assertFalse(myTokenizer.hasResponse());
+
+    feed(") ");
+    assertTrue(myTokenizer.hasResponse());
+    assertResponse("Set breakpoint 1\n", true, false);
+    assertNull(myTokenizer.nextResponse(true));
+  }
+
+  public void testPromptSplitIntoSingleCharacters() {
+    for (char c : "Continue?(y or n)".toCharArray()) {
+      myTokenizer.feed(new char[]{c}, 0, 1);
+    }
+    assertResponse("Continue?", true, false);
+  }
+
+  public void testSeveralResponsesInOneRead() {
+    feed("first(fdb) second(fdb) ");
+    assertResponse("first", true, false);
+    assertResponse("second", true, false);
+    assertNull(myTokenizer.nextResponse(true));
+  }
+
+  public void testWaitingMarkerSplitAcrossReads() {
+    feed("Waiting for Pla");
+    assertNull(myTokenizer.nextResponse(false));
+
+    feed("yer to connect");
+    assertResponse("Waiting for Player to connect", false, false);
+  }
+
+  public void testUnpromptedText() {
+    feed("trace output");
+    assertNull(myTokenizer.nextResponse(false));
+    assertResponse("trace output", false, true);
+    assertNull(myTokenizer.nextResponse(true));
+  }
+
+  public void testBlankRemainderIsDropped() {
+    feed("done(fdb)    ");
+    assertResponse("done", true, false);
+    assertNull(myTokenizer.nextResponse(true));
+  }
+
+  public void testLeadingSpacesOfNextResponseAreKept() {
+    feed("first(fdb)   second(fdb) ");
+    assertResponse("first", true, false);
+    assertResponse("  second", true, false);
+
+    feed("  third(fdb) ");
+    assertResponse("  third", true, false);
+  }
+}
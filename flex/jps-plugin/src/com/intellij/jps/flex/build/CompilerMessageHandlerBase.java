@@ -9,6 +9,7 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.PathUtilRt;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.MessageHandler;
 import org.jetbrains.jps.incremental.messages.BuildMessage;
 import org.jetbrains.jps.incremental.messages.CompilerMessage;
 
@@ -20,6 +21,7 @@ public abstract class CompilerMessageHandlerBase {
   private static Logger LOG = Logger.getInstance(CompilerMessageHandlerBase.class.getName());
 
   private final CompileContext myContext;
+  private final MessageHandler myMessageHandler;
   private final boolean myAsc20;
   private final String myCompilerName;
 
@@ -31,9 +33,15 @@ public abstract class CompilerMessageHandlerBase {
 
   /**
    * Implementations must call {@link #registerCompilationFinished()} at the end
+   *
+   * @param messageHandler receives compiler messages; it is the <code>context</code> itself unless messages need to be buffered
    */
-  public CompilerMessageHandlerBase(final CompileContext context, final boolean asc20, final String compilerName) {
+  public CompilerMessageHandlerBase(final CompileContext context,
+                                    final MessageHandler messageHandler,
+                                    final boolean asc20,
+                                    final String compilerName) {
     myContext = context;
+    myMessageHandler = messageHandler;
     myAsc20 = asc20;
     myCompilerName = compilerName;
   }
@@ -63,6 +71,28 @@ public abstract class CompilerMessageHandlerBase {
     checkCancelled();
   }
 
+  /**
+   * Handles a warning or error that the built-in compiler sent as a structured diagnostic, so there's no need to parse it.
+   */
+  public void handleDiagnostic(final boolean error, final @Nullable String path, final int line, final int column, final String message) {
+    reportDiagnostic(error ? BuildMessage.Kind.ERROR : BuildMessage.Kind.WARNING, path, Math.max(line, 0), Math.max(column, 0), message);
+    checkCancelled();
+  }
+
+  private void reportDiagnostic(final BuildMessage.Kind kind,
+                                final @Nullable String sourceFilePath,
+                                final int line,
+                                final int column,
+                                final String message) {
+    final boolean sourceFileExists = sourceFilePath != null && new File(sourceFilePath).exists();
+    final String fullMessage = sourceFilePath != null && !sourceFileExists ? sourceFilePath + ": " + message : message;
+
+    reportPreviousInfoMessage();
+    myMessageHandler.processMessage(new CompilerMessage(myCompilerName, kind, fullMessage,
+                                                        sourceFileExists ? sourceFilePath : null, -1, -1, -1, line, column));
+    myCompilationFailed |= kind == BuildMessage.Kind.ERROR;
+  }
+
   private void handleLine(final String text) {
     if (StringUtil.isEmptyOrSpaces(text)) {
       reportPreviousInfoMessage();
@@ -82,7 +112,7 @@ public abstract class CompilerMessageHandlerBase {
 
     if (text.startsWith("Exception in thread \"") || text.contains(FlexCommonUtils.COULD_NOT_CREATE_JVM)) {
       reportPreviousInfoMessage();
-      myContext.processMessage(new CompilerMessage(myCompilerName, BuildMessage.Kind.ERROR, text));
+      myMessageHandler.processMessage(new CompilerMessage(myCompilerName, BuildMessage.Kind.ERROR, text));
       myCompilationFailed = true;
       return;
     }
@@ -100,12 +130,12 @@ public abstract class CompilerMessageHandlerBase {
           FlexCommonUtils.getSourcePathAndLineFromASC20Message(myPreviousUnreportedInfoMessage);
         if (sourcePathAndLine == null) {
           reportPreviousInfoMessage();
-          myContext.processMessage(new CompilerMessage(myCompilerName, kind, usefulMessage));
+          myMessageHandler.processMessage(new CompilerMessage(myCompilerName, kind, usefulMessage));
         }
         else {
           myPreviousUnreportedInfoMessage = null;
           if (!isNotSupportedOptionFromGeneratedConfig(usefulMessage, sourcePathAndLine.first)) {
-            myContext.processMessage(
+            myMessageHandler.processMessage(
               new CompilerMessage(myCompilerName, kind, usefulMessage, sourcePathAndLine.first, -1, -1, -1, sourcePathAndLine.second, 0));
           }
         }
@@ -125,30 +155,16 @@ public abstract class CompilerMessageHandlerBase {
         final String type = matcher.group(5);
         final String message = matcher.group(6);
 
-        final BuildMessage.Kind kind = "Warning".equals(type) ? BuildMessage.Kind.WARNING : BuildMessage.Kind.ERROR;
-        final File file = new File(sourceFilePath);
-        final boolean sourceFileExists = file.exists();
-
-        final StringBuilder fullMessage = new StringBuilder();
-        if (!sourceFileExists) fullMessage.append(sourceFilePath).append(": ");
-        if (additionalInfo != null) fullMessage.append(additionalInfo).append(' ');
-        fullMessage.append(message);
-
-        reportPreviousInfoMessage();
-        myContext.processMessage(new CompilerMessage(myCompilerName,
-                                                     kind,
-                                                     fullMessage.toString(),
-                                                     sourceFileExists ? sourceFilePath : null, -1, -1, -1,
-                                                     line != null ? Integer.parseInt(line) : 0,
-                                                     column != null ? Integer.parseInt(column) : 0));
-        myCompilationFailed |= kind == BuildMessage.Kind.ERROR;
+        final String fullMessage = additionalInfo != null ? additionalInfo + ' ' + message : message;
+        reportDiagnostic("Warning".equals(type) ? BuildMessage.Kind.WARNING : BuildMessage.Kind.ERROR, sourceFilePath,
+                         line != null ? Integer.parseInt(line) : 0, column != null ? Integer.parseInt(column) : 0, fullMessage);
         return;
       }
     }
 
     if (text.startsWith(ERROR_PREFIX)) {
       reportPreviousInfoMessage();
-      myContext.processMessage(new CompilerMessage(myCompilerName, BuildMessage.Kind.ERROR, text.substring(ERROR_PREFIX.length())));
+      myMessageHandler.processMessage(new CompilerMessage(myCompilerName, BuildMessage.Kind.ERROR, text.substring(ERROR_PREFIX.length())));
       myCompilationFailed = true;
       return;
     }
@@ -157,7 +173,7 @@ public abstract class CompilerMessageHandlerBase {
     myPreviousUnreportedInfoMessage = text;
 
     if (text.contains(FlexCommonUtils.OUT_OF_MEMORY) || text.contains(FlexCommonUtils.JAVA_HEAP_SPACE)) {
-      myContext.processMessage(
+      myMessageHandler.processMessage(
         new CompilerMessage(myCompilerName, BuildMessage.Kind.ERROR,
                             FlexCommonBundle.message("increase.flex.compiler.heap", CommonBundle.settingsActionPath())));
       myCompilationFailed = true;
@@ -184,7 +200,7 @@ public abstract class CompilerMessageHandlerBase {
           !myPreviousUnreportedInfoMessage.equals("<accessible>false</accessible>") &&
           !myPreviousUnreportedInfoMessage.equals("</managers>") &&
           !myPreviousUnreportedInfoMessage.equals("<static-link-runtime-shared-libraries>false</static-link-runtime-shared-libraries>")) {
-        myContext.processMessage(new CompilerMessage(myCompilerName, BuildMessage.Kind.INFO, myPreviousUnreportedInfoMessage));
+        myMessageHandler.processMessage(new CompilerMessage(myCompilerName, BuildMessage.Kind.INFO, myPreviousUnreportedInfoMessage));
       }
       myPreviousUnreportedInfoMessage = null;
     }
@@ -20,12 +20,14 @@ import com.intellij.util.Function;
 import com.intellij.util.PathUtilRt;
 import com.intellij.util.concurrency.Semaphore;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.builders.BuildOutputConsumer;
 import org.jetbrains.jps.builders.BuildRootDescriptor;
 import org.jetbrains.jps.builders.DirtyFilesHolder;
 import org.jetbrains.jps.builders.FileProcessor;
 import org.jetbrains.jps.cmdline.ProjectDescriptor;
 import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.MessageHandler;
 import org.jetbrains.jps.incremental.ProjectBuildException;
 import org.jetbrains.jps.incremental.StopBuildException;
 import org.jetbrains.jps.incremental.TargetBuilder;
@@ -35,13 +37,16 @@ import org.jetbrains.jps.incremental.messages.ProgressMessage;
 import org.jetbrains.jps.model.JpsProject;
 import org.jetbrains.jps.model.library.sdk.JpsSdk;
 import org.jetbrains.jps.model.module.JpsModule;
+import org.jetbrains.jps.service.SharedThreadPool;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTarget> {
 
@@ -134,35 +139,166 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
       }
     }
 
-    for (JpsFlexBuildConfiguration bc : bcsToCompile) {
-      final Status status = compileBuildConfiguration(context, bc, myBuiltInCompilerHandler);
+    final Status mainStatus = compileBuildConfiguration(context, context, mainBC, myBuiltInCompilerHandler);
+    if (!reportStatus(context, mainBC, mainStatus, mainBC, dirtyFilePaths, outputConsumer)) {
+      if (mainStatus == Status.Failed) throw new StopBuildException();
+      return;
+    }
 
-      switch (status) {
-        case Ok:
-          outputConsumer.registerOutputFile(new File(mainBC.getActualOutputFilePath()), dirtyFilePaths);
-          FlexBuilderUtils.performPostCompileActions(context, bc, dirtyFilePaths, outputConsumer);
-          context.processMessage(
-            new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.INFO,
-                                FlexCommonBundle.message("compilation.successful")));
-          break;
+    // RLMs and runtime stylesheets don't depend on each other, only on the main BC (link report for RLM optimization)
+    final List<JpsFlexBuildConfiguration> rlmAndCssBCs = bcsToCompile.subList(1, bcsToCompile.size());
+    final int parallelism = Math.min(rlmAndCssBCs.size(),
+                                     JpsFlexCompilerProjectExtension.getInstance(mainBC.getModule().getProject()).MAX_PARALLEL_COMPILATIONS);
 
-        case Failed:
-          final String message = bc.getOutputType() == OutputType.Application
-                                 ? FlexCommonBundle.message("compilation.failed")
-                                 : FlexCommonBundle.message("compilation.failed.dependent.will.be.skipped");
-          context.processMessage(new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.INFO, message));
+    final Status status = parallelism > 1
+                          ? compileInParallel(context, rlmAndCssBCs, parallelism, mainBC, dirtyFilePaths, outputConsumer)
+                          : compileSequentially(context, rlmAndCssBCs, mainBC, dirtyFilePaths, outputConsumer);
+    if (status == Status.Failed) {
+      throw new StopBuildException();
+    }
+  }
 
-          throw new StopBuildException();
+  private Status compileSequentially(final CompileContext context,
+                                     final List<JpsFlexBuildConfiguration> bcs,
+                                     final JpsFlexBuildConfiguration mainBC,
+                                     final Collection<String> dirtyFilePaths,
+                                     final BuildOutputConsumer outputConsumer) throws ProjectBuildException, IOException {
+    for (JpsFlexBuildConfiguration bc : bcs) {
+      final Status status = compileBuildConfiguration(context, context, bc, myBuiltInCompilerHandler);
+      if (!reportStatus(context, bc, status, mainBC, dirtyFilePaths, outputConsumer)) {
+        return status;
+      }
+    }
+    return Status.Ok;
+  }
 
-        case Cancelled:
-          context.processMessage(
-            new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.INFO,
-                                FlexCommonBundle.message("compilation.cancelled")));
-          return;
+  /**
+   * Compiles at most <code>parallelism</code> BCs at a time. Messages of each BC are buffered and reported in the order of
+   * <code>bcs</code>, post-compile actions are performed in this thread in the same order.
+   * After failure or cancellation compilations that are not started yet are skipped.
+   */
+  private Status compileInParallel(final CompileContext context,
+                                   final List<JpsFlexBuildConfiguration> bcs,
+                                   final int parallelism,
+                                   final JpsFlexBuildConfiguration mainBC,
+                                   final Collection<String> dirtyFilePaths,
+                                   final BuildOutputConsumer outputConsumer) throws ProjectBuildException, IOException {
+    final JpsBuiltInFlexCompilerHandler builtInCompilerHandler = myBuiltInCompilerHandler;
+    final AtomicBoolean stop = new AtomicBoolean();
+    final List<BufferingMessageHandler> messageHandlers = new ArrayList<BufferingMessageHandler>(bcs.size());
+    final List<FutureTask<Status>> tasks = new ArrayList<FutureTask<Status>>(bcs.size());
+
+    for (final JpsFlexBuildConfiguration bc : bcs) {
+      final BufferingMessageHandler messageHandler = new BufferingMessageHandler();
+      messageHandlers.add(messageHandler);
+      tasks.add(new FutureTask<Status>(new Callable<Status>() {
+        @Override
+        public Status call() {
+          if (stop.get()) return null;
+          return compileBuildConfiguration(context, messageHandler, bc, builtInCompilerHandler);
+        }
+      }));
+    }
+
+    final Queue<FutureTask<Status>> queue = new ConcurrentLinkedQueue<FutureTask<Status>>(tasks);
+    for (int i = 0; i < parallelism; i++) {
+      SharedThreadPool.getInstance().executeOnPooledThread(new Runnable() {
+        @Override
+        public void run() {
+          FutureTask<Status> task;
+          while ((task = queue.poll()) != null) {
+            task.run();
+          }
+        }
+      });
+    }
+
+    Status result = Status.Ok;
+    int i = 0;
+    try {
+      for (; i < bcs.size(); i++) {
+        final JpsFlexBuildConfiguration bc = bcs.get(i);
+        final Status status = waitFor(tasks.get(i), context, bc);
+        if (status == null) continue; // skipped
+
+        messageHandlers.get(i).flush(context);
+        if (!reportStatus(context, bc, status, mainBC, dirtyFilePaths, outputConsumer)) {
+          stop.set(true);
+          if (result == Status.Ok) result = status;
+        }
+      }
+    }
+    finally {
+      // compilations must not outlive the build even if post-compile actions failed
+      stop.set(true);
+      for (; i < bcs.size(); i++) {
+        waitFor(tasks.get(i), context, bcs.get(i));
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private static Status waitFor(final FutureTask<Status> task, final CompileContext context, final JpsFlexBuildConfiguration bc) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return task.get();
+        }
+        catch (InterruptedException e) {
+          // keep waiting: the task reports messages to the build, the interrupt is restored when it is done
+          interrupted = true;
+        }
+        catch (ExecutionException e) {
+          LOG.error(e.getCause());
+          context.processMessage(new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.ERROR,
+                                                     String.valueOf(e.getCause())));
+          return Status.Failed;
+        }
+      }
+    }
+    finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
       }
     }
   }
 
+  /**
+   * @return <code>false</code> if compilation of the remaining BCs should be stopped
+   */
+  private static boolean reportStatus(final CompileContext context,
+                                      final JpsFlexBuildConfiguration bc,
+                                      final Status status,
+                                      final JpsFlexBuildConfiguration mainBC,
+                                      final Collection<String> dirtyFilePaths,
+                                      final BuildOutputConsumer outputConsumer) throws ProjectBuildException, IOException {
+    switch (status) {
+      case Ok:
+        outputConsumer.registerOutputFile(new File(mainBC.getActualOutputFilePath()), dirtyFilePaths);
+        FlexBuilderUtils.performPostCompileActions(context, bc, dirtyFilePaths, outputConsumer);
+        context.processMessage(
+          new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.INFO,
+                              FlexCommonBundle.message("compilation.successful")));
+        return true;
+
+      case Failed:
+        final String message = bc.getOutputType() == OutputType.Application
+                               ? FlexCommonBundle.message("compilation.failed")
+                               : FlexCommonBundle.message("compilation.failed.dependent.will.be.skipped");
+        context.processMessage(new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.INFO, message));
+        return false;
+
+      case Cancelled:
+      default:
+        context.processMessage(
+          new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.INFO,
+                              FlexCommonBundle.message("compilation.cancelled")));
+        return false;
+    }
+  }
+
   /**
    * This is a hacky workaround, needed because IDEA doesn't report files changed under .idea folder as dirty
    */
@@ -281,6 +417,7 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
   }
 
   private static Status compileBuildConfiguration(final CompileContext context,
+                                                  final MessageHandler messageHandler,
                                                   final JpsFlexBuildConfiguration bc,
                                                   final JpsBuiltInFlexCompilerHandler builtInCompilerHandler) {
     setProgressMessage(context, bc);
@@ -292,15 +429,15 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
       final String outputFilePath = bc.getActualOutputFilePath();
 
       if (!ensureCanCreateFile(new File(outputFilePath))) {
-        context.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.ERROR,
+        messageHandler.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.ERROR,
                                                    FlexCommonBundle.message("failed.to.create.file", bc.getActualOutputFilePath())));
         return Status.Failed;
       }
 
-      return doCompile(context, bc, configFiles, compilerName, builtInCompilerHandler);
+      return doCompile(context, messageHandler, bc, configFiles, compilerName, builtInCompilerHandler);
     }
     catch (IOException e) {
-      context.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.ERROR, e.getMessage()));
+      messageHandler.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.ERROR, e.getMessage()));
       return Status.Failed;
     }
   }
@@ -347,6 +484,7 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
   }
 
   private static Status doCompile(final CompileContext context,
+                                  final MessageHandler messageHandler,
                                   final JpsFlexBuildConfiguration bc,
                                   final List<File> configFiles,
                                   final String compilerName,
@@ -364,7 +502,7 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
                             builtInCompilerHandler.canBeUsedForSdk(sdk.getHomePath());
 
     if (builtIn) {
-      return doCompileWithBuiltInCompiler(context, bc, configFiles, compilerName, builtInCompilerHandler);
+      return doCompileWithBuiltInCompiler(context, messageHandler, bc, configFiles, compilerName, builtInCompilerHandler);
     }
 
     final List<String> compilerCommand = asc20 ? getASC20Command(bc.getModule().getProject(), sdk, app)
@@ -379,7 +517,7 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
       final Process process = processBuilder.start();
 
       final FlexCompilerProcessHandler processHandler =
-        new FlexCompilerProcessHandler(context, process, asc20, compilerName, StringUtil.join(command, " "));
+        new FlexCompilerProcessHandler(context, messageHandler, process, asc20, compilerName, StringUtil.join(command, " "));
       processHandler.startNotify();
       processHandler.waitFor();
 
@@ -389,12 +527,13 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
                                             : Status.Ok;
     }
     catch (IOException e) {
-      context.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.ERROR, e.getMessage()));
+      messageHandler.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.ERROR, e.getMessage()));
       return Status.Failed;
     }
   }
 
   private static Status doCompileWithBuiltInCompiler(final CompileContext context,
+                                                     final MessageHandler messageHandler,
                                                      final JpsFlexBuildConfiguration bc,
                                                      final List<File> configFiles,
                                                      final String compilerName,
@@ -403,7 +542,7 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
       builtInCompilerHandler.startCompilerIfNeeded(bc.getSdk(), context, compilerName);
     }
     catch (IOException e) {
-      context.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.ERROR, e.toString()));
+      messageHandler.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.ERROR, e.toString()));
       return Status.Failed;
     }
 
@@ -419,9 +558,9 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
     final Semaphore semaphore = new Semaphore();
     semaphore.down();
 
-    context.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.INFO, plainCommand));
+    messageHandler.processMessage(new CompilerMessage(compilerName, BuildMessage.Kind.INFO, plainCommand));
 
-    final BuiltInCompilerListener listener = new BuiltInCompilerListener(context, compilerName, new Runnable() {
+    final BuiltInCompilerListener listener = new BuiltInCompilerListener(context, messageHandler, compilerName, new Runnable() {
       @Override
       public void run() {
         semaphore.up();
@@ -496,8 +635,11 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
   private static class BuiltInCompilerListener extends CompilerMessageHandlerBase implements JpsBuiltInFlexCompilerHandler.Listener {
     private final Runnable myOnCompilationFinishedRunnable;
 
-    public BuiltInCompilerListener(final CompileContext context, final String compilerName, final Runnable onCompilationFinishedRunnable) {
-      super(context, false, compilerName);
+    public BuiltInCompilerListener(final CompileContext context,
+                                   final MessageHandler messageHandler,
+                                   final String compilerName,
+                                   final Runnable onCompilationFinishedRunnable) {
+      super(context, messageHandler, false, compilerName);
       myOnCompilationFinishedRunnable = onCompilationFinishedRunnable;
     }
 
@@ -506,6 +648,11 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
       handleText(text);
     }
 
+    @Override
+    public void diagnosticAvailable(final boolean error, final String path, final int line, final int column, final String message) {
+      handleDiagnostic(error, path, line, column, message);
+    }
+
     @Override
     public void compilationFinished() {
       registerCompilationFinished();
@@ -517,4 +664,23 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
       compilationFinished();
     }
   }
+
+  /**
+   * Keeps messages of a BC compiled in parallel with others until they can be reported in a stable order
+   */
+  private static class BufferingMessageHandler implements MessageHandler {
+    private final List<BuildMessage> myMessages = new ArrayList<BuildMessage>();
+
+    @Override
+    public synchronized void processMessage(final BuildMessage message) {
+      myMessages.add(message);
+    }
+
+    public synchronized void flush(final MessageHandler target) {
+      for (BuildMessage message : myMessages) {
+        target.processMessage(message);
+      }
+      myMessages.clear();
+    }
+  }
 }
@@ -1,6 +1,7 @@
 package com.intellij.jps.flex.build;
 
 import com.intellij.flex.FlexCommonUtils;
+import com.intellij.flex.build.BuiltInCompilerProtocol;
 import com.intellij.flex.model.sdk.JpsFlexSdkType;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Comparing;
@@ -8,6 +9,7 @@ import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.Function;
 import gnu.trove.THashMap;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.incremental.CompileContext;
 import org.jetbrains.jps.incremental.messages.BuildMessage;
 import org.jetbrains.jps.incremental.messages.CompilerMessage;
@@ -41,6 +43,8 @@ public class JpsBuiltInFlexCompilerHandler {
   public interface Listener {
     void textAvailable(String text);
 
+    void diagnosticAvailable(boolean error, @Nullable String path, int line, int column, String message);
+
     void compilationFinished();
   }
 
@@ -69,7 +73,7 @@ public class JpsBuiltInFlexCompilerHandler {
         startCompilerProcess(sdk, port, context, compilerName);
 
         final Socket socket = myServerSocket.accept();
-        myDataInputStream = new DataInputStream(socket.getInputStream());
+        myDataInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
         myDataOutputStream = new DataOutputStream(socket.getOutputStream());
         mySdkHome = sdk.getHomePath();
         scheduleInputReading();
@@ -152,17 +156,33 @@ public class JpsBuiltInFlexCompilerHandler {
     SharedThreadPool.getInstance().executeOnPooledThread(new Runnable() {
       public void run() {
         final StringBuilder buffer = new StringBuilder();
+        boolean firstMessage = true;
+        boolean frames = false;
         while (true) {
           final DataInputStream dataInputStream = myDataInputStream;
           if (dataInputStream != null) {
             try {
-              buffer.append(dataInputStream.readUTF());
-
-              int index;
-              while ((index = buffer.indexOf("\n")) > -1) {
-                final String line = buffer.substring(0, index);
-                buffer.delete(0, index + 1);
-                handleInputLine(line);
+              if (frames) {
+                handleFrame(BuiltInCompilerProtocol.readFrame(dataInputStream));
+              }
+              else {
+                final String text = dataInputStream.readUTF();
+                // shell from an older flex-compiler.jar doesn't announce protocol version and sends all messages with writeUTF()
+                if (firstMessage &&
+                    BuiltInCompilerProtocol.getProtocolVersion(text) >= BuiltInCompilerProtocol.FRAMES_PROTOCOL_VERSION) {
+                  frames = true;
+                }
+                else {
+                  buffer.append(text);
+
+                  int index;
+                  while ((index = buffer.indexOf("\n")) > -1) {
+                    final String line = buffer.substring(0, index);
+                    buffer.delete(0, index + 1);
+                    handleInputLine(line);
+                  }
+                }
+                firstMessage = false;
               }
             }
             catch (IOException e) {
@@ -206,6 +226,36 @@ public class JpsBuiltInFlexCompilerHandler {
     }
   }
 
+  private synchronized void handleFrame(final BuiltInCompilerProtocol.Frame frame) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("RECEIVED: [" + frame.commandId + ":" + frame.type + ":" + frame.text + "]");
+    }
+
+    final String prefix = frame.commandId + ":";
+    final Listener listener = myActiveListeners.get(prefix);
+    if (listener == null) {
+      // could be message from cancelled compilation
+      LOG.warn("No active listener for command " + frame.commandId + ": [" + frame.text + "]");
+      return;
+    }
+
+    switch (frame.type) {
+      case BuiltInCompilerProtocol.TEXT:
+        listener.textAvailable(frame.text);
+        break;
+      case BuiltInCompilerProtocol.DIAGNOSTIC:
+        listener.diagnosticAvailable(frame.severity == BuiltInCompilerProtocol.SEVERITY_ERROR, frame.path, frame.line, frame.column,
+                                     frame.text);
+        break;
+      case BuiltInCompilerProtocol.COMPILATION_FINISHED:
+        listener.compilationFinished();
+        myActiveListeners.remove(prefix);
+        break;
+      default:
+        LOG.error("Unexpected frame type: " + frame.type);
+    }
+  }
+
   public synchronized void sendCompilationCommand(final String command, final Listener listener) {
     if (myDataOutputStream == null) {
       listener.textAvailable("Error: Compiler process is not started.");
@@ -17,6 +17,7 @@ import com.intellij.util.indexing.FileContent;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 
 /**
  * @author Maxim.Mossienko
@@ -24,7 +25,7 @@ import java.io.ByteArrayInputStream;
  *         Time: 3:49:24 PM
  */
 public class SwfFileStubBuilder implements BinaryFileStubBuilder {
-  private static final int VERSION = 2;
+  static final int VERSION = 2;
 
   public boolean acceptsFile(@NotNull final VirtualFile file) {
     return file.getFileType() == FlexApplicationComponent.SWF_FILE_TYPE &&
@@ -36,6 +37,13 @@ public class SwfFileStubBuilder implements BinaryFileStubBuilder {
   }
 
   static PsiFileStub buildFileStub(VirtualFile file, byte[] content) {
+    final SwfStubCache cache = SwfStubCache.getInstance();
+    final File cacheFile = cache.getCacheFile(content);
+    if (cacheFile != null) {
+      final PsiFileStub cachedStub = cache.load(cacheFile);
+      if (cachedStub != null) return cachedStub;
+    }
+
     PsiFileStubImpl stub = new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
     try {
 
@@ -44,6 +52,7 @@ public class SwfFileStubBuilder implements BinaryFileStubBuilder {
         stub
       );
 
+      if (cacheFile != null) cache.store(cacheFile, stub);
     } catch (Exception ex) {
       Logger.getInstance(SwfFileStubBuilder.class.getName()).warn(file.getPath(), ex);
     }
@@ -0,0 +1,103 @@
+package com.intellij.javascript.flex.compiled;
+
+import com.intellij.lang.javascript.flex.FlexUtils;
+import com.intellij.lang.javascript.flex.LruFileCache;
+import com.intellij.lang.javascript.types.JSFileElementType;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.AtomicNotNullLazyValue;
+import com.intellij.openapi.util.NotNullLazyValue;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.stubs.PsiFileStub;
+import com.intellij.psi.stubs.SerializationManagerEx;
+import com.intellij.psi.stubs.Stub;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+/**
+ * Application-wide on-disk cache of stub trees built for library.swf files of SWC libraries. Entries are keyed by the SHA-1 of the
+ * swf content, so the same Flex SDK opened in another project is not decompiled again.
+ * <p/>
+ * Stubs are written with serializer ids of {@link SerializationManagerEx}, which are valid only for the current index directory,
+ * so the cache is kept in the index directory and is deleted together with it when caches are invalidated. The version directory
+ * name contains the stub versions, directories of other versions are deleted. Least recently used entries are deleted when the
+ * cache grows over {@link #MAX_CACHE_SIZE}.
+ */
+final class SwfStubCache {
+  private static final Logger LOG = Logger.getInstance(SwfStubCache.class.getName());
+
+  private static final String CACHE_DIR_NAME = "flex-swf-stubs";
+
+  // small swfs are decompiled faster than their stubs are read from disk
+  private static final int MIN_CACHED_CONTENT_LENGTH = 16 * 1024;
+  static final long MAX_CACHE_SIZE = 256L * 1024 * 1024;
+
+  private static final NotNullLazyValue<SwfStubCache> ourInstance = new AtomicNotNullLazyValue<SwfStubCache>() {
+    @NotNull
+    @Override
+    protected SwfStubCache compute() {
+      return new SwfStubCache(new File(PathManager.getIndexRoot(), CACHE_DIR_NAME), JSFileElementType.getVersion(),
+                              SwfFileStubBuilder.VERSION);
+    }
+  };
+
+  private final LruFileCache myCache;
+
+  /**
+   * @param root directory that contains version directories of the cache
+   */
+  SwfStubCache(@NotNull final File root, final int jsStubVersion, final int swfStubVersion) {
+    myCache = new LruFileCache(root, "v", jsStubVersion + "." + swfStubVersion, MAX_CACHE_SIZE);
+  }
+
+  @NotNull
+  static SwfStubCache getInstance() {
+    return ourInstance.getValue();
+  }
+
+  @Nullable
+  PsiFileStub load(@NotNull final File file) {
+    if (!file.isFile()) return null;
+
+    try {
+      final InputStream in = new BufferedInputStream(new FileInputStream(file));
+      try {
+        final Stub stub = SerializationManagerEx.getInstanceEx().deserialize(in);
+        if (stub instanceof PsiFileStub) {
+          LruFileCache.markUsed(file);
+          return (PsiFileStub)stub;
+        }
+      }
+      finally {
+        in.close();
+      }
+    }
+    catch (Exception e) {
+      LOG.info("Failed to read cached swf stubs from " + file.getPath(), e);
+    }
+
+    FileUtil.delete(file);
+    return null;
+  }
+
+  void store(@NotNull final File file, @NotNull final PsiFileStub stub) {
+    if (file.isFile()) return;
+
+    myCache.write(file, out -> SerializationManagerEx.getInstanceEx().serialize(stub, out));
+  }
+
+  /**
+   * @return file to keep the stubs of the given swf content in, or {@code null} if the content is not worth caching
+   */
+  @Nullable
+  File getCacheFile(@NotNull final byte[] content) {
+    if (content.length < MIN_CACHED_CONTENT_LENGTH) return null;
+
+    return myCache.getFile(FlexUtils.getContentHash(content));
+  }
+}
@@ -61,6 +61,8 @@ import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -577,4 +579,43 @@ public class FlexUtils {
   public static boolean isMxmlNs(final String ns) {
     return ArrayUtil.contains(ns, MxmlJSClass.MXML_URIS);
   }
+
+  /**
+   * @return hex-encoded SHA-1 of the given content
+   */
+  @NotNull
+  public static String getContentHash(@NotNull final byte[] content) {
+    return StringUtil.toHexString(createSha1Digest().digest(content));
+  }
+
+  /**
+   * Reads the stream to the end and closes it.
+   *
+   * @return hex-encoded SHA-1 of the stream content
+   */
+  @NotNull
+  public static String getContentHash(@NotNull final InputStream in) throws IOException {
+    final MessageDigest digest = createSha1Digest();
+    try {
+      final byte[] buffer = new byte[64 * 1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    finally {
+      in.close();
+    }
+    return StringUtil.toHexString(digest.digest());
+  }
+
+  private static MessageDigest createSha1Digest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    }
+    catch (NoSuchAlgorithmException e) {
+      // every JRE has to support SHA-1
+      throw new IllegalStateException(e);
+    }
+  }
 }
@@ -0,0 +1,129 @@
+package com.intellij.lang.javascript.flex;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.ThrowableConsumer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Application-wide on-disk cache of files, usually named by the hash of the content they are computed from.
+ * <p/>
+ * Files are kept in the directory <code>&lt;parent&gt;/&lt;dirPrefix&gt;&lt;version&gt;</code>, other directories with the same prefix
+ * are left by other versions of the cache format and are deleted on first use. The timestamp of a file is the time of its last use,
+ * least recently used files are deleted when the cache grows over its maximum size.
+ */
+public final class LruFileCache {
+  private static final Logger LOG = Logger.getInstance(LruFileCache.class.getName());
+
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  private final File myParent;
+  private final String myDirPrefix;
+  private final File myDir;
+  private final long myMaxSize;
+  private final AtomicBoolean myOtherVersionsDeleted = new AtomicBoolean();
+
+  public LruFileCache(@NotNull final File parent, @NotNull final String dirPrefix, @NotNull final String version, final long maxSize) {
+    myParent = parent;
+    myDirPrefix = dirPrefix;
+    myDir = new File(parent, dirPrefix + version);
+    myMaxSize = maxSize;
+  }
+
+  @NotNull
+  public File getFile(@NotNull final String name) {
+    if (myOtherVersionsDeleted.compareAndSet(false, true)) {
+      deleteOtherVersions(myParent, myDirPrefix, myDir.getName());
+    }
+    return new File(myDir, name);
+  }
+
+  /**
+   * Must be called after the file has been read, so that it is not deleted as one of least recently used files.
+   */
+  public static void markUsed(@NotNull final File file) {
+    //noinspection ResultOfMethodCallIgnored
+    file.setLastModified(System.currentTimeMillis());
+  }
+
+  /**
+   * Writes the file and deletes least recently used files if the cache has grown over its maximum size. The content is written to
+   * a unique temp file and renamed, so concurrent readers never see partially written files. Errors are logged.
+   */
+  public void write(@NotNull final File file, @NotNull final ThrowableConsumer<OutputStream, IOException> writer) {
+    final File dir = file.getParentFile();
+    File tempFile = null;
+    try {
+      FileUtil.createDirectory(dir);
+      tempFile = FileUtil.createTempFile(dir, file.getName(), TEMP_FILE_SUFFIX, true, false);
+      final OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile));
+      try {
+        writer.consume(out);
+      }
+      finally {
+        out.close();
+      }
+
+      if (!tempFile.renameTo(file)) {
+        FileUtil.delete(tempFile);
+      }
+    }
+    catch (Exception e) {
+      LOG.info("Failed to write " + file.getPath(), e);
+      if (tempFile != null) {
+        FileUtil.delete(tempFile);
+      }
+    }
+
+    evict(dir, myMaxSize);
+  }
+
+  static void deleteOtherVersions(@NotNull final File parent, @NotNull final String dirPrefix, @NotNull final String dirName) {
+    final File[] dirs = parent.listFiles();
+    if (dirs == null) return;
+
+    for (File dir : dirs) {
+      if (dir.getName().startsWith(dirPrefix) && !dir.getName().equals(dirName)) {
+        FileUtil.delete(dir);
+      }
+    }
+  }
+
+  /**
+   * Deletes least recently used files until the size of the cache is 3/4 of {@code maxSize}, if it is over {@code maxSize}.
+   */
+  static void evict(@NotNull final File dir, final long maxSize) {
+    final File[] files = dir.listFiles();
+    if (files == null) return;
+
+    final long[] lastModified = new long[files.length];
+    long size = 0;
+    for (int i = 0; i < files.length; i++) {
+      lastModified[i] = files[i].lastModified();
+      size += files[i].length();
+    }
+    if (size <= maxSize) return;
+
+    final Integer[] order = new Integer[files.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    // timestamps are read once, files may be used by other threads while sorting
+    Arrays.sort(order, (i1, i2) -> Long.compare(lastModified[i1], lastModified[i2]));
+
+    for (Integer i : order) {
+      if (size <= maxSize / 4 * 3) break;
+      final File file = files[i];
+      // temp files are being written by other threads
+      if (file.getName().endsWith(TEMP_FILE_SUFFIX)) continue;
+      final long length = file.length();
+      if (FileUtil.delete(file)) {
+        size -= length;
+      }
+    }
+  }
+}
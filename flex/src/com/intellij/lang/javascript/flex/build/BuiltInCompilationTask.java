@@ -49,6 +49,14 @@ public class BuiltInCompilationTask extends FlexCompilationTask {
         }
       }
 
+      public void diagnosticAvailable(final boolean error, final String path, final int line, final int column, final String message) {
+        final boolean ok = FlexCompilationUtils.handleCompilerDiagnostic(compilationManager, BuiltInCompilationTask.this, error, path, line,
+                                                                         column, message);
+        if (!ok) {
+          myCompilationFailed = true;
+        }
+      }
+
       public void compilationFinished() {
         myFinished = true;
       }
@@ -1,6 +1,7 @@
 package com.intellij.lang.javascript.flex.build;
 
 import com.intellij.flex.FlexCommonUtils;
+import com.intellij.flex.build.BuiltInCompilerProtocol;
 import com.intellij.lang.javascript.flex.FlexUtils;
 import com.intellij.lang.javascript.flex.sdk.FlexSdkType2;
 import com.intellij.lang.javascript.flex.sdk.FlexSdkUtils;
@@ -17,6 +18,7 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.Function;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.net.ServerSocket;
@@ -47,6 +49,8 @@ public class BuiltInFlexCompilerHandler {
   public interface Listener {
     void textAvailable(String text);
 
+    void diagnosticAvailable(boolean error, @Nullable String path, int line, int column, String message);
+
     void compilationFinished();
   }
 
@@ -65,7 +69,7 @@ public class BuiltInFlexCompilerHandler {
         startCompilerProcess(sdk, port, context);
 
         final Socket socket = myServerSocket.accept();
-        myDataInputStream = new DataInputStream(socket.getInputStream());
+        myDataInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
         myDataOutputStream = new DataOutputStream(socket.getOutputStream());
         mySdkHome = sdk.getHomePath();
         scheduleInputReading();
@@ -138,17 +142,33 @@ public class BuiltInFlexCompilerHandler {
     ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
       public void run() {
         final StringBuilder buffer = new StringBuilder();
+        boolean firstMessage = true;
+        boolean frames = false;
         while (true) {
           final DataInputStream dataInputStream = myDataInputStream;
           if (dataInputStream != null) {
             try {
-              buffer.append(dataInputStream.readUTF());
-
-              int index;
-              while ((index = buffer.indexOf("\n")) > -1) {
-                final String line = buffer.substring(0, index);
-                buffer.delete(0, index + 1);
-                handleInputLine(line);
+              if (frames) {
+                handleFrame(BuiltInCompilerProtocol.readFrame(dataInputStream));
+              }
+              else {
+                final String text = dataInputStream.readUTF();
+                // shell from an older flex-compiler.jar doesn't announce protocol version and sends all messages with writeUTF()
+                if (firstMessage &&
+                    BuiltInCompilerProtocol.getProtocolVersion(text) >= BuiltInCompilerProtocol.FRAMES_PROTOCOL_VERSION) {
+                  frames = true;
+                }
+                else {
+                  buffer.append(text);
+
+                  int index;
+                  while ((index = buffer.indexOf("\n")) > -1) {
+                    final String line = buffer.substring(0, index);
+                    buffer.delete(0, index + 1);
+                    handleInputLine(line);
+                  }
+                }
+                firstMessage = false;
               }
             }
             catch (IOException e) {
@@ -192,6 +212,36 @@ public class BuiltInFlexCompilerHandler {
     }
   }
 
+  private synchronized void handleFrame(final BuiltInCompilerProtocol.Frame frame) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("RECEIVED: [" + frame.commandId + ":" + frame.type + ":" + frame.text + "]");
+    }
+
+    final String prefix = frame.commandId + ":";
+    final Listener listener = myActiveListeners.get(prefix);
+    if (listener == null) {
+      // could be message from cancelled compilation
+      LOG.warn("No active listener for command " + frame.commandId + ": [" + frame.text + "]");
+      return;
+    }
+
+    switch (frame.type) {
+      case BuiltInCompilerProtocol.TEXT:
+        listener.textAvailable(frame.text);
+        break;
+      case BuiltInCompilerProtocol.DIAGNOSTIC:
+        listener.diagnosticAvailable(frame.severity == BuiltInCompilerProtocol.SEVERITY_ERROR, frame.path, frame.line, frame.column,
+                                     frame.text);
+        break;
+      case BuiltInCompilerProtocol.COMPILATION_FINISHED:
+        listener.compilationFinished();
+        myActiveListeners.remove(prefix);
+        break;
+      default:
+        LOG.error("Unexpected frame type: " + frame.type);
+    }
+  }
+
   public synchronized void sendCompilationCommand(final String command, final Listener listener) {
     if (myDataOutputStream == null) {
       listener.textAvailable("Error: Compiler process is not started.");
@@ -219,6 +219,26 @@ public class FlexCompilationUtils {
     return !failureDetected;
   }
 
+  /**
+   * Reports a warning or error that the built-in compiler sent as a structured diagnostic.
+   *
+   * @return <code>false</code> if it is an error
+   */
+  static boolean handleCompilerDiagnostic(final FlexCompilationManager compilationManager,
+                                          final FlexCompilationTask task,
+                                          final boolean error,
+                                          final @Nullable String filePath,
+                                          final int line,
+                                          final int column,
+                                          final String message) {
+    final VirtualFile file = filePath == null ? null : LocalFileSystem.getInstance().findFileByPath(filePath);
+    final String fullMessage = filePath != null && file == null ? filePath + ": " + message : message;
+
+    compilationManager.addMessage(task, error ? CompilerMessageCategory.ERROR : CompilerMessageCategory.WARNING, fullMessage,
+                                  file != null ? file.getUrl() : null, Math.max(line, 0), Math.max(column, 0));
+    return !error;
+  }
+
   public static void ensureOutputFileWritable(final Project project, final String filePath) {
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
     if (file != null && !file.isWritable()) {
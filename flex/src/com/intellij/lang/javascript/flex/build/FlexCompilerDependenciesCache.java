@@ -1,32 +1,55 @@
 package com.intellij.lang.javascript.flex.build;
 
 import com.intellij.ProjectTopics;
+import com.intellij.flex.FlexCommonUtils;
 import com.intellij.flex.model.bc.BuildConfigurationNature;
 import com.intellij.lang.javascript.flex.FlexUtils;
 import com.intellij.lang.javascript.flex.projectStructure.model.FlexBuildConfiguration;
 import com.intellij.lang.javascript.flex.projectStructure.model.impl.Factory;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.ModuleListener;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.containers.ContainerUtil;
 import gnu.trove.THashMap;
+import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.util.*;
 
+/**
+ * Remembers files that compilation of each BC depends on, so that BCs whose dependencies haven't changed are not recompiled.
+ * Changes in source roots are tracked by VFS events, other dependencies are checked by timestamp and, if it has changed,
+ * by content hash, so that a touched or re-checked-out file with the same content doesn't cause recompilation. Dependencies in
+ * the project content are not checked again until there's a VFS event, SDK and library files are checked on every make.
+ * The cache is saved on project close and loaded on the first make in the next IDE session.
+ */
 public class FlexCompilerDependenciesCache {
 
+  private static final Logger LOG = Logger.getInstance(FlexCompilerDependenciesCache.class.getName());
+  private static final int STORAGE_VERSION = 2;
+
   private final Project myProject;
+  private final File myStorageFile;
   private final Map<Module, Collection<BCInfo>> myCache = new THashMap<>();
+  // path -> file info with content hash, shared by BCs, so that SDK and library swcs are hashed once
+  private final Map<String, FileInfo> myFileInfos = new THashMap<>();
+
+  // incremented on any VFS event; if it hasn't changed since the previous check of a BC there's no need to check its dependencies
+  // in the project content again
+  private long myChangeStamp;
+  private boolean myLoaded;
 
   private static final String[] TAGS_FOR_FILE_PATHS_IN_CONFIG_FILE =
     {"<flex-config><compiler><external-library-path><path-element>", "<flex-config><compiler><local-font-paths><path-element>",
@@ -42,7 +65,13 @@ public class FlexCompilerDependenciesCache {
     };
 
   public FlexCompilerDependenciesCache(final Project project) {
+    this(project, new File(PathManager.getSystemPath(), "flex" + File.separator + "compiler-dependencies" + File.separator +
+                                                         project.getLocationHash()));
+  }
+
+  FlexCompilerDependenciesCache(final Project project, final File storageFile) {
     myProject = project;
+    myStorageFile = storageFile;
 
     project.getMessageBus().connect(project).subscribe(ProjectTopics.MODULES, new ModuleListener() {
       public void moduleRemoved(@NotNull final Project project, @NotNull final Module module) {
@@ -53,6 +82,12 @@ public class FlexCompilerDependenciesCache {
 
   public void clear() {
     myCache.clear();
+    myFileInfos.clear();
+  }
+
+  public void fileChanged(final VirtualFile file) {
+    myChangeStamp++;
+    markModuleDirtyIfInSourceRoot(file);
   }
 
   public void markModuleDirty(final Module module) {
@@ -81,6 +116,8 @@ public class FlexCompilerDependenciesCache {
   }
 
   public boolean isNothingChangedSincePreviousCompilation(final Module module, final FlexBuildConfiguration bc) {
+    ensureLoaded();
+
     final Collection<BCInfo> infosForModule = myCache.get(module);
     final BCInfo existingInfo = infosForModule == null ? null : findCacheForBC(infosForModule, bc);
     if (existingInfo == null) {
@@ -88,7 +125,10 @@ public class FlexCompilerDependenciesCache {
     }
 
     final String[] currentSourceRoots = ModuleRootManager.getInstance(module).getSourceRootUrls();
-    if (!Arrays.equals(existingInfo.mySourceRootUrls, currentSourceRoots) || existingInfo.timestampsChanged()) {
+    final boolean onlyOutsideContent = existingInfo.myCheckedAtStamp == myChangeStamp;
+    if (!Arrays.equals(existingInfo.mySourceRootUrls, currentSourceRoots) ||
+        existingInfo.dependenciesChanged(onlyOutsideContent) ||
+        existingInfo.myLoadedFromDisk && sourcesChangedWhileNotTracked(module, existingInfo)) {
       infosForModule.remove(existingInfo);
       if (infosForModule.isEmpty()) {
         myCache.remove(module);
@@ -96,10 +136,27 @@ public class FlexCompilerDependenciesCache {
       return false;
     }
 
+    existingInfo.myLoadedFromDisk = false;
+    existingInfo.myCheckedAtStamp = myChangeStamp;
     return true;
   }
 
+  /**
+   * VFS events are not tracked while the project is closed, so for the BCs loaded from disk check source roots once.
+   * Deleted and renamed files change timestamps of their directories. VFS is refreshed on project open, so its timestamps are up to date.
+   */
+  private static boolean sourcesChangedWhileNotTracked(final Module module, final BCInfo info) {
+    for (VirtualFile sourceRoot : ModuleRootManager.getInstance(module).getSourceRoots(false)) {
+      if (!VfsUtilCore.iterateChildrenRecursively(sourceRoot, null, file -> file.getTimeStamp() <= info.myCompiledAt)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void cacheBC(final Module module, final FlexBuildConfiguration bc, final List<VirtualFile> configFiles) {
+    ensureLoaded();
+
     Collection<BCInfo> infosForModule = myCache.get(module);
     if (infosForModule == null) {
       infosForModule = new ArrayList<>();
@@ -115,8 +172,11 @@ public class FlexCompilerDependenciesCache {
     final VirtualFile outputFile = FlexCompilationManager.refreshAndFindFileInWriteAction(bc.getActualOutputFilePath());
     if (outputFile == null) return;
 
-    final BCInfo bcInfo = new BCInfo(Factory.getCopy(bc), ModuleRootManager.getInstance(module).getSourceRootUrls());
+    final BCInfo bcInfo = new BCInfo(this, Factory.getCopy(bc), Factory.getSerializedState(bc),
+                                     ModuleRootManager.getInstance(module).getSourceRootUrls(), outputFile.getTimeStamp());
+    bcInfo.myCheckedAtStamp = myChangeStamp;
     infosForModule.add(bcInfo);
+    pruneFileInfos();
 
     bcInfo.addFileDependency(outputFile.getPath());
 
@@ -147,9 +207,144 @@ public class FlexCompilerDependenciesCache {
     }
   }
 
+  /**
+   * Removes infos of the files that none of the cached BCs depends on any more
+   */
+  private void pruneFileInfos() {
+    final Set<String> usedPaths = new THashSet<>();
+    for (Collection<BCInfo> infos : myCache.values()) {
+      for (BCInfo info : infos) {
+        for (FileInfo fileInfo : info.myFileInfos) {
+          usedPaths.add(fileInfo.path);
+        }
+      }
+    }
+    myFileInfos.keySet().retainAll(usedPaths);
+  }
+
   @Nullable
   private static BCInfo findCacheForBC(final @NotNull Collection<BCInfo> bcInfos, @NotNull final FlexBuildConfiguration bc) {
-    return ContainerUtil.find(bcInfos, info -> info.myBC.isEqual(bc));
+    final BCInfo info = ContainerUtil.find(bcInfos, i -> i.myBC != null && i.myBC.isEqual(bc));
+    if (info != null || !ContainerUtil.exists(bcInfos, i -> i.myBC == null)) return info;
+
+    // loaded from disk
+    final String serializedState = Factory.getSerializedState(bc);
+    return ContainerUtil.find(bcInfos, i -> i.myBC == null && i.mySerializedState.equals(serializedState));
+  }
+
+  /**
+   * @return info with content hash; it is reused while file timestamp and length remain the same
+   */
+  @Nullable
+  private FileInfo getFileInfo(final File file) {
+    final String path = file.getPath();
+    final long timestamp = file.lastModified();
+    final long length = file.length();
+
+    final FileInfo cached = myFileInfos.get(path);
+    if (cached != null && cached.timestamp == timestamp && cached.length == length) {
+      return cached;
+    }
+
+    final String hash = file.isDirectory() ? "" : getContentHash(file); // directories are checked by timestamp only
+    if (hash == null) {
+      myFileInfos.remove(path);
+      return null;
+    }
+
+    final VirtualFile vFile = cached == null ? LocalFileSystem.getInstance().findFileByIoFile(file) : null;
+    final boolean inContent = cached != null
+                              ? cached.inContent
+                              : vFile != null && ProjectRootManager.getInstance(myProject).getFileIndex().isInContent(vFile);
+    final FileInfo info = new FileInfo(path, timestamp, length, hash, inContent);
+    myFileInfos.put(path, info);
+    return info;
+  }
+
+  @Nullable
+  private static String getContentHash(final File file) {
+    try {
+      return FlexUtils.getContentHash(new FileInputStream(file));
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  private void ensureLoaded() {
+    if (myLoaded) return;
+    myLoaded = true;
+
+    final File file = myStorageFile;
+    if (!file.isFile()) return;
+
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (in.readInt() != STORAGE_VERSION) return;
+
+        final ModuleManager moduleManager = ModuleManager.getInstance(myProject);
+        for (int bcCount = in.readInt(); bcCount > 0; bcCount--) {
+          final String moduleName = in.readUTF();
+          final BCInfo info = BCInfo.read(this, in);
+
+          final Module module = moduleManager.findModuleByName(moduleName);
+          if (module != null) {
+            Collection<BCInfo> infosForModule = myCache.get(module);
+            if (infosForModule == null) {
+              infosForModule = new ArrayList<>();
+              myCache.put(module, infosForModule);
+            }
+            infosForModule.add(info);
+          }
+        }
+      }
+      finally {
+        in.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to load Flex compiler dependencies from " + file.getPath(), e);
+      myCache.clear();
+    }
+    finally {
+      // the file is valid only once: if the IDE crashes, VFS events of the next session would be lost
+      FileUtil.delete(file);
+    }
+  }
+
+  public void save() {
+    final File file = myStorageFile;
+    FileUtil.delete(file);
+    if (myCache.isEmpty()) return;
+
+    try {
+      FileUtil.createParentDirs(file);
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      try {
+        out.writeInt(STORAGE_VERSION);
+
+        int bcCount = 0;
+        for (Collection<BCInfo> infos : myCache.values()) {
+          bcCount += infos.size();
+        }
+        out.writeInt(bcCount);
+
+        for (Map.Entry<Module, Collection<BCInfo>> entry : myCache.entrySet()) {
+          for (BCInfo info : entry.getValue()) {
+            out.writeUTF(entry.getKey().getName());
+            info.write(out);
+          }
+        }
+      }
+      finally {
+        out.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to save Flex compiler dependencies to " + file.getPath(), e);
+      FileUtil.delete(file);
+    }
   }
 
   private static void addFileDependencies(final BCInfo bcInfo, final VirtualFile configFile, final String workDirPath) {
@@ -167,39 +362,137 @@ public class FlexCompilerDependenciesCache {
     catch (IOException e) {/*ignore*/}
   }
 
+  private static class FileInfo {
+    private final String path;
+    private final long timestamp;
+    private final long length;
+    private final String hash;
+    // VFS events are received for the files in the project content only
+    private final boolean inContent;
+
+    private FileInfo(final String path, final long timestamp, final long length, final String hash, final boolean inContent) {
+      this.path = path;
+      this.timestamp = timestamp;
+      this.length = length;
+      this.hash = hash;
+      this.inContent = inContent;
+    }
+  }
+
   private static class BCInfo {
-    private final FlexBuildConfiguration myBC;
+    private final FlexCompilerDependenciesCache myOwner;
+    private final @Nullable FlexBuildConfiguration myBC; // null if loaded from disk
+    private final String mySerializedState;
     private final String[] mySourceRootUrls;
-    private final Collection<Pair<File, Long>> myFileToTimestamp = new ArrayList<>();
+    private final long myCompiledAt;
+    private final List<FileInfo> myFileInfos = new ArrayList<>();
+
+    private long myCheckedAtStamp = -1;
+    private boolean myLoadedFromDisk;
 
-    private BCInfo(final FlexBuildConfiguration bc, final String[] sourceRootUrls) {
+    private BCInfo(final FlexCompilerDependenciesCache owner,
+                   final @Nullable FlexBuildConfiguration bc,
+                   final String serializedState,
+                   final String[] sourceRootUrls,
+                   final long compiledAt) {
+      myOwner = owner;
       myBC = bc;
+      mySerializedState = serializedState;
       mySourceRootUrls = sourceRootUrls;
+      myCompiledAt = compiledAt;
     }
 
     private void addFileDependency(final String filePath, final String... potentialBaseDirs) {
       final File file = new File(FileUtil.toSystemDependentName(filePath));
       if (file.exists()) {
-        myFileToTimestamp.add(Pair.create(file, file.lastModified()));
+        addFileInfo(file);
       }
       else if (potentialBaseDirs != null) {
         for (String baseDir : potentialBaseDirs) {
           final File file1 = new File(FileUtil.toSystemDependentName(baseDir + '/' + filePath));
           if (file1.exists()) {
-            myFileToTimestamp.add(Pair.create(file1, file1.lastModified()));
+            addFileInfo(file1);
             break;
           }
         }
       }
     }
 
-    public boolean timestampsChanged() {
-      for (Pair<File, Long> fileAndTimestamp : myFileToTimestamp) {
-        if (fileAndTimestamp.first.lastModified() != fileAndTimestamp.second) {
+    private void addFileInfo(final File file) {
+      final FileInfo info = myOwner.getFileInfo(file);
+      if (info != null) {
+        myFileInfos.add(info);
+      }
+    }
+
+    /**
+     * @param onlyOutsideContent if there were no VFS events since the previous check, so only files outside the project content
+     *                           (SDK, libraries) may have changed
+     */
+    public boolean dependenciesChanged(final boolean onlyOutsideContent) {
+      for (int i = 0; i < myFileInfos.size(); i++) {
+        final FileInfo info = myFileInfos.get(i);
+        if (onlyOutsideContent && info.inContent) continue;
+
+        final File file = new File(info.path);
+        if (file.lastModified() == info.timestamp && file.length() == info.length) continue;
+
+        final FileInfo current = file.exists() ? myOwner.getFileInfo(file) : null;
+        if (current == null || !current.hash.equals(info.hash) || info.hash.isEmpty()) {
           return true;
         }
+        myFileInfos.set(i, current); // same content, remember new timestamp to avoid hashing next time
       }
       return false;
     }
+
+    private void write(final DataOutputStream out) throws IOException {
+      writeString(out, mySerializedState);
+      out.writeInt(mySourceRootUrls.length);
+      for (String url : mySourceRootUrls) {
+        out.writeUTF(url);
+      }
+      out.writeLong(myCompiledAt);
+
+      // generated config files are deleted on project close; their content is defined by the BC state and the files they refer to
+      final String tempConfigsDir = FlexCommonUtils.getTempFlexConfigsDirPath();
+      final List<FileInfo> fileInfos = ContainerUtil.filter(myFileInfos, info -> !FileUtil.isAncestor(tempConfigsDir, info.path, false));
+      out.writeInt(fileInfos.size());
+      for (FileInfo info : fileInfos) {
+        out.writeUTF(info.path);
+        out.writeLong(info.timestamp);
+        out.writeLong(info.length);
+        out.writeUTF(info.hash);
+        out.writeBoolean(info.inContent);
+      }
+    }
+
+    private static BCInfo read(final FlexCompilerDependenciesCache owner, final DataInputStream in) throws IOException {
+      final String serializedState = readString(in);
+      final String[] sourceRootUrls = new String[in.readInt()];
+      for (int i = 0; i < sourceRootUrls.length; i++) {
+        sourceRootUrls[i] = in.readUTF();
+      }
+      final BCInfo info = new BCInfo(owner, null, serializedState, sourceRootUrls, in.readLong());
+      info.myLoadedFromDisk = true;
+
+      for (int fileCount = in.readInt(); fileCount > 0; fileCount--) {
+        info.myFileInfos.add(new FileInfo(in.readUTF(), in.readLong(), in.readLong(), in.readUTF(), in.readBoolean()));
+      }
+      return info;
+    }
+
+    // serialized BC state may be longer than writeUTF() allows
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+      final byte[] bytes = s.getBytes("UTF-8");
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+      final byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      return new String(bytes, "UTF-8");
+    }
   }
 }
@@ -193,6 +193,7 @@ public class FlexCompilerHandler extends AbstractProjectComponent {
       myBuiltInFlexCompilerHandler.stopCompilerProcess();
     }
     quitCompilerShell();
+    myCompilerDependenciesCache.save();
     myCompilerDependenciesCache.clear();
     FlexCommonUtils.deleteTempFlexConfigFiles(myProject.getName());
     FlexCompilationUtils.deleteUnzippedANEFiles();
@@ -749,7 +750,7 @@ public class FlexCompilerHandler extends AbstractProjectComponent {
 
     private void handleVirtualFileEvent(final VirtualFile file, boolean contentsChanged) {
       if (file == null) return;
-      myCompilerDependenciesCache.markModuleDirtyIfInSourceRoot(file);
+      myCompilerDependenciesCache.fileChanged(file);
       //clearAutoGeneratedConfigsIfNeeded(file, contentsChanged);
     }
   }
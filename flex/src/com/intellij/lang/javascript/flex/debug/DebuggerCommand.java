@@ -15,6 +15,7 @@ class DebuggerCommand {
   private final CommandOutputProcessingType myOutputProcessingType; // program will consume immediate server response (no infinite blocking allowed)
   private final VMState myEndVMState;
   private final VMState myStartVMState;
+  private long myResponseTimeMillis = -1;
 
   DebuggerCommand(@NotNull @NonNls String _text) { this(_text, CommandOutputProcessingType.NO_PROCESSING); }
   DebuggerCommand(@NotNull @NonNls String _text, CommandOutputProcessingType outputProcessingType) {
@@ -42,6 +43,17 @@ class DebuggerCommand {
     return myStartVMState;
   }
 
+  /**
+   * @return time between sending the command to fdb and reading the first response to it, or -1 if no response has been read yet
+   */
+  public long getResponseTimeMillis() {
+    return myResponseTimeMillis;
+  }
+
+  void setResponseTimeMillis(final long responseTimeMillis) {
+    myResponseTimeMillis = responseTimeMillis;
+  }
+
   CommandOutputProcessingMode onTextAvailable(@NonNls String s) {
     assert myOutputProcessingType != CommandOutputProcessingType.NO_PROCESSING;
     return CommandOutputProcessingMode.DONE;
@@ -0,0 +1,162 @@
+package com.intellij.lang.javascript.flex.debug;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+
+/**
+ * Splits fdb output into responses. A response ends with one of the prompt markers (like <code>(fdb) </code>); markers are
+ * matched incrementally as the characters arrive, so each character is looked at once regardless of how the output is chunked.
+ */
+class FdbOutputTokenizer {
+
+  static class Response {
+    @NotNull final String text;
+    // false if the response was taken without waiting for the prompt
+    final boolean prompted;
+
+    private Response(final @NotNull String text, final boolean prompted) {
+      this.text = text;
+      this.prompted = prompted;
+    }
+  }
+
+  private final MarkerMatcher[] myPromptMatchers;
+  private final MarkerMatcher[] myWaitingMatchers;
+
+  private final StringBuilder myPendingText = new StringBuilder();
+  private final ArrayDeque<Response> myResponses = new ArrayDeque<>();
+  private boolean myWaitingMarkerFound;
+  // pending text follows a prompt and consists of spaces only
+  private boolean myBlankAfterPrompt;
+
+  /**
+   * @param promptMarkers  markers that terminate a response, the marker itself is not a part of the response
+   * @param waitingMarkers if pending text contains one of these markers it may be taken as a response without waiting for the prompt
+   */
+  FdbOutputTokenizer(final @NotNull String[] promptMarkers, final @NotNull String[] waitingMarkers) {
+    myPromptMatchers = createMatchers(promptMarkers);
+    myWaitingMatchers = createMatchers(waitingMarkers);
+  }
+
+  private static MarkerMatcher[] createMatchers(final String[] markers) {
+    final MarkerMatcher[] matchers = new MarkerMatcher[markers.length];
+    for (int i = 0; i < markers.length; i++) {
+      matchers[i] = new MarkerMatcher(markers[i]);
+    }
+    return matchers;
+  }
+
+  void feed(final char[] buf, final int offset, final int length) {
+    for (int i = offset; i < offset + length; i++) {
+      final char c = buf[i];
+
+      myPendingText.append(c);
+      if (c != ' ') myBlankAfterPrompt = false;
+
+      if (takeIfPrompt(c)) continue;
+
+      if (!myWaitingMarkerFound) {
+        for (MarkerMatcher matcher : myWaitingMatchers) {
+          if (matcher.feed(c)) {
+            myWaitingMarkerFound = true;
+            break;
+          }
+        }
+      }
+    }
+
+    // all the output received after the last prompt is blank, it is never interesting
+    if (myBlankAfterPrompt && myPendingText.length() > 0) {
+      myPendingText.setLength(0);
+      resetMatchers();
+    }
+    myBlankAfterPrompt = false;
+  }
+
+  private boolean takeIfPrompt(final char c) {
+    for (MarkerMatcher matcher : myPromptMatchers) {
+      if (matcher.feed(c)) {
+        myPendingText.setLength(myPendingText.length() - matcher.myMarker.length());
+        takePendingText(true);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean hasResponse() {
+    return !myResponses.isEmpty();
+  }
+
+  /**
+   * @param allowUnprompted if there's no complete response then return all pending text
+   * @return next response or <code>null</code> if more output is needed
+   */
+  @Nullable
+  Response nextResponse(final boolean allowUnprompted) {
+    if (myResponses.isEmpty() && (allowUnprompted || myWaitingMarkerFound) && myPendingText.length() > 0) {
+      takePendingText(false);
+    }
+    return myResponses.pollFirst();
+  }
+
+  private void takePendingText(final boolean prompted) {
+    myResponses.addLast(new Response(myPendingText.toString(), prompted));
+    myPendingText.setLength(0);
+    myBlankAfterPrompt = prompted;
+    resetMatchers();
+  }
+
+  private void resetMatchers() {
+    myWaitingMarkerFound = false;
+
+    for (MarkerMatcher matcher : myPromptMatchers) {
+      matcher.reset();
+    }
+    for (MarkerMatcher matcher : myWaitingMatchers) {
+      matcher.reset();
+    }
+  }
+
+  /**
+   * Knuth-Morris-Pratt matcher that is fed one character at a time.
+   */
+  private static class MarkerMatcher {
+    private final String myMarker;
+    private final int[] myFallback;
+    private int myMatched;
+
+    private MarkerMatcher(final String marker) {
+      myMarker = marker;
+      myFallback = new int[marker.length()];
+
+      int k = 0;
+      for (int i = 1; i < marker.length(); i++) {
+        while (k > 0 && marker.charAt(i) != marker.charAt(k)) {
+          k = myFallback[k - 1];
+        }
+        if (marker.charAt(i) == marker.charAt(k)) k++;
+        myFallback[i] = k;
+      }
+    }
+
+    private boolean feed(final char c) {
+      while (myMatched > 0 && myMarker.charAt(myMatched) != c) {
+        myMatched = myFallback[myMatched - 1];
+      }
+      if (myMarker.charAt(myMatched) == c) myMatched++;
+
+      if (myMatched == myMarker.length()) {
+        myMatched = myFallback[myMatched - 1];
+        return true;
+      }
+      return false;
+    }
+
+    private void reset() {
+      myMatched = 0;
+    }
+  }
+}
@@ -82,6 +82,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.intellij.lang.javascript.flex.run.FlashRunnerParameters.AirMobileDebugTransport;
 import static com.intellij.lang.javascript.flex.run.FlashRunnerParameters.AirMobileRunTarget;
@@ -132,6 +133,8 @@ public class FlexDebugProcess extends XDebugProcess {
 
   private Object myStackFrameEqualityObject;
   private Map<String, String> myQName2IdMap;
+  // members of the objects printed while VM is suspended, keyed by object reference like #12345.; shared by all stack frames
+  private final Map<String, String> myObjectMembersCache = new ConcurrentHashMap<>();
 
   private int myCurrentWorker = 0;
   private final KnownFilesInfo myKnownFilesInfo = new KnownFilesInfo(this);
@@ -494,6 +497,7 @@ public class FlexDebugProcess extends XDebugProcess {
 
   private void processOneCommandLoop() throws IOException, InterruptedException {
     assert Thread.currentThread() == myDebuggerManagerThread;
+    final long sentAt = System.nanoTime();
     final DebuggerCommand command = postCommand();
     if (command == null) return;
     boolean explicitlyContinueRead = false;
@@ -512,6 +516,10 @@ public class FlexDebugProcess extends XDebugProcess {
       @NonNls String commandOutput = null;
       try {
         commandOutput = command.read(this);
+        if (command.getResponseTimeMillis() == -1) {
+          command.setResponseTimeMillis((System.nanoTime() - sentAt) / 1000000);
+          log("Response to " + command.getText() + " in " + command.getResponseTimeMillis() + " ms");
+        }
       }
       catch (IOException e) {
         if (!(command instanceof QuitCommand)) {
@@ -1003,6 +1011,9 @@ public class FlexDebugProcess extends XDebugProcess {
 
     setSuspended(
       command.getOutputProcessingMode() == CommandOutputProcessingType.NO_PROCESSING && command.getEndVMState() == VMState.SUSPENDED);
+    if (command.getEndVMState() == VMState.RUNNING) {
+      dropCachedObjectMembers();
+    }
     log("Sent:" + text);
     fdbProcess.getOutputStream().write((text + "\n").getBytes());
     try {
@@ -1095,6 +1106,16 @@ public class FlexDebugProcess extends XDebugProcess {
     myOutputAlarm.addRequest(() -> sendCommand(command), delay);
   }
 
+  /**
+   * @param commandFactory is called when the delay is over; it may return <code>null</code> if there's nothing to send anymore
+   */
+  void addPendingCommand(final NullableComputable<DebuggerCommand> commandFactory, int delay) {
+    myOutputAlarm.addRequest(() -> {
+      final DebuggerCommand command = commandFactory.compute();
+      if (command != null) sendCommand(command);
+    }, delay);
+  }
+
   private void scheduleFdbErrorStreamReading() {
     ApplicationManager.getApplication().executeOnPooledThread(() -> {
       InputStreamReader myErrorStreamReader = new InputStreamReader(fdbProcess.getErrorStream());
@@ -1226,11 +1247,28 @@ public class FlexDebugProcess extends XDebugProcess {
     return null;
   }
 
+  void cacheObjectMembers(final String objectReference, final String members) {
+    myObjectMembersCache.put(objectReference, members);
+  }
+
+  @Nullable
+  String getCachedObjectMembers(final String objectReference) {
+    return myObjectMembersCache.get(objectReference);
+  }
+
+  /**
+   * Called when VM resumes and when an evaluation may have changed values, i.e. after a <code>set</code> command or a user expression
+   * evaluation.
+   */
+  void dropCachedObjectMembers() {
+    myObjectMembersCache.clear();
+  }
+
   class MyFdbOutputReader {
     private final InputStreamReader myReader;
     private final char[] buf = new char[8192];
-    private final StringBuilder lastText = new StringBuilder();
-    private int lastTextMarkerScanningStart;
+    private final FdbOutputTokenizer myTokenizer =
+      new FdbOutputTokenizer(new String[]{FDB_MARKER, "(y or n)"}, new String[]{WAITING_PLAYER_MARKER_1, WAITING_PLAYER_MARKER_2});
     private final InputStream myInputStream;
 
     public MyFdbOutputReader(final InputStream _inputStream) {
@@ -1239,66 +1277,31 @@ public class FlexDebugProcess extends XDebugProcess {
     }
 
     boolean hasSomeDataPending() throws IOException {
-      return myInputStream.available() > 0;
+      return myTokenizer.hasResponse() || myInputStream.available() > 0;
     }
 
     String readLine(boolean nonblock) throws IOException {
-      if (lastText != null) {
-        final String lastText = getNextLine(nonblock);
-        if (lastText != null) return lastText;
-      }
+      final String pendingResponse = getNextResponse(nonblock);
+      if (pendingResponse != null) return pendingResponse;
 
       while (true) {
         int read = myReader.read(buf, 0, buf.length);
         if (read == -1) return null;
-        lastText.append(buf, 0, read);
+        myTokenizer.feed(buf, 0, read);
 
-        if (read < buf.length) {
-          final String lastText = getNextLine(nonblock);
-          if (lastText != null) return lastText;
-        }
+        // if the buffer is full then more output is probably on its way, don't take unprompted text yet
+        final String response = myTokenizer.hasResponse() || read < buf.length ? getNextResponse(nonblock) : null;
+        if (response != null) return response;
       }
     }
 
-    private String getNextLine(boolean allowEmptyMarker) {
-      String result;
-      String marker = FDB_MARKER;
-      int i = lastText.indexOf(marker, lastTextMarkerScanningStart);
-
-      if (i == -1) {
-        marker = "(y or n)";
-        i = lastText.indexOf(marker, lastTextMarkerScanningStart);
-      }
-
-      if (i == -1 &&
-          (allowEmptyMarker ||
-           lastText.indexOf(WAITING_PLAYER_MARKER_1, lastTextMarkerScanningStart) >= 0 ||
-           lastText.indexOf(WAITING_PLAYER_MARKER_2, lastTextMarkerScanningStart) >= 0) &&
-          lastText.length() > 0) {
-        i = lastText.length();
-        marker = "";
-      }
-
-      if (i != -1) {
-        result = lastText.substring(0, i);
-        lastText.delete(0, i + marker.length());
-        lastTextMarkerScanningStart = 0;
-        if (isBlank(lastText)) lastText.setLength(0);
-        setSuspended(marker.length() != 0);
-        return result;
-      }
-      else {
-        lastTextMarkerScanningStart = lastText.length();
-        result = null;
-      }
-      return result;
-    }
+    @Nullable
+    private String getNextResponse(boolean allowUnprompted) {
+      final FdbOutputTokenizer.Response response = myTokenizer.nextResponse(allowUnprompted);
+      if (response == null) return null;
 
-    private boolean isBlank(StringBuilder lastText) {
-      for (int i = 0; i < lastText.length(); ++i) {
-        if (lastText.charAt(i) != ' ') return false;
-      }
-      return true;
+      setSuspended(response.prompted);
+      return response.text;
     }
   }
 
@@ -13,6 +13,7 @@ import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.NullableComputable;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.source.tree.injected.InjectedLanguageUtil;
@@ -20,6 +21,8 @@ import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.ui.ColoredTextContainer;
 import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.util.Consumer;
+import com.intellij.xdebugger.Obsolescent;
 import com.intellij.xdebugger.XDebuggerUtil;
 import com.intellij.xdebugger.XSourcePosition;
 import com.intellij.xdebugger.evaluation.ExpressionInfo;
@@ -54,6 +57,10 @@ public class FlexStackFrame extends XStackFrame {
   @NonNls protected static final String UNKNOWN_SCOPE = "<unknown>";
   static final String CLASS_MARKER = ", class='";
   static final String CANNOT_EVALUATE_EXPRESSION = "Cannot evaluate expression: ";
+  // fdb handles several commands written at once, but a too long batch delays the first results
+  private static final int MAX_BATCH_SIZE = 50;
+
+  private final List<PendingEvaluation> myPendingEvaluations = new ArrayList<>();
 
   FlexStackFrame(final FlexDebugProcess debugProcess, final @Nullable XSourcePosition sourcePosition) {
     myDebugProcess = debugProcess;
@@ -419,6 +426,109 @@ public class FlexStackFrame extends XStackFrame {
     }
   }
 
+  /**
+   * Evaluations of object references like <code>#12345.length</code> scheduled within the delay are sent to fdb as one command.
+   * Other expressions may need to be resolved using the scope chain, so they are evaluated with {@link EvaluateCommand}.
+   */
+  void scheduleBatchedEvaluation(final String expression,
+                                 final Obsolescent node,
+                                 final XDebuggerEvaluator.XEvaluationCallback callback,
+                                 final int delay) {
+    if (!expression.startsWith("#")) {
+      myDebugProcess.addPendingCommand(new CompositeDebuggerCommand(node, new EvaluateCommand(expression, callback)), delay);
+      return;
+    }
+
+    scheduleBatchedPrint(expression, node, response -> {
+      final int i = response.indexOf(DELIM);
+      final String result = (i != -1 ? response.substring(i + DELIM.length()) : response).trim();
+      ApplicationManager.getApplication().executeOnPooledThread(
+        () -> callback.evaluated(new FlexValue(this, myDebugProcess, mySourcePosition, expression, expression, result, null,
+                                               FlexValue.ValueType.Other)));
+    }, delay);
+  }
+
+  /**
+   * Sends <code>print</code> of the object reference in the next batch, the response handler gets the whole fdb response.
+   * Nothing is sent if the node is obsolete by then.
+   */
+  void scheduleBatchedPrint(final String objectReference, final Obsolescent node, final Consumer<String> responseHandler, final int delay) {
+    synchronized (myPendingEvaluations) {
+      myPendingEvaluations.add(new PendingEvaluation(objectReference, node, responseHandler));
+      if (myPendingEvaluations.size() > 1) return; // batch is already scheduled
+    }
+    scheduleBatch(delay);
+  }
+
+  private void scheduleBatch(final int delay) {
+    myDebugProcess.addPendingCommand(() -> {
+      final List<PendingEvaluation> evaluations = new ArrayList<>();
+      synchronized (myPendingEvaluations) {
+        final List<PendingEvaluation> batch = myPendingEvaluations.subList(0, Math.min(MAX_BATCH_SIZE, myPendingEvaluations.size()));
+        evaluations.addAll(batch);
+        batch.clear();
+        if (!myPendingEvaluations.isEmpty()) scheduleBatch(0);
+      }
+
+      evaluations.removeIf(evaluation -> evaluation.myNode.isObsolete());
+      if (evaluations.isEmpty()) return null;
+
+      final BatchEvaluateCommand command = new BatchEvaluateCommand(evaluations);
+      return new CompositeDebuggerCommand(command, command);
+    }, delay);
+  }
+
+  private static class PendingEvaluation {
+    private final String myExpression;
+    private final Obsolescent myNode;
+    private final Consumer<String> myResponseHandler;
+
+    private PendingEvaluation(final String expression, final Obsolescent node, final Consumer<String> responseHandler) {
+      myExpression = expression;
+      myNode = node;
+      myResponseHandler = responseHandler;
+    }
+  }
+
+  /**
+   * Sends <code>print</code> commands for all evaluations at once; fdb answers each of them with a separate response.
+   */
+  private class BatchEvaluateCommand extends DebuggerCommand implements Obsolescent {
+    private final List<PendingEvaluation> myEvaluations;
+    private int myResponseCount;
+
+    private BatchEvaluateCommand(final List<PendingEvaluation> evaluations) {
+      super(addFrameOffset(StringUtil.join(evaluations, evaluation -> "print " + evaluation.myExpression, "\n")),
+            CommandOutputProcessingType.SPECIAL_PROCESSING);
+      myEvaluations = evaluations;
+    }
+
+    @Override
+    public boolean isObsolete() {
+      for (PendingEvaluation evaluation : myEvaluations) {
+        if (!evaluation.myNode.isObsolete()) return false;
+      }
+      return true;
+    }
+
+    @Override
+    CommandOutputProcessingMode onTextAvailable(@NonNls final String s) {
+      if (myDebugProcess.filterStdResponse(s)) return CommandOutputProcessingMode.PROCEEDING;
+
+      ++myResponseCount;
+      if (myResponseCount == 1) { // skip frame
+        return CommandOutputProcessingMode.PROCEEDING;
+      }
+
+      final PendingEvaluation evaluation = myEvaluations.get(myResponseCount - 2);
+      if (!evaluation.myNode.isObsolete()) {
+        evaluation.myResponseHandler.consume(s);
+      }
+
+      return myResponseCount == myEvaluations.size() + 1 ? CommandOutputProcessingMode.DONE : CommandOutputProcessingMode.PROCEEDING;
+    }
+  }
+
   static String validObjectId(String s) {
     // some object ids from Flash player are negative (e.g. on Linux) and can not be consumed back e.g. for tracing
     // so we transform them into unsigned ones assuming there is just sign transmition problem (see IDEA-49837)
@@ -433,6 +543,7 @@ public class FlexStackFrame extends XStackFrame {
 
     @Override
     public void evaluate(@NotNull final String expression, @NotNull final XEvaluationCallback callback, @Nullable XSourcePosition expressionPosition) {
+      myDebugProcess.dropCachedObjectMembers(); // the expression may have side effects
       final EvaluateCommand command = new EvaluateCommand(expression, callback);
       myDebugProcess.sendCommand(command);
     }
@@ -6,6 +6,7 @@ import com.intellij.lang.javascript.index.JavaScriptIndex;
 import com.intellij.lang.javascript.psi.*;
 import com.intellij.lang.javascript.psi.ecmal4.JSClass;
 import com.intellij.lang.javascript.psi.resolve.JSInheritanceUtil;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.DumbService;
@@ -27,7 +28,6 @@ import com.intellij.xdebugger.XDebuggerUtil;
 import com.intellij.xdebugger.XSourcePosition;
 import com.intellij.xdebugger.evaluation.XDebuggerEvaluator;
 import com.intellij.xdebugger.frame.*;
-import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.debugger.DebuggerSupportUtils;
@@ -211,49 +211,43 @@ class FlexValue extends XValue {
   }
 
   private void scheduleVectorPresentation(final XValueNode node, final String type) {
-    final FlexStackFrame.EvaluateCommand command =
-      myFlexStackFrame.new EvaluateCommand(myExpression + ".fixed", new XDebuggerEvaluator.XEvaluationCallback() {
-
-        @Override
-        public void evaluated(@NotNull XValue result) {
-          if (!node.isObsolete()) {
-            final String resultText = ((FlexValue)result).myResult;
-            final String prefix = ("true".equals(resultText) || "false".equals(resultText)) ? "fixed = " + resultText : "";
-            node.setPresentation(getIcon(), type, prefix, true);
-            scheduleCollectionSizePresentation(node, type, prefix);
-          }
-        }
+    myFlexStackFrame.scheduleBatchedEvaluation(getObjectReference() + "fixed", node, new XDebuggerEvaluator.XEvaluationCallback() {
 
-        @Override
-        public void errorOccurred(@NotNull String errorMessage) {
+      @Override
+      public void evaluated(@NotNull XValue result) {
+        if (!node.isObsolete()) {
+          final String resultText = ((FlexValue)result).myResult;
+          final String prefix = ("true".equals(resultText) || "false".equals(resultText)) ? "fixed = " + resultText : "";
+          node.setPresentation(getIcon(), type, prefix, true);
+          scheduleCollectionSizePresentation(node, type, prefix);
         }
-      });
+      }
 
-    myDebugProcess.addPendingCommand(new CompositeDebuggerCommand(node, command), 100);
+      @Override
+      public void errorOccurred(@NotNull String errorMessage) {
+      }
+    }, 100);
   }
 
   private void scheduleCollectionSizePresentation(final XValueNode node, final String type, final String prefix) {
-    final FlexStackFrame.EvaluateCommand command =
-      myFlexStackFrame.new EvaluateCommand(myExpression + ".length", new XDebuggerEvaluator.XEvaluationCallback() {
-
-        @Override
-        public void evaluated(@NotNull XValue result) {
-          if (!node.isObsolete()) {
-            final String resultText = ((FlexValue)result).myResult;
-            final int index = resultText.indexOf(" (0x");
-            if (index != -1) {
-              final String value = (prefix.isEmpty() ? "" : prefix + ", ") + "size = " + resultText.substring(0, index);
-              node.setPresentation(getIcon(), type, value, true);
-            }
-          }
-        }
+    myFlexStackFrame.scheduleBatchedEvaluation(getObjectReference() + "length", node, new XDebuggerEvaluator.XEvaluationCallback() {
 
-        @Override
-        public void errorOccurred(@NotNull String errorMessage) {
+      @Override
+      public void evaluated(@NotNull XValue result) {
+        if (!node.isObsolete()) {
+          final String resultText = ((FlexValue)result).myResult;
+          final int index = resultText.indexOf(" (0x");
+          if (index != -1) {
+            final String value = (prefix.isEmpty() ? "" : prefix + ", ") + "size = " + resultText.substring(0, index);
+            node.setPresentation(getIcon(), type, value, true);
+          }
         }
-      });
+      }
 
-    myDebugProcess.addPendingCommand(new CompositeDebuggerCommand(node, command), 100);
+      @Override
+      public void errorOccurred(@NotNull String errorMessage) {
+      }
+    }, 100);
   }
 
   private static void setXmlListPresentation(final XValueNode node, final String value, final FlexValue flexValue) {
@@ -381,6 +375,7 @@ class FlexValue extends XValue {
         FlexStackFrame.EvaluateCommand command = myFlexStackFrame.new EvaluateCommand(myExpression + "=" + _expression, null) {
           @Override
           protected void dispatchResult(String s) {
+            myDebugProcess.dropCachedObjectMembers();
             super.dispatchResult(s);
             callback.valueModified();
           }
@@ -407,72 +402,76 @@ class FlexValue extends XValue {
       return;
     }
 
-    final FlexStackFrame.EvaluateCommand
-      command = myFlexStackFrame.new EvaluateCommand(expression, null) {
-      @Override
-      CommandOutputProcessingMode doOnTextAvailable(@NonNls final String resultS) {
-        StringTokenizer tokenizer = new StringTokenizer(resultS, "\r\n");
-
-        // skip first token; it contains $-prefix followed by myResult: $6 = [Object 30860193, class='__AS3__.vec::Vector.<String>']
-        tokenizer.nextToken();
-
-        final LinkedHashMap<String, FlexValue> fieldNameToFlexValueMap = new LinkedHashMap<>(tokenizer.countTokens());
-
-        final NodeClassInfo nodeClassInfo =
-          DumbService.getInstance(myDebugProcess.getSession().getProject()).runReadActionInSmartMode(() -> {
-            final Project project = myDebugProcess.getSession().getProject();
-            final JSClass jsClass = mySourcePosition == null
-                                    ? null
-                                    : findJSClass(project,
-                                                  ModuleUtilCore.findModuleForFile(mySourcePosition.getFile(), project),
-                                                  typeFromFlexValueResult);
-            return jsClass == null ? null : NodeClassInfo.getNodeClassInfo(jsClass);
-          });
-
-        while (tokenizer.hasMoreElements()) {
-          final String s = tokenizer.nextToken().trim();
-          if (s.length() == 0) continue;
-          final int delimIndex = s.indexOf(FlexStackFrame.DELIM);
-          if (delimIndex == -1) {
-            FlexDebugProcess.log("Unrecognized string:" + s);
-            continue;
-          }
-          final String fieldName = s.substring(0, delimIndex);
-          final String result = s.substring(delimIndex + FlexStackFrame.DELIM.length());
-
-          if (result.startsWith("[Setter ")) {
-            // such values do not give any useful information:
-            // [Setter 62, name='Child@3d613bb::staticSetter']
-            // [Setter 78]
-            continue;
-          }
+    final String cachedMembers = myDebugProcess.getCachedObjectMembers(expression);
+    if (cachedMembers != null) {
+      ApplicationManager.getApplication().executeOnPooledThread(() -> addMembersAsChildren(node, cachedMembers, typeFromFlexValueResult));
+      return;
+    }
 
-          String evaluatedPath = myExpression;
+    // nodes expanded together, e.g. when the tree state is restored after a step, are listed with one fdb command
+    myFlexStackFrame.scheduleBatchedPrint(expression, node, resultS -> {
+      myDebugProcess.cacheObjectMembers(expression, resultS);
+      addMembersAsChildren(node, resultS, typeFromFlexValueResult);
+    }, 0);
+  }
 
-          if (fieldName.length() > 0 && Character.isDigit(fieldName.charAt(0))) {
-            evaluatedPath += "[\"" + fieldName + "\"]";
-          }
-          else {
-            evaluatedPath += "." + fieldName;
-          }
-          // either parameter of static function from scopechain or a field. Static functions from scopechain look like following:
-          // // [Object 52571545, class='Main$/staticFunction']
-          final ValueType valueType =
-            typeFromFlexValueResult != null && typeFromFlexValueResult.indexOf('/') > -1 ? ValueType.Parameter : ValueType.Field;
-          final FlexValue flexValue =
-            new FlexValue(myFlexStackFrame, myDebugProcess, mySourcePosition, fieldName, evaluatedPath, result, FlexValue.this.myResult,
-                          valueType);
-
-          addValueCheckingDuplicates(flexValue, fieldNameToFlexValueMap);
-        }
+  private void addMembersAsChildren(final XCompositeNode node, final String resultS, final String typeFromFlexValueResult) {
+    StringTokenizer tokenizer = new StringTokenizer(resultS, "\r\n");
+
+    // skip first token; it contains $-prefix followed by myResult: $6 = [Object 30860193, class='__AS3__.vec::Vector.<String>']
+    tokenizer.nextToken();
+
+    final LinkedHashMap<String, FlexValue> fieldNameToFlexValueMap = new LinkedHashMap<>(tokenizer.countTokens());
 
-        addChildren(node, fieldNameToFlexValueMap, nodeClassInfo);
+    final NodeClassInfo nodeClassInfo =
+      DumbService.getInstance(myDebugProcess.getSession().getProject()).runReadActionInSmartMode(() -> {
+        final Project project = myDebugProcess.getSession().getProject();
+        final JSClass jsClass = mySourcePosition == null
+                                ? null
+                                : findJSClass(project,
+                                              ModuleUtilCore.findModuleForFile(mySourcePosition.getFile(), project),
+                                              typeFromFlexValueResult);
+        return jsClass == null ? null : NodeClassInfo.getNodeClassInfo(jsClass);
+      });
 
-        return CommandOutputProcessingMode.DONE;
+    while (tokenizer.hasMoreElements()) {
+      final String s = tokenizer.nextToken().trim();
+      if (s.length() == 0) continue;
+      final int delimIndex = s.indexOf(FlexStackFrame.DELIM);
+      if (delimIndex == -1) {
+        FlexDebugProcess.log("Unrecognized string:" + s);
+        continue;
+      }
+      final String fieldName = s.substring(0, delimIndex);
+      final String result = s.substring(delimIndex + FlexStackFrame.DELIM.length());
+
+      if (result.startsWith("[Setter ")) {
+        // such values do not give any useful information:
+        // [Setter 62, name='Child@3d613bb::staticSetter']
+        // [Setter 78]
+        continue;
       }
-    };
 
-    myDebugProcess.sendCommand(command);
+      String evaluatedPath = myExpression;
+
+      if (fieldName.length() > 0 && Character.isDigit(fieldName.charAt(0))) {
+        evaluatedPath += "[\"" + fieldName + "\"]";
+      }
+      else {
+        evaluatedPath += "." + fieldName;
+      }
+      // either parameter of static function from scopechain or a field. Static functions from scopechain look like following:
+      // // [Object 52571545, class='Main$/staticFunction']
+      final ValueType valueType =
+        typeFromFlexValueResult != null && typeFromFlexValueResult.indexOf('/') > -1 ? ValueType.Parameter : ValueType.Field;
+      final FlexValue flexValue =
+        new FlexValue(myFlexStackFrame, myDebugProcess, mySourcePosition, fieldName, evaluatedPath, result, myResult,
+                      valueType);
+
+      addValueCheckingDuplicates(flexValue, fieldNameToFlexValueMap);
+    }
+
+    addChildren(node, fieldNameToFlexValueMap, nodeClassInfo);
   }
 
   public boolean canNavigateToTypeSource() {
@@ -736,6 +735,15 @@ class FlexValue extends XValue {
     }
   }
 
+  private String getObjectReference() {
+    try {
+      return referenceObjectBase(myResult.indexOf(OBJECT_MARKER), OBJECT_MARKER);
+    }
+    catch (StringIndexOutOfBoundsException e) {
+      return myExpression + ".";
+    }
+  }
+
   private String referenceObjectBase(int i, String marker) {
     // expression may have incorrect syntax like x.dict1.-1. (see examples in http://youtrack.jetbrains.net/issue/IDEA-56653)
     // so it is more reliable to use objectId
@@ -26,6 +26,10 @@ class AS3InterfaceDumper extends AbstractDumpProcessor {
 
   public void dumpStat(@NotNull final String stat) {}
 
+  public boolean needsMethodBodies() {
+    return false;
+  }
+
   public void dumpToplevelAnonymousMethod(final @NotNull Abc abc, final @NotNull MethodInfo m) {}
 
   public void dumpTopLevelTraits(final Abc abc, final @NotNull Traits t, final String indent) {
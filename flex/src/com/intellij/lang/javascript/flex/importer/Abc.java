@@ -289,14 +289,26 @@ class Abc {
   int totalSize;
   final int opSizes[] = new int[256];
 
+  // messages reported while parsing on a worker thread, replayed to the processor when the abc is dumped
+  private final List<Runnable> deferredMessages;
+
   public Abc(final @NotNull ByteBuffer _data, @NotNull FlexByteCodeInformationProcessor _processor) {
+    this(_data, _processor, false);
+  }
+
+  /**
+   * @param deferMessages if {@code true}, stats and errors found while parsing are reported to the processor from {@link #dump(String)},
+   *                      so that the abc may be parsed on another thread than the one dumping it
+   */
+  Abc(final @NotNull ByteBuffer _data, @NotNull FlexByteCodeInformationProcessor _processor, boolean deferMessages) {
     data = _data;
     processor = _processor;
+    deferredMessages = deferMessages ? new ArrayList<>() : null;
 
     data.setPosition(0);
     magic = data.readInt();
 
-    _processor.dumpStat("magic " + Integer.toString(magic, 16) + "\n");
+    dumpStat("magic " + Integer.toString(magic, 16) + "\n");
 
     if (magic != (46 << 16 | 14) && magic != (46 << 16 | 15) && magic != (46 << 16 | 16)) {
       throw new Error("not an abc file.  magic=" + Integer.toString(magic, 16));
@@ -304,7 +316,6 @@ class Abc {
 
     parseCpool();
 
-    defaults[CONSTANT_Utf8] = strings;
     defaults[CONSTANT_Int] = ints;
     defaults[CONSTANT_UInt] = uints;
     defaults[CONSTANT_Double] = doubles;
@@ -325,7 +336,26 @@ class Abc {
     parseInstanceInfos();
     parseClassInfos();
     parseScriptInfos();
-    parseMethodBodies();
+    // method bodies are the last part of abc and contain no declarations
+    if (processor.needsMethodBodies()) parseMethodBodies();
+  }
+
+  private void dumpStat(@NotNull @NonNls final String stat) {
+    if (deferredMessages != null) {
+      deferredMessages.add(() -> processor.dumpStat(stat));
+    }
+    else {
+      processor.dumpStat(stat);
+    }
+  }
+
+  private void hasError(@NotNull final String error) {
+    if (deferredMessages != null) {
+      deferredMessages.add(() -> processor.hasError(error));
+    }
+    else {
+      processor.hasError(error);
+    }
   }
 
   private static Object[] buildSparseArray(int index, @NonNls String s1) {
@@ -335,6 +365,13 @@ class Abc {
   }
 
   public void dump(String indent) {
+    if (deferredMessages != null) {
+      for (Runnable message : deferredMessages) {
+        message.run();
+      }
+      deferredMessages.clear();
+    }
+
     for (Traits t : scripts) {
       processor.dumpTopLevelTraits(this, t, indent);
     }
@@ -367,7 +404,10 @@ class Abc {
   Integer[] ints;
   Integer[] uints;
   Double[] doubles;
-  @NonNls String[] strings;
+  // use getString(), entries of the array are filled lazily
+  private @NonNls String[] strings;
+  private int[] stringOffsets;
+  private int[] stringLengths;
   @NonNls String[] namespaces;
   @NonNls String[][] nssets;
   Multiname[] names;
@@ -386,6 +426,23 @@ class Abc {
     return data.readU32();
   }
 
+  @NonNls
+  String getString(int index) {
+    String s = strings[index];
+    if (s == null) {
+      s = strings[index] = data.getUTFBytes(stringOffsets[index], stringLengths[index]);
+    }
+    return s;
+  }
+
+  private Object[] getDefaults(int kind) {
+    return kind == CONSTANT_Utf8 ? strings : defaults[kind];
+  }
+
+  private Object getDefaultValue(int kind, int index) {
+    return kind == CONSTANT_Utf8 ? getString(index) : defaults[kind][index];
+  }
+
   void parseCpool() {
     int i, j;
     int n;
@@ -415,18 +472,23 @@ class Abc {
       doubles[i] = data.readDouble();
     }
 
-    reportAboutPercentage("Cpool numbers size ", data, start, processor);
+    reportAboutPercentage("Cpool numbers size ", start);
     start = data.getPosition();
 
-    // strings
+    // strings, decoded on first access
     n = readU32();
     strings = new String[n];
+    stringOffsets = new int[n];
+    stringLengths = new int[n];
     strings[0] = "";
     for (i = 1; i < n; i++) {
-      strings[i] = data.readUTFBytes(readU32());
+      final int length = readU32();
+      stringOffsets[i] = data.getPosition();
+      stringLengths[i] = length;
+      data.incPosition(length);
     }
 
-    reportAboutPercentage("Cpool strings count " + n + " size ", data, start, processor);
+    reportAboutPercentage("Cpool strings count " + n + " size ", start);
     start = data.getPosition();
 
     // namespaces
@@ -441,7 +503,7 @@ class Abc {
         case CONSTANT_ProtectedNs:
         case CONSTANT_StaticProtectedNs:
         case CONSTANT_StaticProtectedNs2: {
-          namespaces[i] = strings[readU32()];
+          namespaces[i] = getString(readU32());
           // todo mark kind of namespace.
           break;
         }
@@ -452,7 +514,7 @@ class Abc {
       }
     }
 
-    reportAboutPercentage("Cpool namespaces count " + n + " size ", data, start, processor);
+    reportAboutPercentage("Cpool namespaces count " + n + " size ", start);
     start = data.getPosition();
 
     // namespace sets
@@ -466,7 +528,7 @@ class Abc {
       }
     }
 
-    reportAboutPercentage("Cpool nssets count " + n + " size ", data, start, processor);
+    reportAboutPercentage("Cpool nssets count " + n + " size ", start);
     start = data.getPosition();
 
     // multinames
@@ -487,12 +549,12 @@ class Abc {
       switch (data.readByte()) {
         case CONSTANT_Qname:
         case CONSTANT_QnameA:
-          names[i] = new Multiname(new String[]{namespaces[readU32()]}, strings[readU32()]);
+          names[i] = new Multiname(new String[]{namespaces[readU32()]}, getString(readU32()));
           break;
 
         case CONSTANT_RTQname:
         case CONSTANT_RTQnameA:
-          names[i] = new Multiname(new String[]{strings[readU32()]}, null);
+          names[i] = new Multiname(new String[]{getString(readU32())}, null);
           break;
 
         case CONSTANT_RTQnameL:
@@ -507,7 +569,7 @@ class Abc {
 
         case CONSTANT_Multiname:
         case CONSTANT_MultinameA:
-          String name = strings[readU32()];
+          String name = getString(readU32());
           names[i] = new Multiname(nssets[readU32()], name);
           break;
 
@@ -587,7 +649,7 @@ class Abc {
       }
     } while (hasSomething && doneSomething);
 
-    reportAboutPercentage("Cpool names count " + n + " size ", data, start, processor);
+    reportAboutPercentage("Cpool names count " + n + " size ", start);
     start = data.getPosition();
 
     namespaces[0] = PUBLIC_NS;
@@ -611,7 +673,7 @@ class Abc {
         m.paramTypes[j] = names[readU32()];
         if (m.paramTypes[j] == null) m.paramTypes[j] = OpaqueAssetsType;
       }
-      m.debugName = strings[readU32()];
+      m.debugName = getString(readU32());
       m.flags = data.readByte();
 
       if ((m.flags & HAS_OPTIONAL) != 0) {
@@ -642,11 +704,11 @@ class Abc {
             m.optionalValues[k] = new Multiname(null, value);
           }
           else {
-            if (defaults[kind] == null) {
-              processor.hasError("ERROR kind=" + kind + " method_id " + i + "\n");
+            if (getDefaults(kind) == null) {
+              hasError("ERROR kind=" + kind + " method_id " + i + "\n");
             }
             else {
-              m.optionalValues[k] = new Multiname(null, defaults[kind][index].toString());
+              m.optionalValues[k] = new Multiname(null, getDefaultValue(kind, index).toString());
             }
           }
         }
@@ -657,7 +719,7 @@ class Abc {
           Set<String> usedNames = new THashSet<>(m.paramNames.length);
           for (int k = 0; k < param_count; ++k) {
             final int index = readU32();
-            final String name = strings[index];
+            final String name = getString(index);
             m.paramNames[k] = StringUtil.isJavaIdentifier(name) && usedNames.add(name) ? name : "_" + k;
           }
         } else {
@@ -682,7 +744,7 @@ class Abc {
       }
     }
 
-    reportAboutPercentage("MethodInfo count " + method_count + " size ", data, start, processor);
+    reportAboutPercentage("MethodInfo count " + method_count + " size ", start);
   }
 
   void parseMetadataInfos() {
@@ -691,15 +753,15 @@ class Abc {
     for (int i = 0; i < count; i++) {
       // MetadataInfo
       MetaData m = metadata[i] = new MetaData();
-      m.name = strings[readU32()];
+      m.name = getString(readU32());
       int values_count = readU32();
       String names[] = new String[values_count];
 
       for (int q = 0; q < values_count; ++q) {
-        names[q] = strings[readU32()]; // name
+        names[q] = getString(readU32()); // name
       }
       for (int q = 0; q < values_count; ++q) {
-        m.put(names[q], strings[readU32()]); // value
+        m.put(names[q], getString(readU32())); // value
       }
     }
   }
@@ -729,7 +791,7 @@ class Abc {
       parseTraits(t);
     }
 
-    reportAboutPercentage("InstanceInfo size ", data, start, processor);
+    reportAboutPercentage("InstanceInfo size ", start);
   }
 
   static final TraitType[] traitTypes = TraitType.values();
@@ -743,7 +805,7 @@ class Abc {
       TraitType kind;
 
       if (traitTypeTag >= traitTypes.length) {
-        processor.hasError("error trait kind " + traitTypeTag + "\n");
+        hasError("error trait kind " + traitTypeTag + "\n");
         kind = null;
       }
       else {
@@ -767,7 +829,7 @@ class Abc {
               slot.type = OpaqueAssetsType;
             }
             int index = readU32();
-            if (index > 0) slot.value = defaults[data.readByte()][index];
+            if (index > 0) slot.value = getDefaultValue(data.readByte(), index);
           }
           else // (kind == Class)
           {
@@ -830,7 +892,7 @@ class Abc {
       t.init.kind = TraitType.Method;
       parseTraits(t);
     }
-    reportAboutPercentage("ClassInfo size ", data, start, processor);
+    reportAboutPercentage("ClassInfo size ", start);
   }
 
   void parseScriptInfos() {
@@ -850,7 +912,7 @@ class Abc {
       parseTraits(t);
     }
 
-    reportAboutPercentage("ScriptInfo size ", data, start, processor);
+    reportAboutPercentage("ScriptInfo size ", start);
   }
 
   void parseMethodBodies() {
@@ -883,11 +945,11 @@ class Abc {
       parseTraits(m.activation = new Traits());
     }
 
-    reportAboutPercentage("MethodBodies size ", data, start, processor);
+    reportAboutPercentage("MethodBodies size ", start);
   }
 
-  private static void reportAboutPercentage(String s, ByteBuffer data, int start, @NotNull FlexByteCodeInformationProcessor processor) {
-    processor.dumpStat(s + (data.getPosition() - start) + " " + (int)100f * (data.getPosition() - start) / data.bytesSize() + " %\n");
+  private void reportAboutPercentage(String s, int start) {
+    dumpStat(s + (data.getPosition() - start) + " " + (int)100f * (data.getPosition() - start) / data.bytesSize() + " %\n");
   }
 
 }
@@ -19,6 +19,10 @@ class AbcDumper extends AbstractDumpProcessor {
     sb.append(stat);
   }
 
+  public boolean needsMethodBodies() {
+    return true;
+  }
+
   public void hasError(@NotNull final String error) {
     sb.append(error);
   }
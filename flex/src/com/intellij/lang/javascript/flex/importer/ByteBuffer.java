@@ -1,12 +1,11 @@
 package com.intellij.lang.javascript.flex.importer;
 
+import com.intellij.util.ArrayUtil;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.InputStream;
 import java.io.IOException;
-import java.io.ByteArrayInputStream;
-import java.io.UnsupportedEncodingException;
-import java.util.zip.InflaterInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author Maxim.Mossienko
@@ -14,30 +13,43 @@ import java.util.zip.InflaterInputStream;
 *         Time: 7:02:53 PM
 */
 class ByteBuffer {
-  private byte[] bytes;
+  private byte[] bytes = ArrayUtil.EMPTY_BYTE_ARRAY;
+  // this buffer is the [offset, offset + length) window of bytes, slices share the array of their parent
+  private int offset;
+  private int length;
   private int position;
   private boolean littleEndian;
 
   void read(@NotNull InputStream inputStream) throws IOException {
     try {
       bytes = readStream(inputStream);
+      offset = 0;
+      length = bytes.length;
     }
     finally {
       if (inputStream != null) inputStream.close();
     }
   }
 
+  void wrap(@NotNull byte[] bytes) {
+    this.bytes = bytes;
+    offset = 0;
+    length = bytes.length;
+    position = 0;
+  }
+
   void setLittleEndian() {
     littleEndian = true;
   }
 
   int readInt() {
+    final int p = offset + position;
     int result;
     if (littleEndian) {
-      result = (((bytes[position + 3] & 0xFF) << 8 | (bytes[position + 2] & 0xFF)) << 16) + ((bytes[position + 1] & 0xFF) << 8) | (bytes[position] & 0xFF);
+      result = (((bytes[p + 3] & 0xFF) << 8 | (bytes[p + 2] & 0xFF)) << 16) + ((bytes[p + 1] & 0xFF) << 8) | (bytes[p] & 0xFF);
     }
     else {
-      result = (((bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF)) << 16) + ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+      result = (((bytes[p] & 0xFF) << 8 | (bytes[p + 1] & 0xFF)) << 16) + ((bytes[p + 2] & 0xFF) << 8) | (bytes[p + 3] & 0xFF);
     }
     position += 4;
     return result;
@@ -52,20 +64,13 @@ class ByteBuffer {
   }
 
   public int bytesSize() {
-    return bytes.length;
-  }
-
-  public void uncompress() throws IOException {
-    final InflaterInputStream zipInputStream = new InflaterInputStream(new ByteArrayInputStream(bytes));
-
-    bytes = readStream(zipInputStream);
-
-    zipInputStream.close();
+    return length;
   }
 
   private static byte[] readStream(final InputStream zipInputStream) throws IOException {
     final byte[] buf = new byte[8192];
-    byte[] result = new byte[8192];
+    // in-memory and file streams know their size, so the result array is usually allocated once
+    byte[] result = new byte[Math.max(8192, zipInputStream.available() + 1)];
     int total = 0;
 
     while (true) {
@@ -87,47 +92,51 @@ class ByteBuffer {
   }
 
   public int readUnsignedByte() {
-    return bytes[position++] & 0xFF;
+    return bytes[offset + position++] & 0xFF;
   }
 
   public int readByte() {
-    return bytes[position++];
+    return bytes[offset + position++];
   }
 
   public int readUnsignedShort() {
+    final int p = offset + position;
     int result;
     if (littleEndian) {
-      result = (bytes[position + 1] & 0xFF) << 8 | (bytes[position] & 0xFF);
+      result = (bytes[p + 1] & 0xFF) << 8 | (bytes[p] & 0xFF);
     }
     else {
-      result = (bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF);
+      result = (bytes[p] & 0xFF) << 8 | (bytes[p + 1] & 0xFF);
     }
     position += 2;
     return result;
   }
 
+  /**
+   * Makes data2 a view of the next length bytes of this buffer, the bytes are not copied.
+   */
   public void readBytes(ByteBuffer data2, int length) {
-    data2.bytes = new byte[length];
-    System.arraycopy(bytes, position, data2.bytes, 0, length);
+    if (position + length > this.length) throw new ArrayIndexOutOfBoundsException(position + length);
+    data2.bytes = bytes;
+    data2.offset = offset + position;
+    data2.length = length;
+    data2.position = 0;
     position += length;
   }
 
   public boolean eof() {
-    return position >= bytes.length;
+    return position >= length;
   }
 
   public String readUTFBytes(int i) {
-    try {
-      final byte[] buf = new byte[i];
-      while (i > 0) {
-        buf[buf.length - i] = (byte)readByte();
-        --i;
-      }
-      return new String(buf, "utf-8");
-    }
-    catch (UnsupportedEncodingException e) {
-      throw new RuntimeException(e);
-    }
+    final String result = getUTFBytes(position, i);
+    position += i;
+    return result;
+  }
+
+  public String getUTFBytes(int position, int length) {
+    if (position + length > this.length) throw new ArrayIndexOutOfBoundsException(position + length);
+    return new String(bytes, offset + position, length, StandardCharsets.UTF_8);
   }
 
   public double readDouble() {
@@ -149,7 +158,7 @@ class ByteBuffer {
   }
 
   public byte getByte(int i) {
-    return bytes[i];
+    return bytes[offset + i];
   }
 
   public int getPosition() {
@@ -11,6 +11,12 @@ import org.jetbrains.annotations.Nullable;
 */
 interface FlexByteCodeInformationProcessor {
   void dumpStat(@NotNull @NonNls String stat);
+
+  /**
+   * @return {@code false} if only declarations are processed, so method bodies may be skipped and abc may be parsed on worker threads
+   */
+  boolean needsMethodBodies();
+
   void hasError(@NotNull String error);
   void append(@NotNull @NonNls String str);
 
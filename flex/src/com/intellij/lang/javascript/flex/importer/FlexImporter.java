@@ -6,6 +6,7 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Produced from abcdump.as
@@ -26,7 +27,7 @@ public class FlexImporter {
 
       for (String file : args) {
         try {
-          String result = dumpContentsFromStream(new BufferedInputStream(new FileInputStream(file)), true);
+          String result = dumpContentsFromStream(new BufferedInputStream(new FileInputStream(file)), new File(file).length(), true);
 
           saveStringAsFile(result, file + ".il");
         }
@@ -42,9 +43,12 @@ public class FlexImporter {
     FileUtil.writeToFile(new File(fileName), result);
   }
 
-  public static String dumpContentsFromStream(final InputStream in, boolean _dumpCode) throws IOException {
+  /**
+   * @param length length of the input, reported in the statistics of a compressed swf
+   */
+  public static String dumpContentsFromStream(final InputStream in, final long length, boolean _dumpCode) throws IOException {
     final AbstractDumpProcessor abcDumper = new AbcDumper(_dumpCode);
-    processFlexByteCode(in, abcDumper);
+    processFlexByteCode(in, length, abcDumper);
     return abcDumper.getResult();
   }
 
@@ -52,7 +56,7 @@ public class FlexImporter {
   public static String buildInterfaceFromStream(final InputStream in) {
     try {
       final AbstractDumpProcessor abcDumper = new AS3InterfaceDumper();
-      processFlexByteCode(in, abcDumper);
+      processFlexByteCode(in, -1, abcDumper);
       final String s = abcDumper.getResult();
       //saveStringAsFile(s, File.createTempFile("fleximport", ".as").getPath());
       return s;
@@ -67,38 +71,65 @@ public class FlexImporter {
 
   @NonNls
   public static void buildStubsInterfaceFromStream(final InputStream in, final StubElement parent) throws Exception {
-    processFlexByteCode(in, new AS3InterfaceStubDumper(parent));
+    processFlexByteCode(in, -1, new AS3InterfaceStubDumper(parent));
   }
 
-  private static void processFlexByteCode(@NotNull final InputStream in, @NotNull FlexByteCodeInformationProcessor processor) throws IOException {
-    ByteBuffer data = new ByteBuffer();
-    data.read(in);
-    data.setLittleEndian();
-    if (data.bytesSize() == 0) return;
-    int version = data.readUnsignedInt();
+  /**
+   * @param length length of the input, -1 if unknown, interface dumpers don't dump statistics
+   */
+  private static void processFlexByteCode(@NotNull final InputStream in, final long length, @NotNull FlexByteCodeInformationProcessor processor)
+    throws IOException {
+    final InputStream input = in.markSupported() ? in : new BufferedInputStream(in);
+    try {
+      final byte[] header = new byte[8];
+      input.mark(header.length);
+      final int headerLength = readHeader(input, header);
+      if (headerLength == 0) return;
+      int version = headerLength >= 4 ? readInt(header, 0) : 0;
 
-    if (version == ABC_VER || version == ABC_VER2 || version == ABC_VER3) {
-      Abc abc = new Abc(data, processor);
-      abc.dump("");
-    }
-    else if ((version & SWF_MAGIC) == SWF_MAGIC) {
-      final int delta = 8;
-      data.setPosition(delta);
-      ByteBuffer udata = new ByteBuffer();
-      udata.setLittleEndian();
-      data.readBytes(udata, data.bytesSize() - delta);
-      int csize = udata.bytesSize();
-      udata.uncompress();
-      processor.dumpStat("decompressed swf " + csize + " -> " + udata.bytesSize() + "\n");
-      udata.setPosition(0);
-      new Swf(udata, processor);
+      if (version == ABC_VER || version == ABC_VER2 || version == ABC_VER3) {
+        input.reset();
+        ByteBuffer data = new ByteBuffer();
+        data.read(input);
+        data.setLittleEndian();
+        Abc abc = new Abc(data, processor);
+        abc.dump("");
+      }
+      else if ((version & SWF_MAGIC) == SWF_MAGIC) {
+        // only the bytes of DoABC tags are kept in memory, the rest of the swf is inflated into the stream buffer and skipped
+        final int size = readInt(header, 4) - header.length;
+        processor.dumpStat("decompressed swf " + (length - header.length) + " -> " + size + "\n");
+        final InputStream inflaterInput = new InflaterInputStream(input);
+        try {
+          new Swf(new BufferedInputStream(inflaterInput), size, processor);
+        }
+        finally {
+          inflaterInput.close();
+        }
+      }
+      else if ((version & SWF_MAGIC2) == SWF_MAGIC2) {
+        new Swf(input, readInt(header, 4) - header.length, processor);
+      }
+      else {
+        processor.hasError("unknown format " + version + ", swf version: " + (version >> 24) + "\n");
+      }
     }
-    else if ((version & SWF_MAGIC2) == SWF_MAGIC2) {
-      data.setPosition(8); // skip header and length
-      new Swf(data, processor);
+    finally {
+      input.close();
     }
-    else {
-      processor.hasError("unknown format " + version + ", swf version: " + (version >> 24) + "\n");
+  }
+
+  private static int readHeader(@NotNull final InputStream input, @NotNull final byte[] header) throws IOException {
+    int read = 0;
+    while (read < header.length) {
+      final int n = input.read(header, read, header.length - read);
+      if (n == -1) break;
+      read += n;
     }
+    return read;
+  }
+
+  private static int readInt(@NotNull final byte[] bytes, final int offset) {
+    return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
   }
 }
@@ -71,7 +71,7 @@ class MethodInfo extends MemberInfo {
       switch (opcode) {
         case OP_debugfile:
         case OP_pushstring:
-          processor.append('"' + StringUtil.replace(StringUtil.replace(abc.strings[readU32()], "\n", "\\n"), "\t", "\\t") + '"');
+          processor.append('"' + StringUtil.replace(StringUtil.replace(abc.getString(readU32()), "\n", "\\n"), "\t", "\\t") + '"');
           break;
         case OP_pushnamespace:
           processor.append(abc.namespaces[readU32()]);
@@ -2,6 +2,14 @@ package com.intellij.lang.javascript.flex.importer;
 
 import org.jetbrains.annotations.NonNls;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 /**
  * @author Maxim.Mossienko
  *         Date: Oct 20, 2008
@@ -22,7 +30,8 @@ class Swf {
   private int bitPos;
   private int bitBuf;
 
-  private final ByteBuffer data;
+  private final InputStream data;
+  private final int size;
 
   private static final int stagDoABC = 72;   // embedded .abc (AVM+) bytecode
   private static final int stagDoABC2 = 82;   // revised ABC version with a name
@@ -148,13 +157,20 @@ class Swf {
   };
 
 
-  public Swf(final ByteBuffer _data, final FlexByteCodeInformationProcessor _processor) {
+  /**
+   * Decodes the tags of a swf file streaming them from data, which must be positioned right after the 8 bytes header.
+   * Only DoABC tags are loaded into memory, other tags are skipped without being buffered.
+   *
+   * @param size swf file length without the header as written in the header
+   */
+  public Swf(final InputStream _data, final int _size, final FlexByteCodeInformationProcessor _processor) throws IOException {
     data = _data;
+    size = Math.max(_size, 1);
     processor = _processor;
 
     final Rect rect = decodeRect();
-    final int rate = data.readUnsignedByte() << 8 | data.readUnsignedByte();
-    final int count = data.readUnsignedShort();
+    final int rate = readUnsignedByte() << 8 | readUnsignedByte();
+    final int count = readUnsignedShort();
 
     processor.dumpStat("size " + rect + "\n");
     processor.dumpStat("frame rate " + rate + "\n");
@@ -163,56 +179,112 @@ class Swf {
     decodeTags();
   }
 
-  private void decodeTags() {
+  private void decodeTags() throws IOException {
+    // declarations-only processors get DoABC tags parsed concurrently, then dumped in tag order as if parsed one by one
+    final boolean parallel = !processor.needsMethodBodies() && ForkJoinPool.getCommonPoolParallelism() > 1;
+    final List<ForkJoinTask<Abc>> parsedAbcs = parallel ? new ArrayList<>() : null;
     int type, h, length;
 
-    while (data.getPosition() < data.bytesSize()) {
-      type = (h = data.readUnsignedShort()) >> 6;
+    while (true) {
+      final int low = data.read();
+      if (low == -1) break;
+
+      type = (h = low | readUnsignedByte() << 8) >> 6;
 
-      if (((length = h & 0x3F) == 0x3F)) length = data.readInt();
+      if (((length = h & 0x3F) == 0x3F)) length = readInt();
 
       processor.dumpStat(
-        (type < tagNames.length ? tagNames[type] : "undefined") + " " + length + "b " + ((int)100f * length / data.bytesSize()) + "%\n");
+        (type < tagNames.length ? tagNames[type] : "undefined") + " " + length + "b " + ((int)100f * length / size) + "%\n");
+
+      if (type == 0) break;
 
       switch (type) {
-        case 0:
-          return;
         case stagDoABC2:
-          int pos1 = data.getPosition();
-          data.readInt();
+          readInt();
           final String abcName = readString();
           processor.dumpStat("\nabc name " + abcName + "\n");
-          length -= (data.getPosition() - pos1);
+          length -= 4 + abcName.length() + 1;
           // fall through
         case stagDoABC:
-          ByteBuffer data2 = new ByteBuffer();
+          final ByteBuffer data2 = new ByteBuffer();
           data2.setLittleEndian();
-          data.readBytes(data2, length);
-          new Abc(data2, processor).dump(processor.getAbcInSwfIndent());
-          processor.append("\n");
+          data2.wrap(readFully(length));
+          if (parsedAbcs != null) {
+            parsedAbcs.add(ForkJoinPool.commonPool().submit(() -> new Abc(data2, processor, true)));
+          }
+          else {
+            dumpAbc(new Abc(data2, processor));
+          }
           break;
         default:
-          data.incPosition(length);
+          skipFully(length);
+      }
+    }
+
+    if (parsedAbcs != null) {
+      for (ForkJoinTask<Abc> abc : parsedAbcs) {
+        dumpAbc(abc.join());
       }
     }
   }
 
-  private String readString() {
-    String s = "";
+  private void dumpAbc(final Abc abc) {
+    abc.dump(processor.getAbcInSwfIndent());
+    processor.append("\n");
+  }
+
+  private int readUnsignedByte() throws IOException {
+    final int b = data.read();
+    if (b == -1) throw new EOFException();
+    return b;
+  }
+
+  private int readUnsignedShort() throws IOException {
+    return readUnsignedByte() | readUnsignedByte() << 8;
+  }
+
+  private int readInt() throws IOException {
+    return readUnsignedShort() | readUnsignedShort() << 16;
+  }
+
+  private byte[] readFully(final int length) throws IOException {
+    final byte[] bytes = new byte[length];
+    int read = 0;
+    while (read < bytes.length) {
+      final int n = data.read(bytes, read, bytes.length - read);
+      if (n == -1) throw new EOFException();
+      read += n;
+    }
+    return bytes;
+  }
+
+  private void skipFully(int length) throws IOException {
+    while (length > 0) {
+      final long skipped = data.skip(length);
+      if (skipped <= 0) {
+        readUnsignedByte();
+        --length;
+      }
+      else {
+        length -= skipped;
+      }
+    }
+  }
+
+  private String readString() throws IOException {
+    final StringBuilder s = new StringBuilder();
     int c;
 
-    while ((c = data.readUnsignedByte()) != 0) s += (char)c;
+    while ((c = readUnsignedByte()) != 0) s.append((char)c);
 
-    return s;
+    return s.toString();
   }
 
   private void syncBits() {
     bitPos = 0;
   }
 
-  private Rect decodeRect()
-
-  {
+  private Rect decodeRect() throws IOException {
     syncBits();
 
     Rect rect = new Rect();
@@ -226,7 +298,7 @@ class Swf {
     return rect;
   }
 
-  int readSBits(int numBits) {
+  int readSBits(int numBits) throws IOException {
     if (numBits > 32) throw new Error("Number of bits > 32");
 
     int num = readUBits(numBits);
@@ -236,7 +308,7 @@ class Swf {
     return num;
   }
 
-  int readUBits(int numBits) {
+  int readUBits(int numBits) throws IOException {
     if (numBits == 0) return 0;
 
     int bitsLeft = numBits;
@@ -244,7 +316,7 @@ class Swf {
 
     if (bitPos == 0) //no value in the buffer - read a byte
     {
-      bitBuf = data.readUnsignedByte();
+      bitBuf = readUnsignedByte();
       bitPos = 8;
     }
 
@@ -256,7 +328,7 @@ class Swf {
         bitsLeft -= bitPos;
 
         // Get the next byte from the input stream
-        bitBuf = data.readUnsignedByte();
+        bitBuf = readUnsignedByte();
         bitPos = 8;
       }
       else {
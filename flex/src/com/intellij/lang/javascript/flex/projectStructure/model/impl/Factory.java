@@ -1,6 +1,8 @@
 package com.intellij.lang.javascript.flex.projectStructure.model.impl;
 
 import com.intellij.lang.javascript.flex.projectStructure.model.*;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.util.xmlb.XmlSerializer;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -28,6 +30,15 @@ public class Factory {
     return ((FlexBuildConfigurationImpl)bc).getCopy();
   }
 
+  /**
+   * @return text that is the same for BCs that are {@link FlexBuildConfiguration#isEqual(FlexBuildConfiguration) equal},
+   * unlike BC instances it can be kept between IDE sessions
+   */
+  public static String getSerializedState(@NotNull FlexBuildConfiguration bc) {
+    final FlexBuildConfigurationImpl impl = (FlexBuildConfigurationImpl)bc;
+    return JDOMUtil.writeElement(XmlSerializer.serialize(impl.getState(null)), "\n") + "\ntemp=" + impl.isTempBCForCompilation();
+  }
+
   public static ModifiableFlexBuildConfiguration getTemporaryCopyForCompilation(@NotNull FlexBuildConfiguration bc) {
     final FlexBuildConfigurationImpl copy = ((FlexBuildConfigurationImpl)bc).getCopy();
     copy.setTempBCForCompilation(true);
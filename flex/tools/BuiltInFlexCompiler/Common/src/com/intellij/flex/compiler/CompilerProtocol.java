@@ -0,0 +1,79 @@
+package com.intellij.flex.compiler;
+
+import java.io.*;
+
+/**
+ * Messages sent by the compiler shell to the IDE. Right after connecting the shell writes {@link #PROTOCOL_VERSION_PREFIX} followed by
+ * {@link #PROTOCOL_VERSION} and a line break with <code>writeUTF()</code>, all further messages are frames: an int length followed by
+ * that many bytes: frame type, int command id and type specific fields. Strings are written as an int byte count followed by UTF-8 bytes.
+ * <p/>
+ * Commands are still sent to the shell as "N:command\n" strings with <code>writeUTF()</code>.
+ * <p/>
+ * Keep in sync with com.intellij.flex.build.BuiltInCompilerProtocol in flex-shared!
+ */
+public class CompilerProtocol {
+  private static final String UTF_8 = "UTF-8";
+
+  public static final String PROTOCOL_VERSION_PREFIX = "Protocol version: ";
+  public static final int PROTOCOL_VERSION = 2;
+
+  public static final byte TEXT = 1;
+  public static final byte DIAGNOSTIC = 2;
+  public static final byte COMPILATION_FINISHED = 3;
+
+  public static final byte SEVERITY_WARNING = 1;
+  public static final byte SEVERITY_ERROR = 2;
+
+  public static void writeProtocolVersion(final DataOutputStream out) throws IOException {
+    out.writeUTF(PROTOCOL_VERSION_PREFIX + PROTOCOL_VERSION + "\n");
+    out.flush();
+  }
+
+  public static void writeText(final DataOutputStream out, final int commandId, final String text) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream frame = new DataOutputStream(bytes);
+    frame.writeByte(TEXT);
+    frame.writeInt(commandId);
+    writeString(frame, text);
+    writeFrame(out, bytes);
+  }
+
+  public static void writeDiagnostic(final DataOutputStream out,
+                                     final int commandId,
+                                     final byte severity,
+                                     final String path,
+                                     final int line,
+                                     final int column,
+                                     final String message) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream frame = new DataOutputStream(bytes);
+    frame.writeByte(DIAGNOSTIC);
+    frame.writeInt(commandId);
+    frame.writeByte(severity);
+    writeString(frame, path == null ? "" : path);
+    frame.writeInt(line);
+    frame.writeInt(column);
+    writeString(frame, message);
+    writeFrame(out, bytes);
+  }
+
+  public static void writeCompilationFinished(final DataOutputStream out, final int commandId) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream frame = new DataOutputStream(bytes);
+    frame.writeByte(COMPILATION_FINISHED);
+    frame.writeInt(commandId);
+    writeFrame(out, bytes);
+  }
+
+  private static void writeFrame(final DataOutputStream out, final ByteArrayOutputStream frame) throws IOException {
+    out.writeInt(frame.size());
+    frame.writeTo(out);
+    out.flush();
+  }
+
+  private static void writeString(final DataOutputStream out, final String s) throws IOException {
+    final byte[] bytes = s.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
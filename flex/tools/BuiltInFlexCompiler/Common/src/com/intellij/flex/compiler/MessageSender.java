@@ -1,5 +1,15 @@
 package com.intellij.flex.compiler;
 
 public interface MessageSender {
-  void sendMessage(final String message);
+  void sendMessage(final int commandId, final String message);
+
+  /**
+   * @param severity {@link CompilerProtocol#SEVERITY_WARNING} or {@link CompilerProtocol#SEVERITY_ERROR}
+   * @param path     source file path, may be <code>null</code>
+   * @param line     1-based line or -1
+   * @param column   column or -1
+   */
+  void sendDiagnostic(final int commandId, final byte severity, final String path, final int line, final int column, final String message);
+
+  void sendCompilationFinished(final int commandId);
 }
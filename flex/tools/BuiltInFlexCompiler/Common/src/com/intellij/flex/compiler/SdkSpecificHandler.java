@@ -34,4 +34,22 @@ public abstract class SdkSpecificHandler {
   public abstract void compileSwf(String[] args);
 
   public abstract void compileSwc(String[] args);
+
+  /**
+   * Compiles reusing the state kept in this process after the previous compilation with the same <code>configFile</code>,
+   * like fcsh <code>compile &lt;id&gt;</code> does. Default implementation compiles from scratch.
+   *
+   * @param configFile config file passed with <code>-load-config</code>, identifies the build configuration
+   * @return <code>false</code> if the output file was not created; the compiler may have not reported any error in this case
+   */
+  public boolean compileIncrementally(final boolean isSwf, final String configFile, final String[] args, final flex2.tools.oem.Logger logger)
+    throws Exception {
+    if (isSwf) {
+      compileSwf(args);
+    }
+    else {
+      compileSwc(args);
+    }
+    return true;
+  }
 }
@@ -1,5 +1,6 @@
 package com.intellij.flex.compiler.flex4;
 
+import com.intellij.flex.compiler.FlexCompilerUtil;
 import com.intellij.flex.compiler.SdkSpecificHandler;
 import flash.localization.LocalizationManager;
 import flash.localization.ResourceBundleLocalizer;
@@ -15,12 +16,19 @@ import flex2.tools.CommandLineConfiguration;
 import flex2.tools.Compc;
 import flex2.tools.CompcConfiguration;
 import flex2.tools.Mxmlc;
+import flex2.tools.oem.Application;
+import flex2.tools.oem.Builder;
+import flex2.tools.oem.Library;
 import macromedia.asc.util.ContextStatics;
 
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 
 public class Flex4Handler extends SdkSpecificHandler {
 
+  private final IncrementalBuilderCache myBuilderCache = new IncrementalBuilderCache();
+
   public void initThreadLocals(final Logger logger) {
     super.initThreadLocals(logger);
 
@@ -84,4 +92,64 @@ public class Flex4Handler extends SdkSpecificHandler {
   public void compileSwc(String[] args) {
     Compc.compc(args);
   }
+
+  /**
+   * Similar to what fcsh does: OEM builder keeps compiled units and loaded SWCs, so the next <code>build(true)</code> recompiles
+   * only what has changed since the previous compilation.
+   */
+  public boolean compileIncrementally(final boolean isSwf, final String configFile, final String[] args, final flex2.tools.oem.Logger logger)
+    throws Exception {
+    final IncrementalBuilderCache.Entry cached = myBuilderCache.checkOut(configFile, args);
+    Builder builder = cached == null ? null : cached.builder;
+    String linkReport = cached == null ? null : cached.linkReport;
+
+    if (builder == null) {
+      final Configuration configuration = processConfiguration(isSwf, args);
+
+      if (isSwf) {
+        final CommandLineConfiguration mxmlcConfiguration = (CommandLineConfiguration)configuration;
+        final Application application = new Application(new File(mxmlcConfiguration.getTargetFile()));
+        application.setOutput(new File(mxmlcConfiguration.getOutput()));
+        linkReport = mxmlcConfiguration.getLinkReportFileName();
+        builder = application;
+      }
+      else {
+        final CompcConfiguration compcConfiguration = (CompcConfiguration)configuration;
+        final Library library = new Library();
+        library.setOutput(new File(compcConfiguration.getOutput()));
+        linkReport = compcConfiguration.getLinkReportFileName();
+        builder = library;
+      }
+
+      final flex2.tools.oem.Configuration oemConfiguration = builder.getDefaultConfiguration();
+      oemConfiguration.setConfiguration(args);
+      builder.setConfiguration(oemConfiguration);
+    }
+
+    builder.setLogger(logger);
+
+    final long outputSize = builder.build(true);
+    if (outputSize > 0) {
+      if (linkReport != null) {
+        writeLinkReport(builder, new File(linkReport));
+      }
+      myBuilderCache.checkIn(configFile, args, builder, linkReport);
+      return true;
+    }
+    else {
+      builder.clean();
+      return false;
+    }
+  }
+
+  private static void writeLinkReport(final Builder builder, final File linkReportFile) throws IOException, ConfigurationException {
+    FlexCompilerUtil.ensureFileCanBeCreated(linkReportFile);
+    final FileWriter writer = new FileWriter(linkReportFile);
+    try {
+      builder.getReport().writeLinkReport(writer);
+    }
+    finally {
+      writer.close();
+    }
+  }
 }
@@ -0,0 +1,115 @@
+package com.intellij.flex.compiler.flex4;
+
+import flex2.tools.oem.Builder;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps OEM builders between compilations so that the next compilation of the same build configuration is incremental.
+ * Builders are keyed by the generated config file. An entry is dropped if the content of the config file or the command line changes
+ * (the IDE rewrites the config file before each compilation, so its timestamp can't be used); changes of source files and libraries
+ * are detected by the builder itself using timestamps.
+ */
+class IncrementalBuilderCache {
+
+  // each builder holds compiled units of the whole configuration, so keep only recently used ones
+  private static final int MAX_BUILDERS = 8;
+
+  static class Entry {
+    final Builder builder;
+    // OEM builders don't write the link report themselves
+    final String linkReport;
+
+    private final String[] args;
+    private final byte[] configHash;
+
+    private Entry(final Builder builder, final String linkReport, final String[] args, final byte[] configHash) {
+      this.builder = builder;
+      this.linkReport = linkReport;
+      this.args = args;
+      this.configHash = configHash;
+    }
+
+    private boolean isUpToDate(final String[] args, final byte[] configHash) {
+      return Arrays.equals(this.args, args) && configHash != null && Arrays.equals(this.configHash, configHash);
+    }
+  }
+
+  private final LinkedHashMap<String, Entry> myEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+  /**
+   * Removes the builder from the cache, so that concurrent compilation of the same config file can't use it.
+   *
+   * @return entry with the builder of the previous compilation or <code>null</code> if there's no up-to-date one
+   */
+  synchronized Entry checkOut(final String configFile, final String[] args) {
+    final Entry entry = myEntries.remove(configFile);
+    if (entry == null) return null;
+
+    if (!entry.isUpToDate(args, getContentHash(configFile))) {
+      entry.builder.clean();
+      return null;
+    }
+
+    return entry;
+  }
+
+  /**
+   * Puts back the builder after successful compilation. Builders of failed compilations must not be reused:
+   * Flex incremental compiler doesn't always recompile after a failed compilation.
+   */
+  synchronized void checkIn(final String configFile, final String[] args, final Builder builder, final String linkReport) {
+    final byte[] configHash = getContentHash(configFile);
+    if (configHash == null) {
+      builder.clean();
+      return;
+    }
+
+    final Entry previous = myEntries.put(configFile, new Entry(builder, linkReport, args, configHash));
+    if (previous != null) {
+      previous.builder.clean();
+    }
+
+    final Iterator<Map.Entry<String, Entry>> iterator = myEntries.entrySet().iterator();
+    while (myEntries.size() > MAX_BUILDERS && iterator.hasNext()) {
+      final Entry eldest = iterator.next().getValue();
+      iterator.remove();
+      eldest.builder.clean();
+    }
+  }
+
+  /**
+   * @return SHA-1 of the file content or <code>null</code> if it can't be read
+   */
+  private static byte[] getContentHash(final String path) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      final InputStream in = new FileInputStream(path);
+      try {
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+        }
+      }
+      finally {
+        in.close();
+      }
+      return digest.digest();
+    }
+    catch (IOException e) {
+      return null;
+    }
+    catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+}
@@ -3,7 +3,9 @@ package com.intellij.flex.compiler;
 import flex2.compiler.ILocalizableMessage;
 import flex2.compiler.common.Configuration;
 
-public class CompilationThread extends Thread {
+public class CompilationTask implements Runnable {
+
+  private static final String LOAD_CONFIG_PREFIX = "-load-config=";
 
   private static int omitTraceCompilationsCount = 0;
   private static int traceCompilationsCount = 0;
@@ -14,7 +16,7 @@ public class CompilationThread extends Thread {
   private final String[] myParams;
   private final OutputLogger myLogger;
 
-  public CompilationThread(final boolean isSwf,
+  public CompilationTask(final boolean isSwf,
                            final SdkSpecificHandler sdkSpecificHandler,
                            final String[] params,
                            final OutputLogger logger) {
@@ -33,6 +35,11 @@ public class CompilationThread extends Thread {
     catch (Throwable t) {/*API changed*/}
   }
 
+  public void cancel() {
+    myLogger.log(OutputLogger.ERROR_MARKER + "Compilation cancelled");
+    myLogger.compilationFinished();
+  }
+
   public void run() {
     try {
       mySdkSpecificHandler.initThreadLocals(myLogger);
@@ -44,7 +51,13 @@ public class CompilationThread extends Thread {
 
         mySdkSpecificHandler.setupOmitTraceOption(omitTrace);
 
-        if (mySwf) {
+        final String configFile = getConfigFile(myParams);
+        if (configFile != null) {
+          if (!mySdkSpecificHandler.compileIncrementally(mySwf, configFile, myParams, myLogger) && !myLogger.wereErrorsReported()) {
+            myLogger.log(OutputLogger.ERROR_MARKER + "Flex compiler failed to create output file");
+          }
+        }
+        else if (mySwf) {
           mySdkSpecificHandler.compileSwf(myParams);
         }
         else {
@@ -81,12 +94,26 @@ public class CompilationThread extends Thread {
       System.exit(1);
     }
     finally {
-      myLogger.log(FlexCompiler.COMPILATION_FINISHED);
+      myLogger.compilationFinished();
       mySdkSpecificHandler.cleanThreadLocals();
       System.gc();
     }
   }
 
+  /**
+   * IDE passes generated config file that fully describes build configuration; commands without it are compiled from scratch
+   */
+  private static String getConfigFile(final String[] params) {
+    String configFile = null;
+    for (String param : params) {
+      if (param.startsWith(LOAD_CONFIG_PREFIX)) {
+        if (configFile != null) return null; // custom config file in addition to generated one
+        configFile = param.substring(LOAD_CONFIG_PREFIX.length());
+      }
+    }
+    return configFile;
+  }
+
   private static void acquire(final boolean omitTrace) throws InterruptedException {
     synchronized (lock) {
       while ((omitTrace && traceCompilationsCount > 0) || (!omitTrace && omitTraceCompilationsCount > 0)) {
@@ -8,6 +8,10 @@ import flex2.tools.VersionInfo;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FlexCompiler implements MessageSender {
 
@@ -15,12 +19,16 @@ public class FlexCompiler implements MessageSender {
 
   private static final String FINISH_COMMAND = "Finish";
   public static final String CANCEL_COMMAND = "Cancel";
-  public static final String COMPILATION_FINISHED = "Compilation finished";
 
   public static String SDK_MAJOR_VERSION = VersionInfo.FLEX_MAJOR_VERSION;
   public static String SDK_MINOR_VERSION = VersionInfo.FLEX_MINOR_VERSION;
   public static String SDK_REVISION_VERSION = VersionInfo.FLEX_NANO_VERSION;
 
+  // compilations beyond the number of cores wait in the queue instead of competing for CPU and heap
+  private final ThreadPoolExecutor myCompilationExecutor;
+  // created once because it keeps incremental compilation state between commands
+  private final SdkSpecificHandler mySdkSpecificHandler = createSdkSpecificHandler();
+
   private DataInputStream myDataInputStream;
   private DataOutputStream myDataOutputStream;
 
@@ -31,7 +39,7 @@ public class FlexCompiler implements MessageSender {
       try {
         socket = new Socket(InetAddress.getLocalHost(), port);
         myDataInputStream = new DataInputStream(socket.getInputStream());
-        myDataOutputStream = new DataOutputStream(socket.getOutputStream());
+        myDataOutputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
         System.out.println(CONNECTION_SUCCESSFUL);
         break;
       }
@@ -63,16 +71,57 @@ public class FlexCompiler implements MessageSender {
     try {
       final FlexCompiler flexCompiler = new FlexCompiler();
       flexCompiler.openSocket(port);
+      // IDE reads messages of older shells with readUTF() unless it gets this first
+      CompilerProtocol.writeProtocolVersion(flexCompiler.myDataOutputStream);
       flexCompiler.processInput();
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
-  public synchronized void sendMessage(final String message) {
+  public FlexCompiler() {
+    final int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors());
+    myCompilationExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                   new ThreadFactory() {
+                                                     private final AtomicInteger myThreadNumber = new AtomicInteger();
+
+                                                     public Thread newThread(final Runnable runnable) {
+                                                       final Thread thread =
+                                                         new Thread(runnable, "Flex compilation " + myThreadNumber.incrementAndGet());
+                                                       thread.setDaemon(true);
+                                                       return thread;
+                                                     }
+                                                   });
+    myCompilationExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  public synchronized void sendMessage(final int commandId, final String message) {
+    try {
+      //System.out.println("OUT: [" + commandId + ":" + message + "]");
+      CompilerProtocol.writeText(myDataOutputStream, commandId, message.trim());
+    }
+    catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  public synchronized void sendDiagnostic(final int commandId,
+                                          final byte severity,
+                                          final String path,
+                                          final int line,
+                                          final int column,
+                                          final String message) {
     try {
-      //System.out.println("OUT: [" + message + "]");
-      myDataOutputStream.writeUTF(message.replace('\n', ' ').replace('\r', ' ').trim() + "\n");
+      CompilerProtocol.writeDiagnostic(myDataOutputStream, commandId, severity, path, line, column, message);
+    }
+    catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  public synchronized void sendCompilationFinished(final int commandId) {
+    try {
+      CompilerProtocol.writeCompilationFinished(myDataOutputStream, commandId);
     }
     catch (IOException e) {
       e.printStackTrace();
@@ -104,27 +153,28 @@ public class FlexCompiler implements MessageSender {
         exit();
         return true;
       } else {
-        startCompilationThread(command);
+        startCompilation(command);
       }
     }
 
     return false;
   }
 
-  private void startCompilationThread(final String command) {
+  private void startCompilation(final String command) {
     final int colonPos = command.indexOf(":");
     if (colonPos <= 0) {
-      sendMessage("Error: Incorrect command: [" + command + "]");
-      sendMessage(COMPILATION_FINISHED);
+      sendMessage(0, "Error: Incorrect command: [" + command + "]");
+      sendCompilationFinished(0);
       return;
     }
 
     final String commandNumberStr = command.substring(0, colonPos);
+    final int commandId;
     try {
-      Integer.parseInt(commandNumberStr);
+      commandId = Integer.parseInt(commandNumberStr);
     } catch (NumberFormatException e) {
-      sendMessage("Error: Incorrect command number: [" + commandNumberStr + "]");
-      sendMessage(COMPILATION_FINISHED);
+      sendMessage(0, "Error: Incorrect command number: [" + commandNumberStr + "]");
+      sendCompilationFinished(0);
       return;
     }
 
@@ -132,31 +182,25 @@ public class FlexCompiler implements MessageSender {
 
     final boolean isSwf = compilationCommand.startsWith("mxmlc ");
     if (!isSwf && !compilationCommand.startsWith("compc")) {
-      sendMessage("Error: Incorrect compilation command: [" + compilationCommand + "]");
-      sendMessage(COMPILATION_FINISHED);
+      sendMessage(commandId, "Error: Incorrect compilation command: [" + compilationCommand + "]");
+      sendCompilationFinished(commandId);
       return;
     }
 
-    final String logMessagePrefix = commandNumberStr + ":";
-    final OutputLogger logger = new OutputLogger(this, logMessagePrefix);
-    final SdkSpecificHandler sdkSpecificHandler = getSdkSpecificHandler();
-    if (sdkSpecificHandler == null) {
+    final OutputLogger logger = new OutputLogger(this, commandId);
+    if (mySdkSpecificHandler == null) {
       logger.log(
         "Error: Flex SDK " + SDK_MAJOR_VERSION + '.' + SDK_MINOR_VERSION + '.' + SDK_REVISION_VERSION
           + " is not supported by built-in compiler shell. Please change compiler at " +
           CommonBundle.settingsActionPath() + " | Compiler | Flex Compiler.");
-      logger.log(COMPILATION_FINISHED);
+      logger.compilationFinished();
       return;
     }
 
-    final CompilationThread compilationThread =
-      new CompilationThread(isSwf, sdkSpecificHandler, getParams(compilationCommand), logger);
-    compilationThread.setPriority(Thread.MAX_PRIORITY);
-    compilationThread.setDaemon(true);
-    compilationThread.start();
+    myCompilationExecutor.execute(new CompilationTask(isSwf, mySdkSpecificHandler, getParams(compilationCommand), logger));
   }
 
-  private SdkSpecificHandler getSdkSpecificHandler() {
+  private static SdkSpecificHandler createSdkSpecificHandler() {
     if ("3".equals(SDK_MAJOR_VERSION)) {
       return new Flex3Handler();
     }
@@ -189,6 +233,11 @@ public class FlexCompiler implements MessageSender {
   }
 
   private void cancelAllCompilations() {
-    // todo implement
+    // compilations that are not started yet are dropped, running ones can't be interrupted safely
+    final List<Runnable> notStarted = new ArrayList<Runnable>();
+    myCompilationExecutor.getQueue().drainTo(notStarted);
+    for (Runnable task : notStarted) {
+      ((CompilationTask)task).cancel();
+    }
   }
 }
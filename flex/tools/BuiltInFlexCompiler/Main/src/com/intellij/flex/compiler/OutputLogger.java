@@ -31,12 +31,12 @@ public class OutputLogger extends LoggerAdapter implements Logger {
   */
 
   private final MessageSender myMessageSender;
-  private final String myLogMessagePrefix;
+  private final int myCommandId;
   private boolean myErrorsReported = false;
 
-  public OutputLogger(final MessageSender messageSender, final String logMessagePrefix) {
+  public OutputLogger(final MessageSender messageSender, final int commandId) {
     myMessageSender = messageSender;
-    myLogMessagePrefix = logMessagePrefix;
+    myCommandId = commandId;
   }
 
   public void log(final String message) {
@@ -64,29 +64,33 @@ public class OutputLogger extends LoggerAdapter implements Logger {
       }
     }
 
-    myMessageSender.sendMessage(myLogMessagePrefix + message);
+    myMessageSender.sendMessage(myCommandId, message);
+  }
+
+  public void compilationFinished() {
+    myMessageSender.sendCompilationFinished(myCommandId);
   }
 
   public void log(final Message msg, final int errorCode, final String source) {
     log(msg.getLevel(), msg.getPath(), msg.getLine(), msg.getColumn(), msg.toString());
   }
 
-  //                                        path         line                    col          level       message
-  //Pattern ERROR_PATTERN = Pattern.compile("(.*?)(?:\\((-?\\d+)\\))?: ?(?:col: (-?\\d+))? (Warning|Error): (.*)");
   public void log(final String level, final String path, final int line, final int column, final String message) {
+    final boolean warning = WARNING_LEVEL.equalsIgnoreCase(level);
+    if (warning || ERROR_LEVEL.equalsIgnoreCase(level)) {
+      // sent as is, so that the IDE does not need to parse it back
+      if (!warning) myErrorsReported = true;
+      myMessageSender.sendDiagnostic(myCommandId, warning ? CompilerProtocol.SEVERITY_WARNING : CompilerProtocol.SEVERITY_ERROR,
+                                     isEmpty(path) ? null : path, line, column, isEmpty(message) ? "unknown error" : message);
+      return;
+    }
+
     final StringBuilder builder = new StringBuilder();
     if (!isEmpty(path)) builder.append(path);
     if (line >= 0) builder.append('(').append(line).append(')');
     if (builder.length() > 0) builder.append(": ");
     if (column >= 0) builder.append("col: ").append(column).append(" ");
 
-    if (WARNING_LEVEL.equalsIgnoreCase(level)) {
-      builder.append(WARNING_LEVEL).append(": ");
-    }
-    else if (ERROR_LEVEL.equalsIgnoreCase(level)) {
-      builder.append(ERROR_LEVEL).append(": ");
-    }
-
     builder.append(isEmpty(message) ? "unknown error" : message);
     log(builder.toString());
   }
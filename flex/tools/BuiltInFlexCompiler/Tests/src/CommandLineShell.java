@@ -1,3 +1,5 @@
+import com.intellij.flex.compiler.CompilerProtocol;
+
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -31,8 +33,29 @@ public class CommandLineShell {
 
     final DataInputStream dis = new DataInputStream(socket.getInputStream());
     try {
+      System.out.print(dis.readUTF());
       while (true) {
-        System.out.println(dis.readUTF());
+        final DataInputStream frame = new DataInputStream(new ByteArrayInputStream(readBytes(dis)));
+        final byte type = frame.readByte();
+        final int commandId = frame.readInt();
+        switch (type) {
+          case CompilerProtocol.TEXT:
+            System.out.println(commandId + ":" + readString(frame));
+            break;
+          case CompilerProtocol.DIAGNOSTIC:
+            final byte severity = frame.readByte();
+            final String path = readString(frame);
+            final int line = frame.readInt();
+            final int column = frame.readInt();
+            System.out.println(commandId + ":" + path + "(" + line + "): col: " + column + " " +
+                               (severity == CompilerProtocol.SEVERITY_ERROR ? "Error" : "Warning") + ": " + readString(frame));
+            break;
+          case CompilerProtocol.COMPILATION_FINISHED:
+            System.out.println(commandId + ":Compilation finished");
+            break;
+          default:
+            System.out.println(commandId + ": unknown frame type " + type);
+        }
       }
     }
     catch (IOException e) {
@@ -45,5 +68,15 @@ public class CommandLineShell {
     catch (IOException ignored) {
     }
   }
+
+  private static byte[] readBytes(final DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static String readString(final DataInputStream in) throws IOException {
+    return new String(readBytes(in), "UTF-8");
+  }
 }
 
@@ -594,12 +594,19 @@ public class Client implements Disposable {
 
     out.write(flags);
 
+    final long start = System.nanoTime();
+    final int sizeBefore = blockOut.size();
     Pair<ProjectComponentReferenceCounter, List<RangeMarker>> result =
       new MxmlWriter(out, problemsHolder, registeredModules.getInfo(module).getFlexLibrarySet().assetCounterInfo.demanded).write(psiFile);
     if (result == null) {
       return false;
     }
 
+    if (LogMessageUtil.LOG.isDebugEnabled()) {
+      LogMessageUtil.LOG.debug(psiFile.getName() + " serialized in " + (System.nanoTime() - start) / 1000000 + " ms, " +
+                               (blockOut.size() - sizeBefore) + " bytes");
+    }
+
     blockOut.end();
 
     documentInfo.setRangeMarkers(result.second);
@@ -649,9 +656,13 @@ public class Client implements Disposable {
     boolean hasError = true;
     try {
       beginMessage(ClientMethod.updatePropertyOrStyle, callback);
+      final int sizeBefore = blockOut.size();
       out.writeUInt29(documentId);
       out.writeUInt29(componentId);
       streamConsumer.consume(out);
+      if (LogMessageUtil.LOG.isDebugEnabled()) {
+        LogMessageUtil.LOG.debug("Property update of component " + componentId + ": " + (blockOut.size() - sizeBefore) + " bytes");
+      }
       hasError = false;
     }
     finally {
@@ -34,6 +34,9 @@ import java.util.List;
 import static com.intellij.flex.uiDesigner.LogMessageUtil.LOG;
 
 class ComplexRenderAction extends RenderActionQueue.RenderAction<AsyncResult<List<DocumentFactoryManager.DocumentInfo>>> {
+  // documents are rendered on each change, so wait a bit while user is typing
+  private static final int DEBOUNCE_DELAY = 100;
+
   private Document[] documents;
   final boolean onlyStyle;
   private final boolean reportProblems;
@@ -51,6 +54,11 @@ class ComplexRenderAction extends RenderActionQueue.RenderAction<AsyncResult<Lis
     return false;
   }
 
+  @Override
+  protected int getDebounceDelay() {
+    return DEBOUNCE_DELAY;
+  }
+
   void merge(Document[] otherDocuments) {
     THashSet<Document> merged = new THashSet<>(documents.length + otherDocuments.length);
     Collections.addAll(merged, documents);
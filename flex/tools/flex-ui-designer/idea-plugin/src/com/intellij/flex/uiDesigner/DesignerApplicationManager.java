@@ -227,7 +227,10 @@ public class DesignerApplicationManager {
 
     synchronized (initialRenderQueue) {
       AsyncResult<DocumentInfo> renderResult = initialRenderQueue.findResult(psiFile);
-      if (renderResult == null) {
+      if (renderResult != null) {
+        initialRenderQueue.renderCoalesced();
+      }
+      else {
         renderResult = new AsyncResult<>();
         if (renderRejectedCallback != null) {
           renderResult.notifyWhenRejected(renderRejectedCallback);
@@ -353,7 +356,7 @@ public class DesignerApplicationManager {
       final AtomicBoolean result = new AtomicBoolean();
       if (!initialRenderQueue.isEmpty()) {
         initialRenderQueue.processActions(renderAction -> {
-          if (renderAction.file == null) {
+          if (renderAction.file == null && !renderAction.isStarted()) {
             ComplexRenderAction action = (ComplexRenderAction)renderAction;
             if (onlyStyle == action.onlyStyle) {
               action.merge(documents);
@@ -365,7 +368,10 @@ public class DesignerApplicationManager {
         });
       }
 
-      if (!result.get()) {
+      if (result.get()) {
+        initialRenderQueue.renderCoalesced();
+      }
+      else {
         initialRenderQueue.add(new ComplexRenderAction(documents, onlyStyle, reportProblems));
       }
     }
@@ -1,10 +1,24 @@
 package com.intellij.flex.uiDesigner;
 
+import com.intellij.flex.uiDesigner.io.ByteArrayOutputStreamEx;
+import com.intellij.flex.uiDesigner.io.ImageUtil;
+import com.intellij.lang.javascript.flex.FlexUtils;
+import com.intellij.lang.javascript.flex.LruFileCache;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
 public class EmbedImageManager extends EmbedAssetManager<ImageAssetInfo> {
+  // converted ARGB data of images, file name is the hash of the image content, so it is valid across IDE sessions
+  // increment version if format of converted data is changed, directories of other versions are deleted
+  // least recently used images are deleted if the cache grows over 128 MB
+  private static final LruFileCache CACHE = new LruFileCache(DesignerApplicationManager.APP_DIR, "images.", "1", 128L * 1024 * 1024);
+
   public static EmbedImageManager getInstance() {
     return DesignerApplicationManager.getService(EmbedImageManager.class);
   }
@@ -30,6 +44,34 @@ public class EmbedImageManager extends EmbedAssetManager<ImageAssetInfo> {
       }
     }
   }
+
+  /**
+   * Writes image in the format of {@link ImageUtil#write(byte[], String, boolean, OutputStream)}, converted image is taken from
+   * the disk cache if the same image content was already converted
+   */
+  public void writeBitmapData(@NotNull ImageAssetInfo assetInfo, @NotNull OutputStream out) throws IOException {
+    final byte[] content = assetInfo.file.contentsToByteArray();
+    final boolean jpeg = ImageUtil.isJpeg(assetInfo.file, assetInfo.mimeType);
+    final File cacheFile = CACHE.getFile(FlexUtils.getContentHash(content) + (jpeg ? ".jpeg" : ".argb"));
+    if (cacheFile.isFile()) {
+      try {
+        FileUtil.copy(cacheFile, out);
+        LruFileCache.markUsed(cacheFile);
+        return;
+      }
+      catch (IOException e) {
+        // caller truncates output on error, drop the broken entry so the image is converted again next time
+        FileUtil.delete(cacheFile);
+        throw e;
+      }
+    }
+
+    final ByteArrayOutputStreamEx converted = new ByteArrayOutputStreamEx(64 * 1024);
+    ImageUtil.write(content, assetInfo.file.getPresentableUrl(), jpeg, converted);
+    converted.writeTo(out);
+
+    CACHE.write(cacheFile, converted::writeTo);
+  }
 }
 
 class ImageAssetInfo extends EmbedAssetInfo {
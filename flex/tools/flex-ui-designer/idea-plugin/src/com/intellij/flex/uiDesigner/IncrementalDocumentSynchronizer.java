@@ -87,6 +87,7 @@ final class IncrementalDocumentSynchronizer extends Update {
         styleChanged();
       }
       else if (!isSkippedXml) {
+        // todo incremental sync for added, removed and moved tags, the designer can render only a whole document now
         initialRender(designerManager, xmlFile);
       }
     }
@@ -9,6 +9,7 @@ import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
+import com.intellij.util.Alarm;
 import com.intellij.util.Processor;
 import com.intellij.util.containers.Queue;
 import org.jetbrains.annotations.NotNull;
@@ -16,12 +17,19 @@ import org.jetbrains.annotations.Nullable;
 
 import static com.intellij.flex.uiDesigner.DocumentFactoryManager.DocumentInfo;
 
+/**
+ * Render actions are executed one by one. Callers must synchronize on the queue to merge a new render request into a pending action
+ * (see {@link RenderAction#isStarted()}), such request must be registered via {@link #renderCoalesced()}.
+ */
 class RenderActionQueue implements Runnable {
   private final Queue<RenderAction> queue = new Queue<>(4);
+  private final Alarm debounceAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD);
   private boolean suspended;
   // pending due to suspend
   private boolean wasPending;
 
+  private int coalescedCount;
+
   public void suspend() {
     suspended = true;
   }
@@ -30,24 +38,52 @@ class RenderActionQueue implements Runnable {
     suspended = false;
     if (wasPending) {
       wasPending = false;
-      execute(queue.peekFirst());
+      final RenderAction first;
+      synchronized (this) {
+        first = queue.peekFirst();
+      }
+      execute(first);
     }
   }
 
   public void add(RenderAction renderAction) {
-    queue.addLast(renderAction);
-    if (queue.size() == 1) {
+    final boolean first;
+    synchronized (this) {
+      queue.addLast(renderAction);
+      first = queue.size() == 1;
+    }
+
+    if (first) {
       execute(renderAction);
     }
   }
 
-  private void execute(RenderAction renderAction) {
+  public synchronized void renderCoalesced() {
+    coalescedCount++;
+  }
+
+  private void execute(final RenderAction renderAction) {
     if (suspended) {
       assert !wasPending;
       wasPending = true;
       return;
     }
 
+    final int delay = renderAction.getDebounceDelay();
+    if (delay > 0) {
+      // let subsequent requests join the action while user is typing
+      debounceAlarm.addRequest(() -> start(renderAction), delay);
+    }
+    else {
+      start(renderAction);
+    }
+  }
+
+  private void start(RenderAction renderAction) {
+    synchronized (this) {
+      renderAction.startTime = System.nanoTime();
+    }
+
     renderAction.result.doWhenProcessed(this);
     Application application = ApplicationManager.getApplication();
     boolean isDispatchThread = application.isDispatchThread();
@@ -71,14 +107,29 @@ class RenderActionQueue implements Runnable {
 
   @Override
   public void run() {
-    queue.pullFirst();
-    if (!queue.isEmpty()) {
-      execute(queue.peekFirst());
+    final RenderAction processed;
+    final RenderAction next;
+    final int coalesced;
+    synchronized (this) {
+      processed = queue.pullFirst();
+      next = queue.isEmpty() ? null : queue.peekFirst();
+      coalesced = coalescedCount;
+    }
+
+    if (LogMessageUtil.LOG.isDebugEnabled()) {
+      final long now = System.nanoTime();
+      LogMessageUtil.LOG.debug("Render of " + processed + " took " + (now - processed.queuedTime) / 1000000 + " ms (" +
+                               (now - processed.startTime) / 1000000 + " ms without waiting in queue), " +
+                               coalesced + " renders coalesced so far");
+    }
+
+    if (next != null) {
+      execute(next);
     }
   }
 
   public void processActions(Processor<RenderAction> processor) {
-    synchronized (queue) {
+    synchronized (this) {
       queue.process(processor);
     }
   }
@@ -116,6 +167,10 @@ class RenderActionQueue implements Runnable {
     protected final Project project;
     protected final T result;
 
+    private final long queuedTime = System.nanoTime();
+    // guarded by the queue
+    private long startTime;
+
     protected RenderAction(@Nullable Project project, @Nullable VirtualFile file, @NotNull T renderResult) {
       this.project = project;
       this.file = file;
@@ -124,6 +179,25 @@ class RenderActionQueue implements Runnable {
 
     abstract protected boolean isNeedEdt();
 
+    /**
+     * @return delay before the start, ms; requests merged into the action during this time are rendered at once
+     */
+    protected int getDebounceDelay() {
+      return 0;
+    }
+
+    /**
+     * Must be called under the queue lock. Request can be merged into the action only if it is not started yet.
+     */
+    final boolean isStarted() {
+      return startTime != 0;
+    }
+
+    @Override
+    public String toString() {
+      return file == null ? getClass().getSimpleName() : file.getName();
+    }
+
     @Override
     public final void run() {
       ComponentManager disposable = project == null ? ApplicationManager.getApplication() : project;
@@ -479,10 +479,11 @@ public class SocketInputHandlerImpl extends SocketInputHandler {
   private void getBitmapData() throws IOException {
     initResultFile();
 
-    final ImageAssetInfo assetInfo = EmbedImageManager.getInstance().getInfo(reader.readUnsignedShort());
+    final EmbedImageManager imageManager = EmbedImageManager.getInstance();
+    final ImageAssetInfo assetInfo = imageManager.getInfo(reader.readUnsignedShort());
     final FileOutputStream fileOut = new FileOutputStream(resultFile);
     try {
-      ImageUtil.write(assetInfo.file, assetInfo.mimeType, fileOut);
+      imageManager.writeBitmapData(assetInfo, fileOut);
     }
     catch (IOException e) {
       final String userMessage = FlashUIDesignerBundle.message("problem.opening.0", assetInfo.file.getName());
@@ -28,6 +28,20 @@ abstract class SwfTranscoder extends AbcEncoder {
 
   // in will be closed
   protected void readSource(InputStream in, long inputLength) throws IOException {
+    readSource(readBody(in, inputLength, partialHeader));
+  }
+
+  protected void readSource(byte[] data) throws IOException {
+    buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+
+    readFrameSizeFrameRateAndFrameCount(data[0]);
+  }
+
+  /**
+   * Reads and uncompresses swf body, doesn't depend on transcoder state, so may be called for several sources in parallel.
+   * In will be closed.
+   */
+  protected static byte[] readBody(InputStream in, long inputLength, byte[] partialHeader) throws IOException {
     final int uncompressedBodyLength;
     final boolean compressed;
     byte[] data;
@@ -61,9 +75,7 @@ abstract class SwfTranscoder extends AbcEncoder {
       }
     }
 
-    buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
-
-    readFrameSizeFrameRateAndFrameCount(data[0]);
+    return data;
   }
 
   protected void readFrameSizeFrameRateAndFrameCount(byte b) throws IOException {
@@ -1,12 +1,15 @@
 package com.intellij.flex.uiDesigner.io;
 
 import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.Nullable;
 
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
 import java.awt.*;
-import java.awt.image.ImageObserver;
-import java.awt.image.PixelGrabber;
-import java.io.FileOutputStream;
+import java.awt.image.*;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 public final class ImageUtil {
   private static final int MAX_BUFFER_LENGTH = 12288;
@@ -18,36 +21,91 @@ public final class ImageUtil {
     }
   };
 
-  public static void write(VirtualFile file, String mimeType, FileOutputStream out) throws IOException {
-    Image image = Toolkit.getDefaultToolkit().createImage(file.contentsToByteArray());
+  public static boolean isJpeg(VirtualFile file, @Nullable String mimeType) {
+    return mimeType == null ? file.getName().endsWith(".jpg") : mimeType.equals("image/jpeg");
+  }
+
+  /**
+   * Writes width, height, jpeg flag and ARGB pixels
+   */
+  public static void write(byte[] content, String presentableUrl, boolean jpeg, OutputStream out) throws IOException {
+    BufferedImage image;
+    try {
+      image = ImageIO.read(new ByteArrayInputStream(content));
+    }
+    catch (IIOException e) {
+      // reader exists, but can't decode this image, e.g. CMYK JPEG
+      image = null;
+    }
+    if (image == null) {
+      // format is not supported by ImageIO, AWT toolkit may know it
+      writeGrabbed(content, presentableUrl, jpeg, out);
+      return;
+    }
+
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final byte[] byteBuffer = BUFFER.get();
+    writeHeader(width, height, jpeg, byteBuffer, out);
+
+    final int type = image.getType();
+    final WritableRaster raster = image.getRaster();
+    if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) &&
+        raster.getParent() == null &&
+        raster.getSampleModel() instanceof SinglePixelPackedSampleModel &&
+        ((SinglePixelPackedSampleModel)raster.getSampleModel()).getScanlineStride() == width &&
+        raster.getDataBuffer().getOffset() == 0) {
+      // pixels are already in our format, use them as is
+      writePixels(((DataBufferInt)raster.getDataBuffer()).getData(), width * height, type == BufferedImage.TYPE_INT_RGB, byteBuffer, out);
+    }
+    else {
+      final int[] row = new int[width];
+      for (int y = 0; y < height; y++) {
+        image.getRGB(0, y, width, 1, row, 0, width);
+        writePixels(row, width, false, byteBuffer, out);
+      }
+    }
+  }
+
+  private static void writeGrabbed(byte[] content, String presentableUrl, boolean jpeg, OutputStream out) throws IOException {
+    Image image = Toolkit.getDefaultToolkit().createImage(content);
     PixelGrabber pixelGrabber = new PixelGrabber(image, 0, 0, -1, -1, true);
     try {
       pixelGrabber.grabPixels();
     }
     catch (InterruptedException ignored) {
-      throw new IOException("Failed to grab pixels for image " + file.getPresentableUrl());
+      throw new IOException("Failed to grab pixels for image " + presentableUrl);
     }
 
     if (((pixelGrabber.getStatus() & ImageObserver.WIDTH) == 0) ||
         ((pixelGrabber.getStatus() & ImageObserver.HEIGHT) == 0)) {
-      throw new IOException("Failed to grab pixels for image " + file.getPresentableUrl());
+      throw new IOException("Failed to grab pixels for image " + presentableUrl);
     }
 
     final byte[] byteBuffer = BUFFER.get();
-    IOUtil.writeShort(pixelGrabber.getWidth(), byteBuffer, 0);
-    IOUtil.writeShort(pixelGrabber.getHeight(), byteBuffer, 2);
-    byteBuffer[4] = (byte)((mimeType == null ? file.getName().endsWith(".jpg") : mimeType.equals("image/jpeg")) ? 0 : 1);
+    writeHeader(pixelGrabber.getWidth(), pixelGrabber.getHeight(), jpeg, byteBuffer, out);
+    final int[] pixels = (int[])pixelGrabber.getPixels();
+    writePixels(pixels, pixels.length, false, byteBuffer, out);
+  }
+
+  private static void writeHeader(int width, int height, boolean jpeg, byte[] byteBuffer, OutputStream out) throws IOException {
+    IOUtil.writeShort(width, byteBuffer, 0);
+    IOUtil.writeShort(height, byteBuffer, 2);
+    byteBuffer[4] = (byte)(jpeg ? 0 : 1);
     out.write(byteBuffer, 0, 5);
+  }
 
+  private static void writePixels(int[] pixels, int length, boolean opaque, byte[] byteBuffer, OutputStream out) throws IOException {
+    final int alpha = opaque ? 0xff000000 : 0;
     int bufferLength = 0;
-    for (int pixel : (int[])pixelGrabber.getPixels()) {
+    for (int i = 0; i < length; i++) {
+      final int pixel = pixels[i] | alpha;
       byteBuffer[bufferLength++] = (byte)((pixel >> 24) & 0xff);
       byteBuffer[bufferLength++] = (byte)((pixel >> 16) & 0xff);
       byteBuffer[bufferLength++] = (byte)((pixel >> 8) & 0xff);
       byteBuffer[bufferLength++] = (byte)(pixel & 0xff);
 
       if (bufferLength == MAX_BUFFER_LENGTH) {
-        //noinspection ConstantConditions
         out.write(byteBuffer, 0, bufferLength);
         bufferLength = 0;
       }
@@ -57,4 +115,4 @@ public final class ImageUtil {
       out.write(byteBuffer, 0, bufferLength);
     }
   }
-}
\ No newline at end of file
+}
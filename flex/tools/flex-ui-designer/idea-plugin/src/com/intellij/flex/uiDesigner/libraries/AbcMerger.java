@@ -52,10 +52,25 @@ class AbcMerger extends AbcTranscoder {
   }
 
   public void process(Library library) throws IOException {
+    process(library, readSwf(library));
+  }
+
+  /**
+   * @param swf result of {@link #readSwf(Library)}
+   */
+  public void process(Library library, byte[] swf) throws IOException {
     this.library = library;
+    readSource(swf);
+    processSource();
+  }
 
+  /**
+   * Reads and uncompresses library swf. Doesn't depend on merger state, so swf files of several libraries may be read in parallel
+   * while merging is sequential.
+   */
+  static byte[] readSwf(Library library) throws IOException {
     VirtualFile file = library.getSwfFile();
-    process(file.getInputStream(), (int)file.getLength());
+    return readBody(file.getInputStream(), file.getLength(), new byte[PARTIAL_HEADER_LENGTH]);
   }
 
   public void process(InputStream in) throws IOException {
@@ -64,6 +79,10 @@ class AbcMerger extends AbcTranscoder {
 
   public void process(InputStream in, int length) throws IOException {
     readSource(in, length);
+    processSource();
+  }
+
+  private void processSource() throws IOException {
     processTags(null);
     library = null;
 
@@ -20,7 +20,7 @@ import static com.intellij.flex.uiDesigner.libraries.LibrarySorter.SortResult;
 class LibrariesData {
   final PersistentHashMap<String, SortResult> librarySets;
 
-  private static final String ABC_FILTER_VERSION = "40";
+  private static final String ABC_FILTER_VERSION = "41";
   private static final String ABC_FILTER_VERSION_VALUE_NAME = "fud_abcFilterVersion";
 
   static final char NAME_PREFIX = '@';
@@ -70,7 +70,7 @@ class LibrariesData {
     public void save(@NotNull final DataOutput out, SortResult value) throws IOException {
       out.writeShort(value.libraries.size());
       for (Library library : value.libraries) {
-        out.writeUTF(library.getFile().getPath());
+        out.writeUTF(library.getContentHash());
       }
 
       if (value.definitionMap == null) {
@@ -97,9 +97,9 @@ class LibrariesData {
     @Override
     public SortResult read(@NotNull DataInput in) throws IOException {
       int librariesSize = in.readShort();
-      String[] libraryPaths = new String[librariesSize];
+      String[] libraryHashes = new String[librariesSize];
       while (librariesSize-- > 0) {
-        libraryPaths[librariesSize] = in.readUTF();
+        libraryHashes[librariesSize] = in.readUTF();
       }
 
       int size = in.readInt();
@@ -114,7 +114,7 @@ class LibrariesData {
         map = null;
       }
 
-      return new SortResult(map, libraryPaths);
+      return new SortResult(map, libraryHashes);
     }
   }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.intellij.flex.uiDesigner.libraries;
 
 import com.intellij.flex.uiDesigner.AssetCounter;
+import com.intellij.lang.javascript.flex.FlexUtils;
+import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
@@ -8,6 +10,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.io.Info;
 
+import java.io.IOException;
 import java.util.Map;
 
 public class Library extends Info<VirtualFile> {
@@ -24,10 +27,30 @@ public class Library extends Info<VirtualFile> {
   // en_US => {"layout", "components"}
   public final Map<String, THashSet<String>> resourceBundles = new THashMap<>();
 
+  private String contentHash;
+  private long contentHashTimeStamp;
+
   Library(@NotNull VirtualFile file) {
     super(file);
   }
 
+  /**
+   * SHA-1 of swc content, so the same library in another location or project (or just touched) is recognized as unchanged
+   */
+  @NotNull
+  String getContentHash() throws IOException {
+    final VirtualFile swcFile = element.getFileSystem() instanceof JarFileSystem ? JarFileSystem.getInstance().getVirtualFileForJar(element) : null;
+    if (swcFile == null) {
+      return element.getPath() + '@' + element.getTimeStamp();
+    }
+
+    if (contentHash == null || contentHashTimeStamp != swcFile.getTimeStamp()) {
+      contentHashTimeStamp = swcFile.getTimeStamp();
+      contentHash = FlexUtils.getContentHash(swcFile.getInputStream());
+    }
+    return contentHash;
+  }
+
   public boolean hasResourceBundles() {
     return !resourceBundles.isEmpty();
   }
@@ -22,7 +22,6 @@ import com.intellij.openapi.roots.ModuleRootEvent;
 import com.intellij.openapi.roots.ModuleRootListener;
 import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.Pair;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.util.ArrayUtil;
@@ -216,23 +215,28 @@ public class LibraryManager implements Disposable {
     return globalDefinitions;
   }
 
-  private String createKey(List<Library> libraries, boolean isSdk) {
-    // we don't depend on library order
-    final VirtualFile[] files = new VirtualFile[libraries.size()];
-    for (int i = 0, librariesSize = libraries.size(); i < librariesSize; i++) {
-      files[i] = libraries.get(i).getFile();
+  private String createKey(List<Library> libraries, boolean isSdk) throws InitException {
+    // we don't depend on library order and location - merged libraries are shared by all projects with the same swc set
+    final String[] hashes = new String[libraries.size()];
+    try {
+      for (int i = 0, librariesSize = libraries.size(); i < librariesSize; i++) {
+        hashes[i] = libraries.get(i).getContentHash();
+      }
     }
-    
-    Arrays.sort(files, (o1, o2) -> StringUtil.compare(o1.getPath(), o2.getPath(), false));
-    
+    catch (IOException e) {
+      throw new InitException(e, "error.sort.libraries");
+    }
+
+    Arrays.sort(hashes);
+
     final StringBuilder stringBuilder = StringBuilderSpinAllocator.alloc();
     try {
       if (isSdk) {
         stringBuilder.append('_');
       }
 
-      for (VirtualFile file : files) {
-        stringBuilder.append(file.getTimeStamp()).append(file.getPath()).append(':');
+      for (String hash : hashes) {
+        stringBuilder.append(hash).append(':');
       }
 
       return stringBuilder.toString();
@@ -254,10 +258,10 @@ public class LibraryManager implements Disposable {
         data.librarySets.put(key, result);
       }
       else {
-        final String[] libraryPaths = result.libraryPaths;
-        final List<Library> filteredLibraries = new ArrayList<>(libraryPaths.length);
+        final String[] libraryHashes = result.libraryHashes;
+        final List<Library> filteredLibraries = new ArrayList<>(libraryHashes.length);
         for (Library library : libraries) {
-          if (ArrayUtil.indexOf(libraryPaths, library.getFile().getPath()) != -1) {
+          if (ArrayUtil.indexOf(libraryHashes, library.getContentHash()) != -1) {
             filteredLibraries.add(library);
           }
         }
@@ -10,14 +10,18 @@ import gnu.trove.THashMap;
 import gnu.trove.TObjectProcedure;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.ide.PooledThreadExecutor;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import static com.intellij.flex.uiDesigner.libraries.Definition.ResolvedState;
 
@@ -56,9 +60,19 @@ public class LibrarySorter {
     final THashMap<CharSequence, Definition> definitionMap = new THashMap<>(libraries.size() * 128, AbcTranscoder.HASHING_STRATEGY);
     final List<LibrarySetItem> unsortedItems = collectItems(libraries, definitionMap, isExternal);
     final AbcMerger abcMerger = new AbcMerger(definitionMap, outFile, definitionProcessor);
+    // merging must be sequential (symbol ids, definition overriding), but reading and inflating of library swf is independent;
+    // swfs are read ahead by one per core, so that inflated swfs don't pile up in memory
+    final int readAhead = Math.max(1, Runtime.getRuntime().availableProcessors());
+    final List<Future<byte[]>> swfs = new ArrayList<>(unsortedItems.size());
     try {
       final ArrayList<Library> resourceOrStyleHolders = new ArrayList<>(unsortedItems.size());
-      for (LibrarySetItem item : unsortedItems) {
+      for (int i = 0, n = unsortedItems.size(); i < n; i++) {
+        while (swfs.size() < Math.min(n, i + readAhead)) {
+          final LibrarySetItem next = unsortedItems.get(swfs.size());
+          swfs.add(next.hasDefinitions() ? PooledThreadExecutor.INSTANCE.submit(() -> AbcMerger.readSwf(next.library)) : null);
+        }
+
+        final LibrarySetItem item = unsortedItems.get(i);
         if (!item.hasDefinitions()) {
           if (item.library.hasResourceBundles()) {
             resourceOrStyleHolders.add(item.library);
@@ -70,7 +84,8 @@ public class LibrarySorter {
           resourceOrStyleHolders.add(item.library);
         }
 
-        abcMerger.process(item.library);
+        final Future<byte[]> swf = swfs.set(i, null);
+        abcMerger.process(item.library, getSwf(swf));
       }
       
       if (definitionMapProcessor != null) {
@@ -96,10 +111,39 @@ public class LibrarySorter {
       return new SortResult(returnDefinitionMap ? definitionMap : null, resourceOrStyleHolders);
     }
     finally {
+      // the pool is shared, not started reads are just dropped
+      for (Future<byte[]> swf : swfs) {
+        if (swf != null) {
+          swf.cancel(false);
+        }
+      }
       abcMerger.close();
     }
   }
 
+  private static byte[] getSwf(Future<byte[]> future) throws IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ClosedByInterruptException();
+    }
+    catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      }
+      else if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      else if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
   private static Decoder createDecoder(Definition definition) {
     final Decoder decoder = new Decoder(definition.doAbcData, definition.doAbcData.abcModifier);
     definition.doAbcData = null;
@@ -156,20 +200,20 @@ public class LibrarySorter {
     final List<Library> libraries;
 
     // only if restored from cache
-    final String[] libraryPaths;
+    final String[] libraryHashes;
 
     int id;
 
     SortResult(@Nullable THashMap<CharSequence, Definition> definitionMap, List<Library> libraries) {
       this.definitionMap = definitionMap;
       this.libraries = libraries;
-      libraryPaths = null;
+      libraryHashes = null;
     }
 
-    SortResult(@Nullable THashMap<CharSequence, Definition> definitionMap, String[] libraryPaths) {
+    SortResult(@Nullable THashMap<CharSequence, Definition> definitionMap, String[] libraryHashes) {
       this.definitionMap = definitionMap;
       libraries = null;
-      this.libraryPaths = libraryPaths;
+      this.libraryHashes = libraryHashes;
     }
   }
 }
\ No newline at end of file